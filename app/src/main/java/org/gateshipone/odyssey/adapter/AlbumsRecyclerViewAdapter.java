@@ -30,6 +30,7 @@ import android.view.ViewGroup;
 import org.gateshipone.odyssey.R;
 import org.gateshipone.odyssey.artwork.ArtworkManager;
 import org.gateshipone.odyssey.models.AlbumModel;
+import org.gateshipone.odyssey.utils.CoverPrefetcher;
 import org.gateshipone.odyssey.utils.ThemeUtils;
 import org.gateshipone.odyssey.viewitems.GenericImageViewItem;
 import org.gateshipone.odyssey.viewitems.GenericViewItemHolder;
@@ -66,6 +67,11 @@ public class AlbumsRecyclerViewAdapter extends GenericRecyclerViewAdapter<AlbumM
 
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         mHideArtwork = sharedPreferences.getBoolean(context.getString(R.string.pref_hide_artwork_key), context.getResources().getBoolean(R.bool.pref_hide_artwork_default));
+
+        if (!mHideArtwork) {
+            mCoverPrefetcher = new CoverPrefetcher(context, mArtworkManager);
+            mCoverPrefetcher.setImageDimension(mItemSize, mItemSize);
+        }
     }
 
     @NonNull
@@ -127,6 +133,10 @@ public class AlbumsRecyclerViewAdapter extends GenericRecyclerViewAdapter<AlbumM
     public void setItemSize(int size) {
         mItemSize = size;
 
+        if (mCoverPrefetcher != null) {
+            mCoverPrefetcher.setImageDimension(mItemSize, mItemSize);
+        }
+
         notifyDataSetChanged();
     }
 
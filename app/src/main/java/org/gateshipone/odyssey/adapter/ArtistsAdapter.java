@@ -33,6 +33,7 @@ import android.widget.GridView;
 import org.gateshipone.odyssey.R;
 import org.gateshipone.odyssey.artwork.ArtworkManager;
 import org.gateshipone.odyssey.models.ArtistModel;
+import org.gateshipone.odyssey.utils.CoverPrefetcher;
 import org.gateshipone.odyssey.viewitems.GridViewItem;
 import org.gateshipone.odyssey.viewitems.ListViewItem;
 
@@ -69,6 +70,13 @@ public class ArtistsAdapter extends GenericSectionAdapter<ArtistModel> implement
 
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         mHideArtwork = sharedPreferences.getBoolean(context.getString(R.string.pref_hide_artwork_key), context.getResources().getBoolean(R.bool.pref_hide_artwork_default));
+
+        if (!mHideArtwork) {
+            mCoverPrefetcher = new CoverPrefetcher(context, mArtworkManager);
+            if (mUseList) {
+                mCoverPrefetcher.setImageDimension(mListItemHeight, mListItemHeight);
+            }
+        }
     }
 
     /**
@@ -130,6 +138,7 @@ public class ArtistsAdapter extends GenericSectionAdapter<ArtistModel> implement
             if (!mHideArtwork) {
                 // This will prepare the view for fetching the image from the internet if not already saved in local database.
                 gridItem.prepareArtworkFetching(mArtworkManager, artist);
+                mCoverPrefetcher.setImageDimension(width, width);
 
                 // Check if the scroll speed currently is already 0, then start the image task right away.
                 if (mScrollSpeed == 0) {
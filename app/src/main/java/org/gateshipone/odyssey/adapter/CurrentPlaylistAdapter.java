@@ -34,6 +34,8 @@ import org.gateshipone.odyssey.playbackservice.NowPlayingInformation;
 import org.gateshipone.odyssey.playbackservice.PlaybackServiceConnection;
 import org.gateshipone.odyssey.viewitems.ListViewItem;
 
+import java.util.List;
+
 import androidx.collection.LruCache;
 
 public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAdapter {
@@ -55,6 +57,11 @@ public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAd
 
     private static final int CACHE_SIZE = 250;
 
+    /**
+     * Number of tracks that are requested from the PBS with a single call.
+     */
+    private static final int WINDOW_SIZE = 50;
+
     private static final String TAG = CurrentPlaylistAdapter.class.getSimpleName();
 
     public enum VIEW_TYPES {
@@ -80,6 +87,16 @@ public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAd
      */
     private LruCache<Integer, TrackModel> mTrackCache;
 
+    /**
+     * Version of the playlist the cached tracks belong to, 0 if unknown.
+     */
+    private long mPlaylistVersion;
+
+    /**
+     * Position of the last requested item, used to load the next window in scroll direction.
+     */
+    private int mLastRequestedPosition;
+
     public CurrentPlaylistAdapter(Context context, PlaybackServiceConnection playbackServiceConnection) {
         super();
 
@@ -108,27 +125,63 @@ public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAd
 
     /**
      * Simple getter for the model data.
-     * This method will call the PBS to get the trackmodel from the current playlist.
+     * If the track is not cached this method will call the PBS to get a window of tracks
+     * in the current scroll direction from the current playlist.
      *
      * @param position Index of the track to get. No check for boundaries here.
      * @return The trackmodel at index position.
      */
     @Override
     public Object getItem(int position) {
+        if (mPlaybackServiceConnection == null) {
+            return null;
+        }
+
+        // Check cache first for a hit
+        TrackModel track = mTrackCache.get(position);
+        if (track == null) {
+            loadWindow(position, position >= mLastRequestedPosition);
+            track = mTrackCache.get(position);
+        }
+        mLastRequestedPosition = position;
+        return track;
+    }
+
+    /**
+     * Loads a window of tracks starting at the given position in the given direction into the cache.
+     *
+     * @param position The position that must be part of the window.
+     * @param forward  True if the window should contain the tracks after the position, false for the tracks before.
+     */
+    private void loadWindow(final int position, final boolean forward) {
+        final int start = forward ? position : Math.max(0, position - WINDOW_SIZE + 1);
+
         try {
-            if (mPlaybackServiceConnection != null) {
-                // Check cache first for a hit
-                TrackModel track = mTrackCache.get(position);
-                if (track == null) {
-                    track = mPlaybackServiceConnection.getPBS().getPlaylistSong(position);
-                    mTrackCache.put(position, track);
-                }
-                return track;
-            } else {
-                return null;
+            final List<TrackModel> tracks = mPlaybackServiceConnection.getPBS().getPlaylistWindow(start, WINDOW_SIZE);
+
+            for (int i = 0; i < tracks.size(); i++) {
+                mTrackCache.put(start + i, tracks.get(i));
             }
         } catch (RemoteException e) {
-            return null;
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes all cached tracks starting with the given position.
+     *
+     * @param position The first position that changed.
+     */
+    private void invalidateTracks(final int position) {
+        if (position <= 0) {
+            mTrackCache.evictAll();
+            return;
+        }
+
+        for (Integer cachedPosition : mTrackCache.snapshot().keySet()) {
+            if (cachedPosition >= position) {
+                mTrackCache.remove(cachedPosition);
+            }
         }
     }
 
@@ -241,7 +294,23 @@ public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAd
     public void updateState(NowPlayingInformation info) {
         mCurrentPlayingIndex = info.getPlayingIndex();
         mPlaylistSize = info.getPlaylistLength();
-        mTrackCache.evictAll();
+
+        final long playlistVersion = info.getPlaylistVersion();
+        if (playlistVersion == 0 || mPlaylistVersion == 0 || mPlaybackServiceConnection == null) {
+            mTrackCache.evictAll();
+        } else if (playlistVersion != mPlaylistVersion) {
+            // only remove the tracks that changed since the last known version
+            try {
+                final int firstChangedIndex = mPlaybackServiceConnection.getPBS().getFirstChangedPlaylistIndex(mPlaylistVersion);
+                if (firstChangedIndex >= 0) {
+                    invalidateTracks(firstChangedIndex);
+                }
+            } catch (RemoteException e) {
+                mTrackCache.evictAll();
+            }
+        }
+        mPlaylistVersion = playlistVersion;
+
         notifyDataSetChanged();
     }
 
@@ -284,4 +353,21 @@ public class CurrentPlaylistAdapter extends BaseAdapter implements ScrollSpeedAd
             mAvgImageTime = (long) (((1 - mSmoothingFactor) * mAvgImageTime) + (mSmoothingFactor * time));
         }
     }
+
+    /**
+     * Loads the tracks ahead of the scroll direction from the playback service so the
+     * following rows don't need a call to the playback service while they are created.
+     * The images itself are not prefetched because only the section items show one.
+     */
+    @Override
+    public void prefetchImages(int firstPosition, int lastPosition, boolean forward) {
+        if (mPlaybackServiceConnection == null) {
+            return;
+        }
+
+        final int position = forward ? firstPosition : lastPosition;
+        if (mTrackCache.get(position) == null) {
+            loadWindow(position, forward);
+        }
+    }
 }
@@ -23,6 +23,7 @@
 package org.gateshipone.odyssey.adapter;
 
 import org.gateshipone.odyssey.models.GenericModel;
+import org.gateshipone.odyssey.utils.CoverPrefetcher;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,6 +47,11 @@ public abstract class GenericRecyclerViewAdapter<T extends GenericModel, VH exte
      */
     private long mAvgImageTime;
 
+    /**
+     * Prefetcher for the images of items ahead of the visible area, null if the items have no images.
+     */
+    CoverPrefetcher mCoverPrefetcher;
+
     /**
      * Abstract list with model data used for this adapter.
      */
@@ -122,4 +128,30 @@ public abstract class GenericRecyclerViewAdapter<T extends GenericModel, VH exte
             mAvgImageTime = (long) (((1 - mSmoothingFactor) * mAvgImageTime) + (mSmoothingFactor * time));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Prefetches the images of the given item range in the background, so they are cached when the items are shown.
+     * Nearer items are requested last as the scheduler loads the newest requests of the same priority first.
+     *
+     * @param firstPosition The first position to prefetch.
+     * @param lastPosition  The last position to prefetch (inclusive).
+     * @param forward       True if the view is scrolled towards higher positions.
+     */
+    @Override
+    public void prefetchImages(int firstPosition, int lastPosition, boolean forward) {
+        if (mCoverPrefetcher == null) {
+            return;
+        }
+
+        final int last = Math.min(lastPosition, getItemCount() - 1);
+        if (forward) {
+            for (int position = last; position >= firstPosition; position--) {
+                mCoverPrefetcher.prefetch(getItem(position), true);
+            }
+        } else {
+            for (int position = Math.max(0, firstPosition); position <= last; position++) {
+                mCoverPrefetcher.prefetch(getItem(position), false);
+            }
+        }
+    }
+}
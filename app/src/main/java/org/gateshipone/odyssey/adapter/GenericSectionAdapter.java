@@ -26,6 +26,7 @@ import android.widget.BaseAdapter;
 import android.widget.SectionIndexer;
 
 import org.gateshipone.odyssey.models.GenericModel;
+import org.gateshipone.odyssey.utils.CoverPrefetcher;
 import org.gateshipone.odyssey.utils.FilterTask;
 import org.gateshipone.odyssey.utils.SectionCreator;
 
@@ -53,6 +54,11 @@ public abstract class GenericSectionAdapter<T extends GenericModel> extends Base
      */
     private long mAvgImageTime;
 
+    /**
+     * Prefetcher for the images of items ahead of the visible area, null if the items have no images.
+     */
+    CoverPrefetcher mCoverPrefetcher;
+
     /**
      * Abstract list with model data used for this adapter.
      */
@@ -343,4 +349,30 @@ public abstract class GenericSectionAdapter<T extends GenericModel> extends Base
             mAvgImageTime = (long) (((1 - mSmoothingFactor) * mAvgImageTime) + (mSmoothingFactor * time));
         }
     }
+
+    /**
+     * Prefetches the images of the given item range in the background, so they are cached when the items are shown.
+     * Nearer items are requested last as the scheduler loads the newest requests of the same priority first.
+     *
+     * @param firstPosition The first position to prefetch.
+     * @param lastPosition  The last position to prefetch (inclusive).
+     * @param forward       True if the view is scrolled towards higher positions.
+     */
+    @Override
+    public void prefetchImages(int firstPosition, int lastPosition, boolean forward) {
+        if (mCoverPrefetcher == null) {
+            return;
+        }
+
+        final int last = Math.min(lastPosition, getCount() - 1);
+        if (forward) {
+            for (int position = last; position >= firstPosition; position--) {
+                mCoverPrefetcher.prefetch(getItem(position), true);
+            }
+        } else {
+            for (int position = Math.max(0, firstPosition); position <= last; position++) {
+                mCoverPrefetcher.prefetch(getItem(position), false);
+            }
+        }
+    }
 }
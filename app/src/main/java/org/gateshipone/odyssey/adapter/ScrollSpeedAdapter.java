@@ -53,4 +53,13 @@ public interface ScrollSpeedAdapter {
      */
     void addImageLoadTime(long time);
 
+    /**
+     * Prefetches the images of the given item range in the background, so they are cached when the items are shown.
+     *
+     * @param firstPosition The first position to prefetch.
+     * @param lastPosition  The last position to prefetch (inclusive).
+     * @param forward       True if the view is scrolled towards higher positions. A change of direction cancels pending prefetches.
+     */
+    void prefetchImages(int firstPosition, int lastPosition, boolean forward);
+
 }
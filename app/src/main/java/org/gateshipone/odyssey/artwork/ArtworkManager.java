@@ -27,9 +27,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.database.ContentObserver;
 import android.graphics.Bitmap;
 import android.net.ConnectivityManager;
 import android.preference.PreferenceManager;
+import android.provider.MediaStore;
 import android.util.Log;
 
 import com.android.volley.NetworkResponse;
@@ -56,6 +58,8 @@ import org.json.JSONException;
 
 import java.util.ArrayList;
 
+import androidx.collection.LruCache;
+
 public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTask.ImageSavedCallback {
 
     private static final String TAG = ArtworkManager.class.getSimpleName();
@@ -89,6 +93,11 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
 
     private static final String INTENT_EXTRA_KEY_ARTIST_NAME = "org.gateshipone.odyssey.extra.artist_name";
 
+    /**
+     * Number of albums that are kept in the album cache for tracks.
+     */
+    private static final int ALBUM_CACHE_SIZE = 256;
+
     /**
      * Private static singleton instance that can be used by other classes via the
      * getInstance method.
@@ -125,6 +134,16 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
      */
     private final ArrayList<ArtworkManager.onNewAlbumImageListener> mAlbumListeners;
 
+    /**
+     * {@link LruCache} of the albums for an album key to avoid a mediastore query for each track image.
+     */
+    private final LruCache<String, AlbumModel> mAlbumCache;
+
+    /**
+     * Marker in {@link #mAlbumCache} for album keys that are not part of the mediastore.
+     */
+    private static final AlbumModel MISSING_ALBUM = new AlbumModel(null, null, null, null, -1);
+
     private ArtworkManager(Context context) {
 
         mDBManager = ArtworkDatabaseManager.getInstance(context);
@@ -132,6 +151,11 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
         mArtistListeners = new ArrayList<>();
         mAlbumListeners = new ArrayList<>();
 
+        mAlbumCache = new LruCache<>(ALBUM_CACHE_SIZE);
+
+        // albums might be added or removed, including missing albums of already cached keys
+        context.getContentResolver().registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, true, new MediaStoreObserver());
+
         ConnectionStateReceiver receiver = new ConnectionStateReceiver();
         IntentFilter filter = new IntentFilter();
         filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
@@ -216,18 +240,21 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
 
         if (!skipCache) {
             // Try cache first
-            Bitmap cacheImage = BitmapCache.getInstance().requestArtistImage(artist);
-            if (cacheImage != null && width <= cacheImage.getWidth() && height <= cacheImage.getWidth()) {
+            Bitmap cacheImage = BitmapCache.getInstance().requestArtistImage(artist, width, height);
+            if (cacheImage != null) {
                 return cacheImage;
             }
         }
 
-        final String image = mDBManager.getArtistImage(context, artist);
+        // Use the smallest stored variant that is large enough
+        final String image = mDBManager.getArtistImage(context, artist, Math.max(width, height));
 
         // Checks if the database has an image for the requested artist
         if (null != image) {
             // Create a bitmap from the data blob in the database
             Bitmap bm = BitmapUtils.decodeSampledBitmapFromFile(image, width, height);
+            // Reference for the caller
+            BitmapPool.getInstance().acquire(bm);
             BitmapCache.getInstance().putArtistImage(artist, bm);
             return bm;
         }
@@ -241,8 +268,8 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
 
         if (!skipCache) {
             // Try cache first
-            Bitmap cacheBitmap = BitmapCache.getInstance().requestAlbumBitmap(album);
-            if (cacheBitmap != null && width <= cacheBitmap.getWidth() && height <= cacheBitmap.getWidth()) {
+            Bitmap cacheBitmap = BitmapCache.getInstance().requestAlbumBitmap(album, width, height);
+            if (cacheBitmap != null) {
                 return cacheBitmap;
             }
         }
@@ -252,16 +279,21 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
         if (albumURL != null && !albumURL.isEmpty()) {
             // Local album art found (android database)
             Bitmap bm = BitmapUtils.decodeSampledBitmapFromFile(albumURL, width, height);
+            // Reference for the caller
+            BitmapPool.getInstance().acquire(bm);
             BitmapCache.getInstance().putAlbumBitmap(album, bm);
             return bm;
         }
 
-        final String image = mDBManager.getAlbumImage(context, album);
+        // Use the smallest stored variant that is large enough
+        final String image = mDBManager.getAlbumImage(context, album, Math.max(width, height));
 
         // Checks if the database has an image for the requested album
         if (null != image) {
             // Create a bitmap from the data blob in the database
             Bitmap bm = BitmapUtils.decodeSampledBitmapFromFile(image, width, height);
+            // Reference for the caller
+            BitmapPool.getInstance().acquire(bm);
             BitmapCache.getInstance().putAlbumBitmap(album, bm);
             return bm;
         }
@@ -274,7 +306,7 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
         }
 
         // get album information for the current track
-        AlbumModel album = MusicLibraryHelper.createAlbumModelFromKey(track.getTrackAlbumKey(), context);
+        AlbumModel album = getAlbumForTrack(track, context);
         if (album == null) {
             return null;
         }
@@ -282,6 +314,29 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
         return getImage(album, width, height, skipCache, context);
     }
 
+    /**
+     * Returns the album of the given track. The album is only queried from the mediastore
+     * if it is not part of the album cache. Albums that are not part of the mediastore are cached as well.
+     *
+     * @param track   The track to get the album for.
+     * @param context The application context to access the content resolver.
+     * @return The {@link AlbumModel} of the track or null if the album is not part of the mediastore.
+     */
+    public AlbumModel getAlbumForTrack(final TrackModel track, final Context context) {
+        final String albumKey = track.getTrackAlbumKey();
+        if (albumKey == null) {
+            return null;
+        }
+
+        AlbumModel album = mAlbumCache.get(albumKey);
+        if (album == null) {
+            album = MusicLibraryHelper.createAlbumModelFromKey(albumKey, context);
+            mAlbumCache.put(albumKey, album != null ? album : MISSING_ALBUM);
+        }
+
+        return album != MISSING_ALBUM ? album : null;
+    }
+
     /**
      * Starts an asynchronous fetch for the image of the given artist.
      *
@@ -366,10 +421,14 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
      * @param trackModel Track to be used for image fetching
      */
     public void fetchImage(final TrackModel trackModel, final Context context) {
-        // Create a dummy album
-        AlbumModel album = new AlbumModel(trackModel.getTrackAlbumName(), null,
-                trackModel.getTrackArtistName(), trackModel.getTrackAlbumKey(),
-                MusicLibraryHelper.getAlbumIDFromKey(trackModel.getTrackAlbumKey(), context));
+        AlbumModel album = getAlbumForTrack(trackModel, context);
+
+        if (album == null) {
+            // Create a dummy album
+            album = new AlbumModel(trackModel.getTrackAlbumName(), null,
+                    trackModel.getTrackArtistName(), trackModel.getTrackAlbumKey(),
+                    MusicLibraryHelper.getAlbumIDFromKey(trackModel.getTrackAlbumKey(), context));
+        }
 
         fetchImage(album, context);
     }
@@ -512,6 +571,21 @@ public class ArtworkManager implements ArtProvider.ArtFetchError, InsertImageTas
         context.sendBroadcast(newImageIntent);
     }
 
+    /**
+     * Observer that clears the album cache if the mediastore reports a change.
+     */
+    private class MediaStoreObserver extends ContentObserver {
+
+        MediaStoreObserver() {
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            mAlbumCache.evictAll();
+        }
+    }
+
     private class ConnectionStateReceiver extends BroadcastReceiver {
 
         @Override
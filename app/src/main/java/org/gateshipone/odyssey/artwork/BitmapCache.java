@@ -20,22 +20,25 @@
  *
  */
 
+
 package org.gateshipone.odyssey.artwork;
 
 import android.graphics.Bitmap;
-import android.util.Log;
 
 import org.gateshipone.odyssey.models.AlbumModel;
 import org.gateshipone.odyssey.models.ArtistModel;
 
-import java.util.Map;
-
-import androidx.annotation.NonNull;
-import androidx.collection.LruCache;
-
 /**
  * Simple LRU-based caching for album & artist images. This could reduce CPU usage
- * for the cost of memory usage by caching decoded {@link Bitmap} objects in a {@link LruCache}.
+ * for the cost of memory usage by caching decoded {@link Bitmap} objects.
+ * <p>
+ * The cache is split in shards that are locked independently, so concurrent image loaders rarely wait for each other.
+ * Entries are keyed by a primitive key calculated from the album or artist id (or a hash of the names
+ * if no id is available) and a size class, so one item can be cached in multiple resolutions at once
+ * (e.g. for list and grid views).
+ * <p>
+ * The cache holds a {@link BitmapPool} reference for each cached bitmap and adds a reference for the caller
+ * to each returned bitmap. Evicted bitmaps without other references are reused for new decodes.
  */
 public class BitmapCache {
     private static final String TAG = BitmapCache.class.getSimpleName();
@@ -48,19 +51,31 @@ public class BitmapCache {
     private static final int mCacheSize = mMaxMemory / 4;
 
     /**
-     * Hash prefix for album images
+     * Number of independently locked shards, must be a power of two.
+     */
+    private static final int SHARD_COUNT = 8;
+
+    /**
+     * Number of hash buckets per shard, must be a power of two.
+     */
+    private static final int SHARD_BUCKETS = 256;
+
+    /**
+     * Size classes are the rounded up binary logarithm of the larger bitmap dimension (up to 8192 pixels).
      */
-    private static final String ALBUM_PREFIX = "A_";
+    private static final int MAX_SIZE_CLASS = 13;
 
     /**
-     * Hash prefix for artist images
+     * Key type for album images
      */
-    private static final String ARTIST_PREFIX = "B_";
+    private static final long TYPE_ALBUM = 0;
 
     /**
-     * Private cache instance
+     * Key type for artist images
      */
-    private LruCache<String, Bitmap> mCache;
+    private static final long TYPE_ARTIST = 1;
+
+    private final Shard[] mShards;
 
     /**
      * Singleton instance
@@ -68,15 +83,10 @@ public class BitmapCache {
     private static BitmapCache mInstance;
 
     private BitmapCache() {
-        mCache = new LruCache<String, Bitmap>(mCacheSize) {
-            @Override
-            protected int sizeOf(@NonNull String key, @NonNull Bitmap bitmap) {
-                // The cache size will be measured in kilobytes rather than
-                // number of items.
-                return bitmap.getByteCount() / 1024;
-            }
-
-        };
+        mShards = new Shard[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            mShards[i] = new Shard(mCacheSize / SHARD_COUNT);
+        }
     }
 
     public static synchronized BitmapCache getInstance() {
@@ -90,10 +100,22 @@ public class BitmapCache {
      * Tries to get an album image from the cache
      *
      * @param album Album object to try
-     * @return Bitmap if cache hit, null otherwise
+     * @return The largest cached bitmap if cache hit, null otherwise
+     */
+    public Bitmap requestAlbumBitmap(AlbumModel album) {
+        return getLargest(getAlbumKey(album));
+    }
+
+    /**
+     * Tries to get an album image with at least the given size from the cache
+     *
+     * @param album  Album object to try
+     * @param width  The minimum width of the image
+     * @param height The minimum height of the image
+     * @return The smallest cached bitmap that is large enough if cache hit, null otherwise
      */
-    public synchronized Bitmap requestAlbumBitmap(AlbumModel album) {
-        return mCache.get(getAlbumHash(album));
+    public Bitmap requestAlbumBitmap(AlbumModel album, int width, int height) {
+        return get(getAlbumKey(album), width, height);
     }
 
     /**
@@ -102,43 +124,39 @@ public class BitmapCache {
      * @param album Album object to use for cache key
      * @param bm    Bitmap to store in cache
      */
-    public synchronized void putAlbumBitmap(AlbumModel album, Bitmap bm) {
+    public void putAlbumBitmap(AlbumModel album, Bitmap bm) {
         if (bm != null) {
-            mCache.put(getAlbumHash(album), bm);
+            put(getAlbumKey(album), bm);
         }
     }
 
     /**
-     * Removes an album image from the cache
+     * Removes all sizes of an album image from the cache
      *
      * @param album Album object to use for cache key
      */
-    public synchronized void removeAlbumBitmap(AlbumModel album) {
-        mCache.remove(getAlbumHash(album));
+    public void removeAlbumBitmap(AlbumModel album) {
+        remove(getAlbumKey(album));
     }
 
     /**
      * Private hash method for cache key
      *
      * @param album Album to calculate the key from
-     * @return Hash string for cache key
+     * @return Key for the album
      */
-    private String getAlbumHash(AlbumModel album) {
-        String hashString = ALBUM_PREFIX;
+    private static long getAlbumKey(AlbumModel album) {
         final long albumID = album.getAlbumID();
 
         // Use albumID as key if available
         if (albumID != -1) {
-            hashString += String.valueOf(albumID);
-            return hashString;
+            return createIdKey(albumID, TYPE_ALBUM);
         }
 
         // Else use artist and album name
-        final String albumArtist = album.getArtistName();
-        final String albumName = album.getAlbumName();
-
-        hashString += albumArtist + '_' + albumName;
-        return hashString;
+        long hash = hashString(FNV_OFFSET_BASIS, album.getArtistName());
+        hash = hashString((hash ^ '_') * FNV_PRIME, album.getAlbumName());
+        return createHashKey(hash, TYPE_ALBUM);
     }
 
     /*
@@ -149,10 +167,22 @@ public class BitmapCache {
      * Tries to get an artist image from the cache
      *
      * @param artist Artist object to check in cache
-     * @return Bitmap if cache hit, null otherwise
+     * @return The largest cached bitmap if cache hit, null otherwise
+     */
+    public Bitmap requestArtistImage(ArtistModel artist) {
+        return getLargest(getArtistKey(artist));
+    }
+
+    /**
+     * Tries to get an artist image with at least the given size from the cache
+     *
+     * @param artist Artist object to check in cache
+     * @param width  The minimum width of the image
+     * @param height The minimum height of the image
+     * @return The smallest cached bitmap that is large enough if cache hit, null otherwise
      */
-    public synchronized Bitmap requestArtistImage(ArtistModel artist) {
-        return mCache.get(getArtistHash(artist));
+    public Bitmap requestArtistImage(ArtistModel artist, int width, int height) {
+        return get(getArtistKey(artist), width, height);
     }
 
     /**
@@ -161,63 +191,325 @@ public class BitmapCache {
      * @param artist Artist object used as cache key
      * @param bm     Bitmap to store in cache
      */
-    public synchronized void putArtistImage(ArtistModel artist, Bitmap bm) {
+    public void putArtistImage(ArtistModel artist, Bitmap bm) {
         if (bm != null) {
-            mCache.put(getArtistHash(artist), bm);
+            put(getArtistKey(artist), bm);
         }
     }
 
     /**
-     * Removes an artist image from the cache
+     * Removes all sizes of an artist image from the cache
      *
      * @param artist Artist object used as cache key
      */
-    public synchronized void removeArtistImage(ArtistModel artist) {
-        mCache.remove(getArtistHash(artist));
+    public void removeArtistImage(ArtistModel artist) {
+        remove(getArtistKey(artist));
     }
 
     /**
      * Private hash method for cache key
      *
      * @param artist Artist used as cache key
-     * @return Hash string for cache key
+     * @return Key for the artist
      */
-    private String getArtistHash(ArtistModel artist) {
-        String hashString = ARTIST_PREFIX;
-
+    private static long getArtistKey(ArtistModel artist) {
         final long artistID = artist.getArtistID();
 
-        // Use albumID as key if available
+        // Use artistID as key if available
         if (artistID != -1) {
-            hashString += String.valueOf(artistID);
-            return hashString;
+            return createIdKey(artistID, TYPE_ARTIST);
         }
 
-        hashString += artist.getArtistName();
+        return createHashKey(hashString(FNV_OFFSET_BASIS, artist.getArtistName()), TYPE_ARTIST);
+    }
 
-        return hashString;
+    /**
+     * @return The number of lookups that returned a bitmap.
+     */
+    public long getHitCount() {
+        long count = 0;
+        for (Shard shard : mShards) {
+            synchronized (shard) {
+                count += shard.mHitCount;
+            }
+        }
+        return count;
     }
 
     /**
-     * Debug method to provide performance evaluation metrics
+     * @return The number of lookups that returned no bitmap.
      */
-    private void printUsage() {
-        Log.v(TAG, "Cache usage: " + ((mCache.size() * 100) / mCache.maxSize()) + '%');
-        int missCount = mCache.missCount();
-        int hitCount = mCache.hitCount();
-        if (missCount > 0) {
-            Log.v(TAG, "Cache hit count: " + hitCount + " miss count: " + missCount + " Miss rate: " + ((hitCount * 100) / missCount) + '%');
+    public long getMissCount() {
+        long count = 0;
+        for (Shard shard : mShards) {
+            synchronized (shard) {
+                count += shard.mMissCount;
+            }
         }
-        Log.v(TAG, "Memory usage: " + (getMemoryUsage() / (1024 * 1024)) + " MB");
+        return count;
     }
 
-    private long getMemoryUsage() {
-        Map<String, Bitmap> snapShot = mCache.snapshot();
-        long bytes = 0;
-        for (Bitmap bitmap : snapShot.values()) {
-            bytes += bitmap.getAllocationByteCount();
+    /**
+     * @return The number of bitmaps that were removed to keep the cache below its maximum size.
+     */
+    public long getEvictionCount() {
+        long count = 0;
+        for (Shard shard : mShards) {
+            synchronized (shard) {
+                count += shard.mEvictionCount;
+            }
         }
+        return count;
+    }
+
+    /*
+     * Begin of key handling
+     */
 
-        return bytes;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Ids are never negative so the keys for ids have the sign bit cleared.
+     * The lowest bit holds the type of the image.
+     */
+    private static long createIdKey(final long id, final long type) {
+        return (id << 1) | type;
+    }
+
+    /**
+     * Keys for hashed names have the sign bit set to avoid collisions with id keys.
+     */
+    private static long createHashKey(final long hash, final long type) {
+        return Long.MIN_VALUE | (hash << 1) | type;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the given string that works without allocating the string bytes.
+     */
+    private static long hashString(long hash, final String value) {
+        if (value == null) {
+            return hash;
+        }
+
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * @return The size class of the given bitmap dimension.
+     */
+    private static int getSizeClass(final int dimension) {
+        if (dimension <= 1) {
+            return 0;
+        }
+        return Math.min(MAX_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(dimension - 1));
+    }
+
+    private Shard getShard(final long key) {
+        return mShards[mix(key) & (SHARD_COUNT - 1)];
+    }
+
+    private Bitmap get(final long key, final int width, final int height) {
+        final Shard shard = getShard(key);
+        synchronized (shard) {
+            // A bitmap of a lower size class can never be large enough
+            for (int sizeClass = getSizeClass(Math.max(width, height)); sizeClass <= MAX_SIZE_CLASS; sizeClass++) {
+                final Node node = shard.find(key, sizeClass);
+                if (node != null && width <= node.mBitmap.getWidth() && height <= node.mBitmap.getHeight()) {
+                    shard.moveToFront(node);
+                    shard.mHitCount++;
+                    BitmapPool.getInstance().acquire(node.mBitmap);
+                    return node.mBitmap;
+                }
+            }
+            shard.mMissCount++;
+            return null;
+        }
+    }
+
+    private Bitmap getLargest(final long key) {
+        final Shard shard = getShard(key);
+        synchronized (shard) {
+            for (int sizeClass = MAX_SIZE_CLASS; sizeClass >= 0; sizeClass--) {
+                final Node node = shard.find(key, sizeClass);
+                if (node != null) {
+                    shard.moveToFront(node);
+                    shard.mHitCount++;
+                    BitmapPool.getInstance().acquire(node.mBitmap);
+                    return node.mBitmap;
+                }
+            }
+            shard.mMissCount++;
+            return null;
+        }
+    }
+
+    private void put(final long key, final Bitmap bitmap) {
+        final int sizeClass = getSizeClass(Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        final Shard shard = getShard(key);
+        synchronized (shard) {
+            shard.put(key, sizeClass, bitmap);
+        }
+    }
+
+    private void remove(final long key) {
+        final Shard shard = getShard(key);
+        synchronized (shard) {
+            for (int sizeClass = 0; sizeClass <= MAX_SIZE_CLASS; sizeClass++) {
+                final Node node = shard.find(key, sizeClass);
+                if (node != null) {
+                    shard.removeNode(node);
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        private long mKey;
+
+        private int mSizeClass;
+
+        private Bitmap mBitmap;
+
+        /**
+         * Size of the bitmap in kilobytes
+         */
+        private int mSize;
+
+        private Node mNextInBucket;
+
+        private Node mPrevious;
+
+        private Node mNext;
+    }
+
+    /**
+     * One part of the cache. All methods must be called while holding the lock of the shard.
+     */
+    private static final class Shard {
+        private final Node[] mBuckets = new Node[SHARD_BUCKETS];
+
+        /**
+         * Sentinel of the LRU list. The most recently used entry follows the sentinel.
+         */
+        private final Node mHead = new Node();
+
+        private final int mMaxSize;
+
+        private int mSize;
+
+        private long mHitCount;
+
+        private long mMissCount;
+
+        private long mEvictionCount;
+
+        private Shard(final int maxSize) {
+            mMaxSize = maxSize;
+            mHead.mNext = mHead;
+            mHead.mPrevious = mHead;
+        }
+
+        private static int getBucket(final long key, final int sizeClass) {
+            return mix(key * 31 + sizeClass) & (SHARD_BUCKETS - 1);
+        }
+
+        private Node find(final long key, final int sizeClass) {
+            Node node = mBuckets[getBucket(key, sizeClass)];
+            while (node != null) {
+                if (node.mKey == key && node.mSizeClass == sizeClass) {
+                    return node;
+                }
+                node = node.mNextInBucket;
+            }
+            return null;
+        }
+
+        private void put(final long key, final int sizeClass, final Bitmap bitmap) {
+            // Acquire first in case the same bitmap is already cached for this key
+            BitmapPool.getInstance().acquire(bitmap);
+
+            Node node = find(key, sizeClass);
+            if (node == null) {
+                node = new Node();
+                node.mKey = key;
+                node.mSizeClass = sizeClass;
+
+                final int bucket = getBucket(key, sizeClass);
+                node.mNextInBucket = mBuckets[bucket];
+                mBuckets[bucket] = node;
+            } else {
+                mSize -= node.mSize;
+                unlink(node);
+                BitmapPool.getInstance().release(node.mBitmap);
+            }
+
+            node.mBitmap = bitmap;
+            // The cache size will be measured in kilobytes rather than number of items.
+            node.mSize = bitmap.getByteCount() / 1024;
+            mSize += node.mSize;
+            linkFirst(node);
+
+            trimToSize();
+        }
+
+        private void moveToFront(final Node node) {
+            if (mHead.mNext != node) {
+                unlink(node);
+                linkFirst(node);
+            }
+        }
+
+        private void removeNode(final Node node) {
+            final int bucket = getBucket(node.mKey, node.mSizeClass);
+            Node previous = null;
+            Node current = mBuckets[bucket];
+            while (current != node) {
+                previous = current;
+                current = current.mNextInBucket;
+            }
+
+            if (previous == null) {
+                mBuckets[bucket] = node.mNextInBucket;
+            } else {
+                previous.mNextInBucket = node.mNextInBucket;
+            }
+
+            unlink(node);
+            mSize -= node.mSize;
+            BitmapPool.getInstance().release(node.mBitmap);
+        }
+
+        private void trimToSize() {
+            while (mSize > mMaxSize && mHead.mPrevious != mHead) {
+                removeNode(mHead.mPrevious);
+                mEvictionCount++;
+            }
+        }
+
+        private void linkFirst(final Node node) {
+            node.mPrevious = mHead;
+            node.mNext = mHead.mNext;
+            mHead.mNext.mPrevious = node;
+            mHead.mNext = node;
+        }
+
+        private void unlink(final Node node) {
+            node.mPrevious.mNext = node.mNext;
+            node.mNext.mPrevious = node.mPrevious;
+        }
     }
 }
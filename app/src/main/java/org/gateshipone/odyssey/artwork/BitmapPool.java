@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.artwork;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of unused bitmaps whose memory can be reused for new decodes with {@link android.graphics.BitmapFactory.Options#inBitmap}.
+ * <p>
+ * Bitmaps decoded with {@link #register(Bitmap)} are reference counted. The {@link BitmapCache} holds one reference
+ * for each cached bitmap, and every bitmap returned by the cache or the {@link ArtworkManager} carries one reference
+ * for the caller. Callers that know when a bitmap is no longer shown (e.g. recycled view items) give it back with
+ * {@link #release(Bitmap)}. Once no reference is left the bitmap is moved to the pool. Bitmaps that are never
+ * released are simply collected by the garbage collector.
+ */
+public class BitmapPool {
+
+    /**
+     * Maximum size of the pool in bytes
+     */
+    private static final long MAX_POOL_SIZE = Runtime.getRuntime().maxMemory() / 16;
+
+    /**
+     * A pooled bitmap is only used for a decode if it is not more than this factor larger than needed.
+     */
+    private static final int MAX_SIZE_FACTOR = 2;
+
+    /**
+     * Reference counts of all registered bitmaps that are not in the pool.
+     */
+    private final WeakHashMap<Bitmap, int[]> mReferences = new WeakHashMap<>();
+
+    /**
+     * Pooled bitmaps by their allocation size in bytes.
+     */
+    private final TreeMap<Integer, ArrayList<Bitmap>> mPool = new TreeMap<>();
+
+    /**
+     * Pooled bitmaps in the order they were added to remove the oldest ones first.
+     */
+    private final ArrayList<Bitmap> mPoolOrder = new ArrayList<>();
+
+    private long mPoolSize;
+
+    /**
+     * Singleton instance
+     */
+    private static BitmapPool mInstance;
+
+    private BitmapPool() {
+    }
+
+    public static synchronized BitmapPool getInstance() {
+        if (mInstance == null) {
+            mInstance = new BitmapPool();
+        }
+        return mInstance;
+    }
+
+    /**
+     * Returns a pooled bitmap that can hold a bitmap of the given size and config.
+     *
+     * @param byteCount The number of bytes needed for the decoded bitmap.
+     * @return A bitmap that can be used as {@link android.graphics.BitmapFactory.Options#inBitmap} or null.
+     */
+    public synchronized Bitmap get(final int byteCount) {
+        final Map.Entry<Integer, ArrayList<Bitmap>> entry = mPool.ceilingEntry(byteCount);
+        if (entry == null || entry.getKey() > (long) byteCount * MAX_SIZE_FACTOR) {
+            return null;
+        }
+
+        final ArrayList<Bitmap> bitmaps = entry.getValue();
+        final Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+        if (bitmaps.isEmpty()) {
+            mPool.remove(entry.getKey());
+        }
+        mPoolOrder.remove(bitmap);
+        mPoolSize -= entry.getKey();
+
+        return bitmap;
+    }
+
+    /**
+     * Gives a bitmap that was taken with {@link #get(int)} but could not be used back to the pool.
+     */
+    public synchronized void put(final Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+
+        final int size = bitmap.getAllocationByteCount();
+        if (size > MAX_POOL_SIZE) {
+            return;
+        }
+
+        ArrayList<Bitmap> bitmaps = mPool.get(size);
+        if (bitmaps == null) {
+            bitmaps = new ArrayList<>();
+            mPool.put(size, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mPoolOrder.add(bitmap);
+        mPoolSize += size;
+
+        trimToSize();
+    }
+
+    /**
+     * Starts reference counting for a newly decoded mutable bitmap. The bitmap has no references yet.
+     */
+    public synchronized void register(final Bitmap bitmap) {
+        if (bitmap != null && bitmap.isMutable()) {
+            mReferences.put(bitmap, new int[]{0});
+        }
+    }
+
+    /**
+     * Adds a reference to the bitmap. Has no effect for bitmaps that are not registered.
+     */
+    public synchronized void acquire(final Bitmap bitmap) {
+        final int[] references = bitmap == null ? null : mReferences.get(bitmap);
+        if (references != null) {
+            references[0]++;
+        }
+    }
+
+    /**
+     * Removes a reference from the bitmap. If no reference is left the bitmap is moved to the pool.
+     * Has no effect for bitmaps that are not registered.
+     */
+    public synchronized void release(final Bitmap bitmap) {
+        final int[] references = bitmap == null ? null : mReferences.get(bitmap);
+        if (references == null) {
+            return;
+        }
+
+        if (--references[0] <= 0) {
+            mReferences.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    private void trimToSize() {
+        while (mPoolSize > MAX_POOL_SIZE && !mPoolOrder.isEmpty()) {
+            final Bitmap bitmap = mPoolOrder.remove(0);
+            final int size = bitmap.getAllocationByteCount();
+
+            final ArrayList<Bitmap> bitmaps = mPool.get(size);
+            bitmaps.remove(bitmap);
+            if (bitmaps.isEmpty()) {
+                mPool.remove(size);
+            }
+            mPoolSize -= size;
+        }
+    }
+}
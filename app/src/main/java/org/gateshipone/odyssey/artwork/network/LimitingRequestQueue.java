@@ -20,9 +20,12 @@
  *
  */
 
+
 package org.gateshipone.odyssey.artwork.network;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.android.volley.Cache;
@@ -33,29 +36,75 @@ import com.android.volley.toolbox.BasicNetwork;
 import com.android.volley.toolbox.DiskBasedCache;
 import com.android.volley.toolbox.HurlStack;
 
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.LinkedBlockingQueue;
 
+/**
+ * Request queue that applies a rate policy per host.
+ * <p>
+ * Hosts of web services that require a request limit (e.g. one request per second for MusicBrainz) get a token bucket.
+ * All other hosts (e.g. the CDNs serving the image files) are not rate limited, only the number of concurrent
+ * requests per host is limited.
+ */
 public class LimitingRequestQueue extends RequestQueue implements RequestQueue.RequestFinishedListener {
     private static final String TAG = LimitingRequestQueue.class.getSimpleName();
 
-    private Timer mLimiterTimer;
+    /**
+     * Number of parallel network threads of the volley queue.
+     */
+    private static final int NETWORK_THREAD_COUNT = 4;
+
+    /**
+     * Maximum number of concurrent requests to a host without a rate limit.
+     */
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * Policies for hosts that require a rate limit. All other hosts get a default policy without rate limit.
+     */
+    private static final Map<String, HostPolicy> RATE_LIMITED_HOSTS = new HashMap<>();
+
+    static {
+        // MusicBrainz allows one request per second
+        RATE_LIMITED_HOSTS.put("musicbrainz.org", new HostPolicy(1, 1, 1));
+        RATE_LIMITED_HOSTS.put("ws.audioscrobbler.com", new HostPolicy(2, 2, 1));
+        RATE_LIMITED_HOSTS.put("webservice.fanart.tv", new HostPolicy(2, 2, 1));
+    }
 
     private static LimitingRequestQueue mInstance;
 
-    private final Queue<Request<?>> mLimitingRequestQueue;
+    /**
+     * Requests that are waiting for their host policy, in the order they were added.
+     */
+    private final LinkedList<Request<?>> mLimitingRequestQueue;
+
+    /**
+     * Current state of the policies per host.
+     */
+    private final HashMap<String, HostState> mHostStates;
+
+    /**
+     * Host of each request that was forwarded to the volley queue and is not finished yet.
+     */
+    private final HashMap<Request<?>, HostState> mRunningRequests;
+
+    private final Timer mLimiterTimer;
 
     /**
-     * Wait 1000ms between every request
+     * Time (elapsed realtime) of the next scheduled dispatch or 0 if no dispatch is scheduled.
      */
-    private static final int REQUEST_RATE = 1000;
+    private long mNextDispatchTime;
 
     private LimitingRequestQueue(Cache cache, Network network) {
-        super(cache, network, 1);
-        mLimitingRequestQueue = new LinkedBlockingQueue<>();
-        mLimiterTimer = null;
+        super(cache, network, NETWORK_THREAD_COUNT);
+        mLimitingRequestQueue = new LinkedList<>();
+        mHostStates = new HashMap<>();
+        mRunningRequests = new HashMap<>();
+        mLimiterTimer = new Timer("LimitingRequestQueue", true);
         super.addRequestFinishedListener(this);
     }
 
@@ -74,6 +123,13 @@ public class LimitingRequestQueue extends RequestQueue implements RequestQueue.R
     @Override
     public void onRequestFinished(Request request) {
         Log.v(TAG, "Request finished");
+        synchronized (mLimitingRequestQueue) {
+            final HostState hostState = mRunningRequests.remove(request);
+            if (hostState != null) {
+                hostState.mRunningRequests--;
+            }
+        }
+        dispatchRequests();
     }
 
     @Override
@@ -84,12 +140,8 @@ public class LimitingRequestQueue extends RequestQueue implements RequestQueue.R
         Log.v(TAG, "RATE LIMITING REQUEST ADDED");
         synchronized (mLimitingRequestQueue) {
             mLimitingRequestQueue.add(request);
-            if (null == mLimiterTimer) {
-                // Timer currently not running
-                mLimiterTimer = new Timer();
-                mLimiterTimer.schedule(new LimitingRequestQueue.LimiterTask(), 0, REQUEST_RATE);
-            }
         }
+        dispatchRequests();
         return request;
     }
 
@@ -97,22 +149,72 @@ public class LimitingRequestQueue extends RequestQueue implements RequestQueue.R
         super.add(request);
     }
 
+    /**
+     * Forwards all queued requests whose host policy allows it to the volley queue and schedules
+     * the next dispatch for the requests that wait for their rate limit.
+     */
+    private void dispatchRequests() {
+        synchronized (mLimitingRequestQueue) {
+            final long now = SystemClock.elapsedRealtime();
+            long nextDispatchTime = Long.MAX_VALUE;
+
+            final Iterator<Request<?>> iterator = mLimitingRequestQueue.iterator();
+            while (iterator.hasNext()) {
+                final Request<?> request = iterator.next();
+                final HostState hostState = getHostState(request);
+
+                if (hostState.mRunningRequests >= hostState.mPolicy.mMaxConcurrentRequests) {
+                    // dispatched again when a request of this host finishes
+                    continue;
+                }
+
+                final long waitTime = hostState.getWaitTime(now);
+                if (waitTime > 0) {
+                    nextDispatchTime = Math.min(nextDispatchTime, now + waitTime);
+                    continue;
+                }
+
+                hostState.acquire(now);
+                hostState.mRunningRequests++;
+                mRunningRequests.put(request, hostState);
+                iterator.remove();
+
+                realAddRequest(request);
+                Log.v(TAG, "RATE LIMITING FORWARED");
+            }
+
+            if (nextDispatchTime != Long.MAX_VALUE && (mNextDispatchTime == 0 || nextDispatchTime < mNextDispatchTime)) {
+                mNextDispatchTime = nextDispatchTime;
+                mLimiterTimer.schedule(new LimiterTask(), nextDispatchTime - now);
+            }
+        }
+    }
+
+    private HostState getHostState(final Request<?> request) {
+        String host = Uri.parse(request.getUrl()).getHost();
+        if (host == null) {
+            host = "";
+        }
+
+        HostState hostState = mHostStates.get(host);
+        if (hostState == null) {
+            HostPolicy policy = RATE_LIMITED_HOSTS.get(host);
+            if (policy == null) {
+                policy = new HostPolicy(0, 0, DEFAULT_MAX_CONCURRENT_REQUESTS);
+            }
+            hostState = new HostState(policy);
+            mHostStates.put(host, hostState);
+        }
+        return hostState;
+    }
+
     private class LimiterTask extends TimerTask {
         @Override
         public void run() {
             synchronized (mLimitingRequestQueue) {
-                Request request = mLimitingRequestQueue.poll();
-                if (null != request) {
-                    realAddRequest(request);
-                    Log.v(TAG, "RATE LIMITING FORWARED");
-                } else {
-                    // Stop the timer, no requests left
-                    mLimiterTimer.cancel();
-                    mLimiterTimer.purge();
-                    mLimiterTimer = null;
-                    Log.v(TAG, "RATE LIMITING EMPTY, STOPPING");
-                }
+                mNextDispatchTime = 0;
             }
+            dispatchRequests();
         }
     }
 
@@ -124,15 +226,84 @@ public class LimitingRequestQueue extends RequestQueue implements RequestQueue.R
     public void cancelAll(RequestFilter filter) {
         super.cancelAll(filter);
         synchronized (mLimitingRequestQueue) {
-            for (Request<?> request : mLimitingRequestQueue) {
+            final Iterator<Request<?>> iterator = mLimitingRequestQueue.iterator();
+            while (iterator.hasNext()) {
+                final Request<?> request = iterator.next();
                 if (filter.apply(request)) {
                     Log.v(TAG, "Canceling request: " + request);
                     request.cancel();
-                    mLimitingRequestQueue.remove(request);
+                    iterator.remove();
                 }
             }
         }
     }
 
-}
+    /**
+     * Rate policy of a host.
+     */
+    private static class HostPolicy {
+        /**
+         * Allowed requests per second or 0 for no rate limit.
+         */
+        private final double mRequestsPerSecond;
+
+        /**
+         * Maximum number of requests that can be sent at once after an idle period.
+         */
+        private final int mBurstSize;
+
+        private final int mMaxConcurrentRequests;
 
+        HostPolicy(final double requestsPerSecond, final int burstSize, final int maxConcurrentRequests) {
+            mRequestsPerSecond = requestsPerSecond;
+            mBurstSize = burstSize;
+            mMaxConcurrentRequests = maxConcurrentRequests;
+        }
+    }
+
+    /**
+     * Token bucket and number of running requests of a host.
+     */
+    private static class HostState {
+        private final HostPolicy mPolicy;
+
+        private double mTokens;
+
+        private long mLastRefillTime;
+
+        private int mRunningRequests;
+
+        HostState(final HostPolicy policy) {
+            mPolicy = policy;
+            mTokens = policy.mBurstSize;
+            mLastRefillTime = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * @return The time in ms until a request to this host is allowed.
+         */
+        long getWaitTime(final long now) {
+            if (mPolicy.mRequestsPerSecond <= 0) {
+                return 0;
+            }
+
+            refill(now);
+            if (mTokens >= 1) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - mTokens) * 1000 / mPolicy.mRequestsPerSecond);
+        }
+
+        void acquire(final long now) {
+            if (mPolicy.mRequestsPerSecond > 0) {
+                refill(now);
+                mTokens -= 1;
+            }
+        }
+
+        private void refill(final long now) {
+            mTokens = Math.min(mPolicy.mBurstSize, mTokens + (now - mLastRefillTime) * mPolicy.mRequestsPerSecond / 1000);
+            mLastRefillTime = now;
+        }
+    }
+}
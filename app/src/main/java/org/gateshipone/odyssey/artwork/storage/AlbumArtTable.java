@@ -38,6 +38,11 @@ public class AlbumArtTable {
 
     public static final String COLUMN_IMAGE_NOT_FOUND = "image_not_found";
 
+    /**
+     * Bitmask of the pre-scaled variants that exist for the image, see {@link ArtworkThumbnails}.
+     */
+    public static final String COLUMN_THUMBNAILS = "thumbnails";
+
     private static final String DATABASE_CREATE = "CREATE TABLE if not exists " +
             TABLE_NAME +
             " (" +
@@ -46,9 +51,12 @@ public class AlbumArtTable {
             COLUMN_ALBUM_MBID + " text," +
             COLUMN_ALBUM_ID + " text primary key," +
             COLUMN_IMAGE_NOT_FOUND + " integer," +
-            COLUMN_IMAGE_FILE_PATH + " text" +
+            COLUMN_IMAGE_FILE_PATH + " text," +
+            COLUMN_THUMBNAILS + " integer default 0" +
             ");";
 
+    private static final String ADD_THUMBNAILS_COLUMN = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_THUMBNAILS + " integer default 0";
+
     private static final String DATABASE_DROP = "DROP TABLE if exists " + TABLE_NAME;
 
     public static void createTable(final SQLiteDatabase database) {
@@ -60,4 +68,8 @@ public class AlbumArtTable {
         // drop table if already existing
         database.execSQL(DATABASE_DROP);
     }
+
+    public static void addThumbnailsColumn(final SQLiteDatabase database) {
+        database.execSQL(ADD_THUMBNAILS_COLUMN);
+    }
 }
@@ -26,7 +26,9 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import org.gateshipone.odyssey.models.AlbumModel;
 import org.gateshipone.odyssey.models.ArtistModel;
@@ -46,7 +48,7 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
     /**
      * The version of the database
      */
-    private static final int DATABASE_VERSION = 22;
+    private static final int DATABASE_VERSION = 23;
 
     private static ArtworkDatabaseManager mInstance;
 
@@ -54,13 +56,27 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
     private static final String DIRECTORY_ARTIST_IMAGES = "artistArt";
 
+    /**
+     * Query for the image of an album or artist. Returns null if the image was searched for before but not found,
+     * otherwise the bitmask of the thumbnails and the filename separated by a colon.
+     */
+    private static final String SELECT_IMAGE = "SELECT CASE WHEN %1$s=1 THEN NULL ELSE ifnull(%5$s, 0) || ':' || %2$s END FROM %3$s WHERE %4$s LIMIT 1";
+
+    /**
+     * Compiled lookup statements per thread, a {@link SQLiteStatement} must not be used by multiple threads at once.
+     */
+    private final ThreadLocal<LookupStatements> mLookupStatements = new ThreadLocal<>();
+
     private ArtworkDatabaseManager(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        // the connection is kept open, with WAL the lookups of the image loaders don't wait for each other or for inserts
+        setWriteAheadLoggingEnabled(true);
     }
 
     public static synchronized ArtworkDatabaseManager getInstance(Context context) {
         if (null == mInstance) {
-            mInstance = new ArtworkDatabaseManager(context);
+            mInstance = new ArtworkDatabaseManager(context.getApplicationContext());
         }
         return mInstance;
     }
@@ -79,115 +95,106 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (newVersion == 22) {
+        if (oldVersion < 22) {
             AlbumArtTable.dropTable(db);
             ArtistArtTable.dropTable(db);
             onCreate(db);
+        } else if (oldVersion < 23) {
+            // thumbnails of existing images are created on their first lookup
+            AlbumArtTable.addThumbnailsColumn(db);
+            ArtistArtTable.addThumbnailsColumn(db);
         }
     }
 
     /**
      * Tries to fetch an image for the album, by id (android album id), by album name and artist name or only by album name.
+     * <p>
+     * This method is not synchronized, lookups of multiple loader threads run in parallel.
      *
      * @param album The album to search for.
      * @return The byte[] containing the raw image file. This can be decoded with BitmapFactory.
      * @throws ImageNotFoundException If the image is not in the database and it was not searched for before.
      */
-    public synchronized String getAlbumImage(final Context context, final AlbumModel album) throws ImageNotFoundException {
-        final SQLiteDatabase database = getReadableDatabase();
+    public String getAlbumImage(final Context context, final AlbumModel album) throws ImageNotFoundException {
+        return getAlbumImage(context, album, 0);
+    }
+
+    /**
+     * Tries to fetch an image for the album in the given size, see {@link #getAlbumImage(Context, AlbumModel)}.
+     *
+     * @param album The album to search for.
+     * @param size  The larger side of the requested image in pixel or 0 for the full image.
+     * @return The path of the smallest stored variant of the image that is at least as large as the requested size.
+     * @throws ImageNotFoundException If the image is not in the database and it was not searched for before.
+     */
+    public String getAlbumImage(final Context context, final AlbumModel album, final int size) throws ImageNotFoundException {
+        final LookupStatements statements = getLookupStatements();
 
         final long albumId = album.getAlbumID();
         final String albumName = album.getAlbumName();
         final String artistName = album.getArtistName();
 
-        String selection;
-        String selectionArguments[];
+        final String artworkFilename;
 
         if (albumId != -1) {
-            selection = AlbumArtTable.COLUMN_ALBUM_ID + "=?";
-            selectionArguments = new String[]{String.valueOf(albumId)};
+            artworkFilename = lookupImage(statements.mAlbumById, String.valueOf(albumId));
         } else if (!artistName.isEmpty()) {
-            selection = AlbumArtTable.COLUMN_ALBUM_NAME + "=? AND " + AlbumArtTable.COLUMN_ARTIST_NAME + "=?";
-            selectionArguments = new String[]{albumName, artistName};
+            artworkFilename = lookupImage(statements.mAlbumByNameAndArtist, albumName, artistName);
         } else {
-            selection = AlbumArtTable.COLUMN_ALBUM_NAME + "=?";
-            selectionArguments = new String[]{albumName};
+            artworkFilename = lookupImage(statements.mAlbumByName, albumName);
         }
 
-        final Cursor requestCursor = database.query(AlbumArtTable.TABLE_NAME, new String[]{AlbumArtTable.COLUMN_IMAGE_FILE_PATH, AlbumArtTable.COLUMN_IMAGE_NOT_FOUND},
-                selection, selectionArguments, null, null, null);
-
-        // Check if an image was found
-        if (requestCursor.moveToFirst()) {
-            // If the not_found flag is set then return null here, to indicate that the image is not here but was searched for before.
-            if (requestCursor.getInt(requestCursor.getColumnIndex(AlbumArtTable.COLUMN_IMAGE_NOT_FOUND)) == 1) {
-                requestCursor.close();
-                database.close();
-                return null;
-            }
-            final String artworkFilename = requestCursor.getString(requestCursor.getColumnIndex(AlbumArtTable.COLUMN_IMAGE_FILE_PATH));
-
-            requestCursor.close();
-            database.close();
-
-            return FileUtils.getFullArtworkFilePath(context, artworkFilename, DIRECTORY_ALBUM_IMAGES);
+        // If the not_found flag is set then return null here, to indicate that the image is not here but was searched for before.
+        if (artworkFilename == null) {
+            return null;
         }
 
-        // If we reach this, no entry was found for the given request. Throw an exception
-        requestCursor.close();
-        database.close();
-        throw new ImageNotFoundException();
+        return resolveImage(context, artworkFilename, size, DIRECTORY_ALBUM_IMAGES,
+                AlbumArtTable.TABLE_NAME, AlbumArtTable.COLUMN_IMAGE_FILE_PATH, AlbumArtTable.COLUMN_THUMBNAILS);
     }
 
     /**
      * Tries to fetch an image for the artist, by id (android artist id) or by the artist name.
+     * <p>
+     * This method is not synchronized, lookups of multiple loader threads run in parallel.
      *
      * @param artist The artist to search for.
      * @return The byte[] containing the raw image file. This can be decoded with BitmapFactory.
      * @throws ImageNotFoundException If the image is not found and it was not searched for before.
      */
-    public synchronized String getArtistImage(final Context context, ArtistModel artist) throws ImageNotFoundException {
-        final SQLiteDatabase database = getReadableDatabase();
+    public String getArtistImage(final Context context, ArtistModel artist) throws ImageNotFoundException {
+        return getArtistImage(context, artist, 0);
+    }
+
+    /**
+     * Tries to fetch an image for the artist in the given size, see {@link #getArtistImage(Context, ArtistModel)}.
+     *
+     * @param artist The artist to search for.
+     * @param size   The larger side of the requested image in pixel or 0 for the full image.
+     * @return The path of the smallest stored variant of the image that is at least as large as the requested size.
+     * @throws ImageNotFoundException If the image is not found and it was not searched for before.
+     */
+    public String getArtistImage(final Context context, final ArtistModel artist, final int size) throws ImageNotFoundException {
+        final LookupStatements statements = getLookupStatements();
 
         final String artistName = artist.getArtistName();
         final long artistId = artist.getArtistID();
 
-        String selection;
-        String selectionArguments[];
+        final String artworkFilename;
 
         if (artistId != -1) {
-            selection = ArtistArtTable.COLUMN_ARTIST_ID + "=?";
-            selectionArguments = new String[]{String.valueOf(artistId)};
+            artworkFilename = lookupImage(statements.mArtistById, String.valueOf(artistId));
         } else {
-            selection = ArtistArtTable.COLUMN_ARTIST_NAME + "=?";
-            selectionArguments = new String[]{artistName};
+            artworkFilename = lookupImage(statements.mArtistByName, artistName);
         }
 
-        final Cursor requestCursor = database.query(ArtistArtTable.TABLE_NAME, new String[]{ArtistArtTable.COLUMN_IMAGE_FILE_PATH, ArtistArtTable.COLUMN_IMAGE_NOT_FOUND},
-                selection, selectionArguments, null, null, null);
-
-        // Check if an image was found
-        if (requestCursor.moveToFirst()) {
-            // If the not_found flag is set then return null here, to indicate that the image is not here but was searched for before.
-            if (requestCursor.getInt(requestCursor.getColumnIndex(ArtistArtTable.COLUMN_IMAGE_NOT_FOUND)) == 1) {
-                requestCursor.close();
-                database.close();
-                return null;
-            }
-
-            // get the filename for the image
-            final String artworkFilename = requestCursor.getString(requestCursor.getColumnIndex(ArtistArtTable.COLUMN_IMAGE_FILE_PATH));
-
-            requestCursor.close();
-            database.close();
-
-            return FileUtils.getFullArtworkFilePath(context, artworkFilename, DIRECTORY_ARTIST_IMAGES);
+        // If the not_found flag is set then return null here, to indicate that the image is not here but was searched for before.
+        if (artworkFilename == null) {
+            return null;
         }
 
-        // If we reach this, no entry was found for the given request. Throw an exception
-        requestCursor.close();
-        database.close();
-        throw new ImageNotFoundException();
+        return resolveImage(context, artworkFilename, size, DIRECTORY_ARTIST_IMAGES,
+                ArtistArtTable.TABLE_NAME, ArtistArtTable.COLUMN_IMAGE_FILE_PATH, ArtistArtTable.COLUMN_THUMBNAILS);
     }
 
     /**
@@ -211,6 +218,7 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         final String artistName = artist.getArtistName();
 
         String artworkFilename = null;
+        int thumbnails = 0;
         if (image != null) {
             try {
                 artworkFilename = FileUtils.createSHA256HashForString(artistIDString, artistMBID, artistName) + ".jpg";
@@ -225,6 +233,8 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
                 e.printStackTrace();
                 return;
             }
+
+            thumbnails = ArtworkThumbnails.createThumbnails(context, artworkFilename, DIRECTORY_ARTIST_IMAGES, image);
         }
 
         final ContentValues values = new ContentValues();
@@ -232,13 +242,12 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         values.put(ArtistArtTable.COLUMN_ARTIST_MBID, artistMBID);
         values.put(ArtistArtTable.COLUMN_ARTIST_NAME, artistName);
         values.put(ArtistArtTable.COLUMN_IMAGE_FILE_PATH, artworkFilename);
+        values.put(ArtistArtTable.COLUMN_THUMBNAILS, thumbnails);
 
         // If null was given as byte[] set the not_found flag for this entry.
         values.put(ArtistArtTable.COLUMN_IMAGE_NOT_FOUND, image == null ? 1 : 0);
 
         database.replace(ArtistArtTable.TABLE_NAME, "", values);
-
-        database.close();
     }
 
     /**
@@ -257,6 +266,7 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         final String albumArtistName = album.getArtistName();
 
         String artworkFilename = null;
+        int thumbnails = 0;
         if (image != null) {
             try {
                 artworkFilename = FileUtils.createSHA256HashForString(albumID, albumMBID, albumName, albumArtistName) + ".jpg";
@@ -271,6 +281,8 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
                 e.printStackTrace();
                 return;
             }
+
+            thumbnails = ArtworkThumbnails.createThumbnails(context, artworkFilename, DIRECTORY_ALBUM_IMAGES, image);
         }
 
         final ContentValues values = new ContentValues();
@@ -279,13 +291,12 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         values.put(AlbumArtTable.COLUMN_ALBUM_NAME, albumName);
         values.put(AlbumArtTable.COLUMN_ARTIST_NAME, albumArtistName);
         values.put(AlbumArtTable.COLUMN_IMAGE_FILE_PATH, artworkFilename);
+        values.put(AlbumArtTable.COLUMN_THUMBNAILS, thumbnails);
 
         // If null was given as byte[] set the not_found flag for this entry.
         values.put(AlbumArtTable.COLUMN_IMAGE_NOT_FOUND, image == null ? 1 : 0);
 
         database.replace(AlbumArtTable.TABLE_NAME, "", values);
-
-        database.close();
     }
 
     /**
@@ -296,8 +307,6 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
         database.delete(ArtistArtTable.TABLE_NAME, null, null);
 
-        database.close();
-
         FileUtils.removeArtworkDirectory(context, DIRECTORY_ARTIST_IMAGES);
     }
 
@@ -309,8 +318,6 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
         database.delete(AlbumArtTable.TABLE_NAME, null, null);
 
-        database.close();
-
         FileUtils.removeArtworkDirectory(context, DIRECTORY_ALBUM_IMAGES);
     }
 
@@ -324,8 +331,6 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         final String whereArgs[] = {"1"};
 
         database.delete(ArtistArtTable.TABLE_NAME, where, whereArgs);
-
-        database.close();
     }
 
     /**
@@ -338,8 +343,6 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
         final String whereArgs[] = {"1"};
 
         database.delete(AlbumArtTable.TABLE_NAME, where, whereArgs);
-
-        database.close();
     }
 
     /**
@@ -363,12 +366,13 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
             requestCursor.close();
 
-            FileUtils.removeArtworkFile(context, artworkFilename, DIRECTORY_ARTIST_IMAGES);
+            if (artworkFilename != null) {
+                FileUtils.removeArtworkFile(context, artworkFilename, DIRECTORY_ARTIST_IMAGES);
+                ArtworkThumbnails.removeThumbnails(context, artworkFilename, DIRECTORY_ARTIST_IMAGES);
+            }
         }
 
         database.delete(ArtistArtTable.TABLE_NAME, where, whereArgs);
-
-        database.close();
     }
 
     /**
@@ -407,11 +411,115 @@ public class ArtworkDatabaseManager extends SQLiteOpenHelper {
 
             requestCursor.close();
 
-            FileUtils.removeArtworkFile(context, artworkFilename, DIRECTORY_ALBUM_IMAGES);
+            if (artworkFilename != null) {
+                FileUtils.removeArtworkFile(context, artworkFilename, DIRECTORY_ALBUM_IMAGES);
+                ArtworkThumbnails.removeThumbnails(context, artworkFilename, DIRECTORY_ALBUM_IMAGES);
+            }
         }
 
         database.delete(AlbumArtTable.TABLE_NAME, where, whereArgs);
+    }
+
+    /**
+     * Returns the path of the variant of the image for the requested size. Creates the variants of images
+     * that were stored before thumbnails were introduced.
+     *
+     * @param lookupResult The result of a lookup statement, the bitmask of the thumbnails and the filename.
+     */
+    private String resolveImage(final Context context, final String lookupResult, final int size, final String dirName,
+                                final String tableName, final String pathColumn, final String thumbnailsColumn) {
+        final int separator = lookupResult.indexOf(':');
+        final String artworkFilename = lookupResult.substring(separator + 1);
+        int thumbnails = Integer.parseInt(lookupResult.substring(0, separator));
+
+        if (size > 0 && (thumbnails & ArtworkThumbnails.FLAG_CREATED) == 0) {
+            thumbnails = createMissingThumbnails(context, artworkFilename, dirName, tableName, pathColumn, thumbnailsColumn);
+        }
+
+        return FileUtils.getFullArtworkFilePath(context, ArtworkThumbnails.getVariantFilename(artworkFilename, thumbnails, size), dirName);
+    }
+
+    /**
+     * Creates the variants of a stored image and saves the bitmask in the database.
+     *
+     * @return The bitmask of the created variants.
+     */
+    private synchronized int createMissingThumbnails(final Context context, final String artworkFilename, final String dirName,
+                                                     final String tableName, final String pathColumn, final String thumbnailsColumn) {
+        final int thumbnails = ArtworkThumbnails.createThumbnails(context, artworkFilename, dirName);
+
+        final ContentValues values = new ContentValues();
+        values.put(thumbnailsColumn, thumbnails);
+
+        getWritableDatabase().update(tableName, values, pathColumn + "=?", new String[]{artworkFilename});
+
+        return thumbnails;
+    }
+
+    /**
+     * Returns the compiled lookup statements of the calling thread.
+     */
+    private LookupStatements getLookupStatements() {
+        LookupStatements statements = mLookupStatements.get();
+
+        if (statements == null) {
+            statements = new LookupStatements(getReadableDatabase());
+            mLookupStatements.set(statements);
+        }
 
-        database.close();
+        return statements;
+    }
+
+    /**
+     * Executes the given lookup statement.
+     *
+     * @return The filename of the image or null if the not_found flag is set.
+     * @throws ImageNotFoundException If no entry exists.
+     */
+    private static String lookupImage(final SQLiteStatement statement, final String... arguments) throws ImageNotFoundException {
+        for (int i = 0; i < arguments.length; i++) {
+            statement.bindString(i + 1, arguments[i]);
+        }
+
+        try {
+            return statement.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            // If we reach this, no entry was found for the given request.
+            throw new ImageNotFoundException();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /**
+     * The compiled lookup statements of a single thread.
+     */
+    private static class LookupStatements {
+
+        private final SQLiteStatement mAlbumById;
+
+        private final SQLiteStatement mAlbumByNameAndArtist;
+
+        private final SQLiteStatement mAlbumByName;
+
+        private final SQLiteStatement mArtistById;
+
+        private final SQLiteStatement mArtistByName;
+
+        LookupStatements(final SQLiteDatabase database) {
+            mAlbumById = compileAlbumLookup(database, AlbumArtTable.COLUMN_ALBUM_ID + "=?");
+            mAlbumByNameAndArtist = compileAlbumLookup(database, AlbumArtTable.COLUMN_ALBUM_NAME + "=? AND " + AlbumArtTable.COLUMN_ARTIST_NAME + "=?");
+            mAlbumByName = compileAlbumLookup(database, AlbumArtTable.COLUMN_ALBUM_NAME + "=?");
+            mArtistById = compileArtistLookup(database, ArtistArtTable.COLUMN_ARTIST_ID + "=?");
+            mArtistByName = compileArtistLookup(database, ArtistArtTable.COLUMN_ARTIST_NAME + "=?");
+        }
+
+        private static SQLiteStatement compileAlbumLookup(final SQLiteDatabase database, final String selection) {
+            return database.compileStatement(String.format(SELECT_IMAGE, AlbumArtTable.COLUMN_IMAGE_NOT_FOUND, AlbumArtTable.COLUMN_IMAGE_FILE_PATH, AlbumArtTable.TABLE_NAME, selection, AlbumArtTable.COLUMN_THUMBNAILS));
+        }
+
+        private static SQLiteStatement compileArtistLookup(final SQLiteDatabase database, final String selection) {
+            return database.compileStatement(String.format(SELECT_IMAGE, ArtistArtTable.COLUMN_IMAGE_NOT_FOUND, ArtistArtTable.COLUMN_IMAGE_FILE_PATH, ArtistArtTable.TABLE_NAME, selection, ArtistArtTable.COLUMN_THUMBNAILS));
+        }
     }
 }
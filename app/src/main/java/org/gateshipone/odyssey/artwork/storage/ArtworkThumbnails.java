@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.artwork.storage;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.gateshipone.odyssey.utils.BitmapUtils;
+import org.gateshipone.odyssey.utils.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Creates pre-scaled variants of the stored artwork images, so list and grid items can decode a small file
+ * instead of subsampling the full image.
+ * <p>
+ * The existing variants of an image are stored as a bitmask in the thumbnails column of the artwork tables.
+ */
+class ArtworkThumbnails {
+
+    /**
+     * Sizes of the shorter image side of the variants in pixel, in ascending order.
+     */
+    private static final int[] THUMBNAIL_SIZES = {128, 256};
+
+    /**
+     * Set in the bitmask once the variants of an image were created, even if the image was too small for any variant.
+     */
+    static final int FLAG_CREATED = 1 << 30;
+
+    private static final int JPEG_QUALITY = 90;
+
+    private ArtworkThumbnails() {
+    }
+
+    /**
+     * Returns the filename of the smallest variant that is at least as large as the requested size.
+     *
+     * @param filename   The filename of the full image.
+     * @param thumbnails The bitmask of the existing variants.
+     * @param size       The requested size (larger side of the view).
+     * @return The filename of the variant or the filename of the full image if no suitable variant exists.
+     */
+    static String getVariantFilename(final String filename, final int thumbnails, final int size) {
+        if (size <= 0) {
+            return filename;
+        }
+
+        for (int i = 0; i < THUMBNAIL_SIZES.length; i++) {
+            if (THUMBNAIL_SIZES[i] >= size) {
+                return (thumbnails & (1 << i)) != 0 ? getVariantFilename(filename, THUMBNAIL_SIZES[i]) : filename;
+            }
+        }
+
+        return filename;
+    }
+
+    /**
+     * Creates the variants of a newly downloaded image.
+     *
+     * @return The bitmask of the created variants.
+     */
+    static int createThumbnails(final Context context, final String filename, final String dirName, final byte[] image) {
+        final int largestSize = THUMBNAIL_SIZES[THUMBNAIL_SIZES.length - 1];
+
+        return createThumbnails(context, filename, dirName, BitmapUtils.decodeSampledBitmapFromByteArray(image, largestSize, largestSize));
+    }
+
+    /**
+     * Creates the variants of an already stored image.
+     *
+     * @return The bitmask of the created variants.
+     */
+    static int createThumbnails(final Context context, final String filename, final String dirName) {
+        final int largestSize = THUMBNAIL_SIZES[THUMBNAIL_SIZES.length - 1];
+        final String path = FileUtils.getFullArtworkFilePath(context, filename, dirName);
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+
+        options.inSampleSize = BitmapUtils.calculateInSampleSize(options, largestSize, largestSize);
+        options.inJustDecodeBounds = false;
+
+        return createThumbnails(context, filename, dirName, BitmapFactory.decodeFile(path, options));
+    }
+
+    /**
+     * Removes all variants of the given image.
+     */
+    static void removeThumbnails(final Context context, final String filename, final String dirName) {
+        for (int size : THUMBNAIL_SIZES) {
+            FileUtils.removeArtworkFile(context, getVariantFilename(filename, size), dirName);
+        }
+    }
+
+    private static int createThumbnails(final Context context, final String filename, final String dirName, final Bitmap source) {
+        if (source == null) {
+            // the image can't be decoded, don't try again
+            return FLAG_CREATED;
+        }
+
+        int thumbnails = FLAG_CREATED;
+        final int shorterSide = Math.min(source.getWidth(), source.getHeight());
+
+        for (int i = 0; i < THUMBNAIL_SIZES.length; i++) {
+            final int size = THUMBNAIL_SIZES[i];
+            if (shorterSide <= size) {
+                // the full image is not larger than this variant
+                break;
+            }
+
+            final float scale = (float) size / shorterSide;
+            final Bitmap thumbnail = Bitmap.createScaledBitmap(source, Math.round(source.getWidth() * scale), Math.round(source.getHeight() * scale), true);
+
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+            thumbnail.recycle();
+
+            try {
+                FileUtils.saveArtworkFile(context, getVariantFilename(filename, size), dirName, outputStream.toByteArray());
+                thumbnails |= 1 << i;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        source.recycle();
+        return thumbnails;
+    }
+
+    private static String getVariantFilename(final String filename, final int size) {
+        final int extension = filename.lastIndexOf('.');
+        final String baseName = extension == -1 ? filename : filename.substring(0, extension);
+
+        return baseName + '_' + size + ".jpg";
+    }
+}
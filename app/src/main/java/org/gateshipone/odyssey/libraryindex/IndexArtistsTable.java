@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.gateshipone.odyssey.libraryindex;
+
+import android.database.sqlite.SQLiteDatabase;
+
+public class IndexArtistsTable {
+
+    /**
+     * The name of the table.
+     */
+    public static final String TABLE_NAME = "odyssey_index_artists";
+
+    /**
+     * Name of the column that holds the id of the artist in the mediastore
+     */
+    public static final String COLUMN_ID = "_id";
+
+    public static final String COLUMN_ARTIST = "artist";
+
+    private static final String DATABASE_CREATE = "CREATE TABLE if not exists " +
+            TABLE_NAME +
+            " (" +
+            COLUMN_ID + " integer primary key," +
+            COLUMN_ARTIST + " text" +
+            ");";
+
+    private static final String INDEX_CREATE_ARTIST = "CREATE INDEX if not exists " + TABLE_NAME + "_artist_idx ON " + TABLE_NAME + " (" + COLUMN_ARTIST + " COLLATE NOCASE);";
+
+    private static final String DATABASE_DROP = "DROP TABLE if exists " + TABLE_NAME;
+
+    public static void createTable(final SQLiteDatabase database) {
+        // Create table if not already existing
+        database.execSQL(DATABASE_CREATE);
+        database.execSQL(INDEX_CREATE_ARTIST);
+    }
+
+    public static void dropTable(final SQLiteDatabase database) {
+        // drop table if already existing
+        database.execSQL(DATABASE_DROP);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.gateshipone.odyssey.libraryindex;
+
+import android.database.sqlite.SQLiteDatabase;
+
+public class IndexTracksTable {
+
+    /**
+     * The name of the table.
+     */
+    public static final String TABLE_NAME = "odyssey_index_tracks";
+
+    /**
+     * Name of the column that holds the id of the track in the mediastore
+     */
+    public static final String COLUMN_ID = "_id";
+
+    public static final String COLUMN_TITLE = "title";
+
+    public static final String COLUMN_TRACKNUMBER = "tracknumber";
+
+    public static final String COLUMN_DURATION = "duration";
+
+    public static final String COLUMN_ARTIST = "artist";
+
+    public static final String COLUMN_ARTIST_ID = "artist_id";
+
+    public static final String COLUMN_ALBUM = "album";
+
+    public static final String COLUMN_ALBUM_KEY = "album_key";
+
+    public static final String COLUMN_ALBUM_ID = "album_id";
+
+    public static final String COLUMN_URL = "url";
+
+    public static final String COLUMN_IS_MUSIC = "is_music";
+
+    public static final String COLUMN_DATE_ADDED = "date_added";
+
+    /**
+     * Name of the column that holds the modification date reported by the mediastore.
+     * It is used to find changed tracks since the last synchronization.
+     */
+    public static final String COLUMN_DATE_MODIFIED = "date_modified";
+
+    private static final String DATABASE_CREATE = "CREATE TABLE if not exists " +
+            TABLE_NAME +
+            " (" +
+            COLUMN_ID + " integer primary key," +
+            COLUMN_TITLE + " text," +
+            COLUMN_TRACKNUMBER + " integer," +
+            COLUMN_DURATION + " integer," +
+            COLUMN_ARTIST + " text," +
+            COLUMN_ARTIST_ID + " integer," +
+            COLUMN_ALBUM + " text," +
+            COLUMN_ALBUM_KEY + " text," +
+            COLUMN_ALBUM_ID + " integer," +
+            COLUMN_URL + " text," +
+            COLUMN_IS_MUSIC + " integer," +
+            COLUMN_DATE_ADDED + " integer," +
+            COLUMN_DATE_MODIFIED + " integer" +
+            ");";
+
+    private static final String INDEX_CREATE_TITLE = "CREATE INDEX if not exists " + TABLE_NAME + "_title_idx ON " + TABLE_NAME + " (" + COLUMN_TITLE + " COLLATE NOCASE);";
+
+    private static final String INDEX_CREATE_ALBUM_KEY = "CREATE INDEX if not exists " + TABLE_NAME + "_album_key_idx ON " + TABLE_NAME + " (" + COLUMN_ALBUM_KEY + ", " + COLUMN_TRACKNUMBER + ");";
+
+    private static final String INDEX_CREATE_ARTIST_ID = "CREATE INDEX if not exists " + TABLE_NAME + "_artist_id_idx ON " + TABLE_NAME + " (" + COLUMN_ARTIST_ID + ");";
+
+    private static final String DATABASE_DROP = "DROP TABLE if exists " + TABLE_NAME;
+
+    public static void createTable(final SQLiteDatabase database) {
+        // Create table if not already existing
+        database.execSQL(DATABASE_CREATE);
+        database.execSQL(INDEX_CREATE_TITLE);
+        database.execSQL(INDEX_CREATE_ALBUM_KEY);
+        database.execSQL(INDEX_CREATE_ARTIST_ID);
+    }
+
+    public static void dropTable(final SQLiteDatabase database) {
+        // drop table if already existing
+        database.execSQL(DATABASE_DROP);
+    }
+}
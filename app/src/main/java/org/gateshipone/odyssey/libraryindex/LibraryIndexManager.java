@@ -0,0 +1,581 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.gateshipone.odyssey.libraryindex;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.MediaStore;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.gateshipone.odyssey.R;
+import org.gateshipone.odyssey.models.AlbumModel;
+import org.gateshipone.odyssey.models.ArtistModel;
+import org.gateshipone.odyssey.models.TrackModel;
+import org.gateshipone.odyssey.utils.PermissionHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * App owned index of the tracks, albums and artists of the mediastore.
+ * <p>
+ * The list screens read from this index instead of scanning the mediastore on every load.
+ * The index is synchronized lazily on the next read after the mediastore reported a change.
+ * Tracks are synchronized incrementally by their modification date and id, the album and artist
+ * tables are only reloaded if the tracks changed.
+ */
+public class LibraryIndexManager extends SQLiteOpenHelper {
+    private static final String TAG = LibraryIndexManager.class.getSimpleName();
+
+    /**
+     * The name of the database
+     */
+    private static final String DATABASE_NAME = "OdysseyLibraryIndexDB";
+
+    /**
+     * The version of the database
+     */
+    private static final int DATABASE_VERSION = 1;
+
+    /**
+     * Maximum number of ids used in a single IN (...) selection.
+     * This keeps the number of bound arguments below the SQLite limit.
+     */
+    private static final int ID_CHUNK_SIZE = 500;
+
+    private static final String[] projectionTracks = {MediaStore.Audio.Media._ID, MediaStore.Audio.Media.TITLE, MediaStore.Audio.Media.TRACK, MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.ARTIST, MediaStore.Audio.Media.ARTIST_ID, MediaStore.Audio.Media.ALBUM, MediaStore.Audio.Media.ALBUM_KEY, MediaStore.Audio.Media.ALBUM_ID,
+            MediaStore.Audio.Media.DATA, MediaStore.Audio.Media.IS_MUSIC, MediaStore.Audio.Media.DATE_ADDED, MediaStore.Audio.Media.DATE_MODIFIED};
+
+    private static final String[] projectionAlbums = {MediaStore.Audio.Albums._ID, MediaStore.Audio.Albums.ALBUM, MediaStore.Audio.Albums.ALBUM_KEY, MediaStore.Audio.Albums.ALBUM_ART,
+            MediaStore.Audio.Albums.ARTIST, MediaStore.Audio.Albums.FIRST_YEAR};
+
+    private static final String[] projectionArtists = {MediaStore.Audio.Artists._ID, MediaStore.Audio.Artists.ARTIST};
+
+    private static final String[] projectionIndexTracks = {IndexTracksTable.COLUMN_ID, IndexTracksTable.COLUMN_TITLE, IndexTracksTable.COLUMN_TRACKNUMBER, IndexTracksTable.COLUMN_DURATION,
+            IndexTracksTable.COLUMN_ARTIST, IndexTracksTable.COLUMN_ALBUM, IndexTracksTable.COLUMN_ALBUM_KEY, IndexTracksTable.COLUMN_URL};
+
+    private static final String[] projectionIndexAlbums = {IndexAlbumsTable.COLUMN_ID, IndexAlbumsTable.COLUMN_ALBUM, IndexAlbumsTable.COLUMN_ALBUM_KEY, IndexAlbumsTable.COLUMN_ALBUM_ART,
+            IndexAlbumsTable.COLUMN_ARTIST};
+
+    private static final String INSERT_TRACK = "INSERT OR REPLACE INTO " + IndexTracksTable.TABLE_NAME + " (" + IndexTracksTable.COLUMN_ID + ", " + IndexTracksTable.COLUMN_TITLE + ", "
+            + IndexTracksTable.COLUMN_TRACKNUMBER + ", " + IndexTracksTable.COLUMN_DURATION + ", " + IndexTracksTable.COLUMN_ARTIST + ", " + IndexTracksTable.COLUMN_ARTIST_ID + ", "
+            + IndexTracksTable.COLUMN_ALBUM + ", " + IndexTracksTable.COLUMN_ALBUM_KEY + ", " + IndexTracksTable.COLUMN_ALBUM_ID + ", " + IndexTracksTable.COLUMN_URL + ", "
+            + IndexTracksTable.COLUMN_IS_MUSIC + ", " + IndexTracksTable.COLUMN_DATE_ADDED + ", " + IndexTracksTable.COLUMN_DATE_MODIFIED + ") SELECT ?1,?2,?3,?4,?5,?6,?7,?8,?9,?10,?11,?12,?13"
+            // Skip tracks that are already indexed with the same values, so only real changes are counted
+            + " WHERE NOT EXISTS (SELECT 1 FROM " + IndexTracksTable.TABLE_NAME + " WHERE " + IndexTracksTable.COLUMN_ID + "=?1 AND " + IndexTracksTable.COLUMN_TITLE + " IS ?2 AND "
+            + IndexTracksTable.COLUMN_TRACKNUMBER + "=?3 AND " + IndexTracksTable.COLUMN_DURATION + "=?4 AND " + IndexTracksTable.COLUMN_ARTIST + " IS ?5 AND " + IndexTracksTable.COLUMN_ARTIST_ID + "=?6 AND "
+            + IndexTracksTable.COLUMN_ALBUM + " IS ?7 AND " + IndexTracksTable.COLUMN_ALBUM_KEY + " IS ?8 AND " + IndexTracksTable.COLUMN_ALBUM_ID + "=?9 AND " + IndexTracksTable.COLUMN_URL + " IS ?10 AND "
+            + IndexTracksTable.COLUMN_IS_MUSIC + "=?11 AND " + IndexTracksTable.COLUMN_DATE_ADDED + "=?12 AND " + IndexTracksTable.COLUMN_DATE_MODIFIED + "=?13)";
+
+    private static final String DELETE_TRACK = "DELETE FROM " + IndexTracksTable.TABLE_NAME + " WHERE " + IndexTracksTable.COLUMN_ID + "=?";
+
+    private static final String INSERT_ALBUM = "INSERT OR REPLACE INTO " + IndexAlbumsTable.TABLE_NAME + " (" + IndexAlbumsTable.COLUMN_ID + ", " + IndexAlbumsTable.COLUMN_ALBUM + ", "
+            + IndexAlbumsTable.COLUMN_ALBUM_KEY + ", " + IndexAlbumsTable.COLUMN_ALBUM_ART + ", " + IndexAlbumsTable.COLUMN_ARTIST + ", " + IndexAlbumsTable.COLUMN_FIRST_YEAR + ") VALUES (?,?,?,?,?,?)";
+
+    private static final String INSERT_ARTIST = "INSERT OR REPLACE INTO " + IndexArtistsTable.TABLE_NAME + " (" + IndexArtistsTable.COLUMN_ID + ", " + IndexArtistsTable.COLUMN_ARTIST + ") VALUES (?,?)";
+
+    private static LibraryIndexManager mInstance;
+
+    private final Context mContext;
+
+    /**
+     * Flag if the mediastore changed since the last synchronization.
+     * Set initially to catch changes that happened while the app was not running.
+     */
+    private volatile boolean mDirty = true;
+
+    private LibraryIndexManager(final Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        mContext = context;
+
+        // Get notified about all changes of the audio tables, this includes changes by the mediascanner
+        mContext.getContentResolver().registerContentObserver(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, true, new MediaStoreObserver());
+    }
+
+    public static synchronized LibraryIndexManager getInstance(final Context context) {
+        if (null == mInstance) {
+            mInstance = new LibraryIndexManager(context.getApplicationContext());
+        }
+        return mInstance;
+    }
+
+    /**
+     * Creates the database tables if they are not already existing
+     *
+     * @param db The {@link SQLiteDatabase} instance that will be used to create the tables.
+     */
+    @Override
+    public void onCreate(final SQLiteDatabase db) {
+        IndexTracksTable.createTable(db);
+        IndexAlbumsTable.createTable(db);
+        IndexArtistsTable.createTable(db);
+    }
+
+    /**
+     * The index only mirrors the mediastore so it is simply recreated on schema changes.
+     */
+    @Override
+    public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+        IndexTracksTable.dropTable(db);
+        IndexAlbumsTable.dropTable(db);
+        IndexArtistsTable.dropTable(db);
+        onCreate(db);
+    }
+
+    /**
+     * Return a list of all music tracks in the index ordered by the title.
+     *
+     * @return The list of {@link TrackModel} of all music tracks.
+     */
+    public List<TrackModel> getAllTracks() {
+        if (!synchronize()) {
+            return new ArrayList<>();
+        }
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(IndexTracksTable.TABLE_NAME, projectionIndexTracks, IndexTracksTable.COLUMN_IS_MUSIC + "=?", new String[]{"1"},
+                null, null, IndexTracksTable.COLUMN_TITLE + " COLLATE NOCASE");
+
+        return createTrackList(cursor);
+    }
+
+    /**
+     * Return a list of all tracks of an album.
+     *
+     * @param albumKey The key to identify the album in the mediastore
+     * @return The list of {@link TrackModel} of all tracks for the given album.
+     */
+    public List<TrackModel> getTracksForAlbum(final String albumKey) {
+        if (!synchronize()) {
+            return new ArrayList<>();
+        }
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(IndexTracksTable.TABLE_NAME, projectionIndexTracks, IndexTracksTable.COLUMN_ALBUM_KEY + "=?", new String[]{albumKey},
+                null, null, IndexTracksTable.COLUMN_TRACKNUMBER);
+
+        return createTrackList(cursor);
+    }
+
+    /**
+     * Return a list of all albums in the index ordered by the album name.
+     *
+     * @return The list of {@link AlbumModel} of all albums.
+     */
+    public List<AlbumModel> getAllAlbums() {
+        if (!synchronize()) {
+            return new ArrayList<>();
+        }
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(IndexAlbumsTable.TABLE_NAME, projectionIndexAlbums, null, null,
+                null, null, IndexAlbumsTable.COLUMN_ALBUM + " COLLATE NOCASE");
+
+        return createAlbumList(cursor);
+    }
+
+    /**
+     * Return a list of all albums that contain tracks of the given artist.
+     *
+     * @param artistId The id to identify the artist in the mediastore
+     * @param orderKey String to specify the order of the albums
+     * @return The list of {@link AlbumModel} of all albums of the artists in the specified order.
+     */
+    public List<AlbumModel> getAllAlbumsForArtist(final long artistId, final String orderKey) {
+        if (!synchronize()) {
+            return new ArrayList<>();
+        }
+
+        String orderBy;
+
+        if (orderKey.equals(mContext.getString(R.string.pref_artist_albums_sort_year_key))) {
+            orderBy = IndexAlbumsTable.COLUMN_FIRST_YEAR;
+        } else {
+            orderBy = IndexAlbumsTable.COLUMN_ALBUM;
+        }
+
+        final String where = IndexAlbumsTable.COLUMN_ID + " IN (SELECT " + IndexTracksTable.COLUMN_ALBUM_ID + " FROM " + IndexTracksTable.TABLE_NAME
+                + " WHERE " + IndexTracksTable.COLUMN_ARTIST_ID + "=?)";
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(IndexAlbumsTable.TABLE_NAME, projectionIndexAlbums, where, new String[]{String.valueOf(artistId)},
+                null, null, orderBy + " COLLATE NOCASE");
+
+        return createAlbumList(cursor);
+    }
+
+    /**
+     * Return a list of all artists in the index.
+     *
+     * @param showAlbumArtistsOnly flag if only albumartists should be loaded
+     * @return The list of {@link ArtistModel} of all artists.
+     */
+    public List<ArtistModel> getAllArtists(final boolean showAlbumArtistsOnly) {
+        final ArrayList<ArtistModel> artists = new ArrayList<>();
+
+        if (!synchronize()) {
+            return artists;
+        }
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        if (!showAlbumArtistsOnly) {
+            // load all artists
+            final Cursor cursor = database.query(IndexArtistsTable.TABLE_NAME, new String[]{IndexArtistsTable.COLUMN_ID, IndexArtistsTable.COLUMN_ARTIST}, null, null,
+                    null, null, IndexArtistsTable.COLUMN_ARTIST + " COLLATE NOCASE ASC");
+
+            if (cursor.moveToFirst()) {
+                final int artistTitleColumnIndex = cursor.getColumnIndex(IndexArtistsTable.COLUMN_ARTIST);
+                final int artistIDColumnIndex = cursor.getColumnIndex(IndexArtistsTable.COLUMN_ID);
+
+                do {
+                    artists.add(new ArtistModel(cursor.getString(artistTitleColumnIndex), cursor.getLong(artistIDColumnIndex)));
+                } while (cursor.moveToNext());
+            }
+
+            cursor.close();
+        } else {
+            // load only artist which has an album entry
+            final Cursor cursor = database.query(true, IndexAlbumsTable.TABLE_NAME, new String[]{IndexAlbumsTable.COLUMN_ARTIST}, IndexAlbumsTable.COLUMN_ARTIST + "<>''", null,
+                    null, null, IndexAlbumsTable.COLUMN_ARTIST + " COLLATE NOCASE ASC", null);
+
+            if (cursor.moveToFirst()) {
+                final int albumArtistTitleColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ARTIST);
+
+                do {
+                    artists.add(new ArtistModel(cursor.getString(albumArtistTitleColumnIndex), -1));
+                } while (cursor.moveToNext());
+            }
+
+            cursor.close();
+        }
+
+        return artists;
+    }
+
+    /**
+     * Creates a list of {@link TrackModel} from the given index cursor. The cursor will be closed afterwards.
+     */
+    private List<TrackModel> createTrackList(final Cursor cursor) {
+        final List<TrackModel> tracks = new ArrayList<>(cursor.getCount());
+
+        if (cursor.moveToFirst()) {
+            final int titleColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_TITLE);
+            final int durationColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_DURATION);
+            final int numberColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_TRACKNUMBER);
+            final int artistColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_ARTIST);
+            final int albumColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_ALBUM);
+            final int urlColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_URL);
+            final int albumKeyColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_ALBUM_KEY);
+            final int idColumnIndex = cursor.getColumnIndex(IndexTracksTable.COLUMN_ID);
+
+            do {
+                tracks.add(new TrackModel(cursor.getString(titleColumnIndex), cursor.getString(artistColumnIndex), cursor.getString(albumColumnIndex),
+                        cursor.getString(albumKeyColumnIndex), cursor.getLong(durationColumnIndex), cursor.getInt(numberColumnIndex),
+                        cursor.getString(urlColumnIndex), cursor.getLong(idColumnIndex)));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return tracks;
+    }
+
+    /**
+     * Creates a list of {@link AlbumModel} from the given index cursor. The cursor will be closed afterwards.
+     */
+    private List<AlbumModel> createAlbumList(final Cursor cursor) {
+        final List<AlbumModel> albums = new ArrayList<>(cursor.getCount());
+
+        if (cursor.moveToFirst()) {
+            final int albumKeyColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ALBUM_KEY);
+            final int albumTitleColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ALBUM);
+            final int imagePathColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ALBUM_ART);
+            final int artistTitleColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ARTIST);
+            final int albumIDColumnIndex = cursor.getColumnIndex(IndexAlbumsTable.COLUMN_ID);
+
+            do {
+                albums.add(new AlbumModel(cursor.getString(albumTitleColumnIndex), cursor.getString(imagePathColumnIndex), cursor.getString(artistTitleColumnIndex),
+                        cursor.getString(albumKeyColumnIndex), cursor.getLong(albumIDColumnIndex)));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return albums;
+    }
+
+    /**
+     * Brings the index up to date with the mediastore if a change was reported since the last call.
+     *
+     * @return True if the index is usable, false if the mediastore could not be accessed.
+     */
+    private synchronized boolean synchronize() {
+        if (!mDirty) {
+            return true;
+        }
+
+        // Reset the flag before reading, so that changes during the synchronization trigger a new one
+        mDirty = false;
+
+        // Only the ids are read from the mediastore to find new and removed tracks
+        final Cursor storeIdCursor = PermissionHelper.query(mContext, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, new String[]{MediaStore.Audio.Media._ID}, null, null, MediaStore.Audio.Media._ID);
+
+        if (storeIdCursor == null) {
+            // No access to the mediastore, retry with the next request
+            mDirty = true;
+            return false;
+        }
+
+        final long startTime = System.currentTimeMillis();
+
+        final SQLiteDatabase database = getWritableDatabase();
+
+        final SQLiteStatement insertTrackStatement = database.compileStatement(INSERT_TRACK);
+        final SQLiteStatement deleteTrackStatement = database.compileStatement(DELETE_TRACK);
+
+        int changedTracks = 0;
+
+        database.beginTransaction();
+
+        try {
+            // Tracks that were modified since the last synchronization (this includes all tracks for an empty index).
+            // Tracks modified in the same second as the newest indexed one are read again, but only counted if they changed.
+            final long lastModified = DatabaseUtils.longForQuery(database, "SELECT IFNULL(MAX(" + IndexTracksTable.COLUMN_DATE_MODIFIED + "), -1) FROM " + IndexTracksTable.TABLE_NAME, null);
+
+            final Cursor modifiedCursor = PermissionHelper.query(mContext, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projectionTracks,
+                    MediaStore.Audio.Media.DATE_MODIFIED + ">=?", new String[]{String.valueOf(lastModified)}, null);
+
+            changedTracks += insertTracks(insertTrackStatement, modifiedCursor);
+
+            // Walk both id lists in order to find tracks that are missing in the index or were removed from the mediastore
+            final Cursor indexIdCursor = database.query(IndexTracksTable.TABLE_NAME, new String[]{IndexTracksTable.COLUMN_ID}, null, null, null, null, IndexTracksTable.COLUMN_ID);
+
+            final List<String> missingIds = new ArrayList<>();
+
+            boolean storeAvailable = storeIdCursor.moveToFirst();
+            boolean indexAvailable = indexIdCursor.moveToFirst();
+
+            while (storeAvailable || indexAvailable) {
+                final long storeId = storeAvailable ? storeIdCursor.getLong(0) : Long.MAX_VALUE;
+                final long indexId = indexAvailable ? indexIdCursor.getLong(0) : Long.MAX_VALUE;
+
+                if (storeId == indexId) {
+                    storeAvailable = storeIdCursor.moveToNext();
+                    indexAvailable = indexIdCursor.moveToNext();
+                } else if (storeId < indexId) {
+                    // track is new in the mediastore
+                    missingIds.add(String.valueOf(storeId));
+                    storeAvailable = storeIdCursor.moveToNext();
+                } else {
+                    // track was removed from the mediastore
+                    deleteTrackStatement.bindLong(1, indexId);
+                    deleteTrackStatement.executeUpdateDelete();
+                    changedTracks++;
+                    indexAvailable = indexIdCursor.moveToNext();
+                }
+            }
+
+            indexIdCursor.close();
+
+            // Load the missing tracks in chunks
+            for (int i = 0; i < missingIds.size(); i += ID_CHUNK_SIZE) {
+                final List<String> chunk = missingIds.subList(i, Math.min(i + ID_CHUNK_SIZE, missingIds.size()));
+
+                final String where = MediaStore.Audio.Media._ID + " IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+
+                final Cursor missingCursor = PermissionHelper.query(mContext, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projectionTracks,
+                        where, chunk.toArray(new String[0]), null);
+
+                changedTracks += insertTracks(insertTrackStatement, missingCursor);
+            }
+
+            // The album and artist tables of the mediastore are derived from the tracks, so only reload them if necessary
+            if (changedTracks > 0 || DatabaseUtils.queryNumEntries(database, IndexAlbumsTable.TABLE_NAME) == 0) {
+                reloadAlbumsAndArtists(database);
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+
+            storeIdCursor.close();
+            insertTrackStatement.close();
+            deleteTrackStatement.close();
+        }
+
+        Log.v(TAG, "Synchronized " + changedTracks + " tracks in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        return true;
+    }
+
+    /**
+     * Inserts or replaces all tracks of the given mediastore cursor in the index. The cursor will be closed afterwards.
+     *
+     * @return The number of tracks that were new or changed.
+     */
+    private int insertTracks(final SQLiteStatement statement, final Cursor cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+
+        int insertedTracks = 0;
+
+        if (cursor.moveToFirst()) {
+            final int idColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+            final int titleColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+            final int numberColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TRACK);
+            final int durationColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+            final int artistColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+            final int artistIdColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST_ID);
+            final int albumColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
+            final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
+            final int albumIdColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_ID);
+            final int urlColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
+            final int isMusicColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.IS_MUSIC);
+            final int dateAddedColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATE_ADDED);
+            final int dateModifiedColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATE_MODIFIED);
+
+            do {
+                statement.clearBindings();
+                statement.bindLong(1, cursor.getLong(idColumnIndex));
+                bindString(statement, 2, cursor.getString(titleColumnIndex));
+                statement.bindLong(3, cursor.getInt(numberColumnIndex));
+                statement.bindLong(4, cursor.getLong(durationColumnIndex));
+                bindString(statement, 5, cursor.getString(artistColumnIndex));
+                statement.bindLong(6, cursor.getLong(artistIdColumnIndex));
+                bindString(statement, 7, cursor.getString(albumColumnIndex));
+                bindString(statement, 8, cursor.getString(albumKeyColumnIndex));
+                statement.bindLong(9, cursor.getLong(albumIdColumnIndex));
+                bindString(statement, 10, cursor.getString(urlColumnIndex));
+                statement.bindLong(11, cursor.getInt(isMusicColumnIndex));
+                statement.bindLong(12, cursor.getLong(dateAddedColumnIndex));
+                statement.bindLong(13, cursor.getLong(dateModifiedColumnIndex));
+                if (statement.executeInsert() != -1) {
+                    insertedTracks++;
+                }
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return insertedTracks;
+    }
+
+    /**
+     * Replaces the album and artist tables of the index with the current content of the mediastore.
+     */
+    private void reloadAlbumsAndArtists(final SQLiteDatabase database) {
+        database.delete(IndexAlbumsTable.TABLE_NAME, null, null);
+        database.delete(IndexArtistsTable.TABLE_NAME, null, null);
+
+        final Cursor albumsCursor = PermissionHelper.query(mContext, MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, projectionAlbums, null, null, null);
+
+        if (albumsCursor != null) {
+            final SQLiteStatement statement = database.compileStatement(INSERT_ALBUM);
+
+            if (albumsCursor.moveToFirst()) {
+                final int idColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums._ID);
+                final int albumColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM);
+                final int albumKeyColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_KEY);
+                final int albumArtColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_ART);
+                final int artistColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ARTIST);
+                final int firstYearColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.FIRST_YEAR);
+
+                do {
+                    statement.clearBindings();
+                    statement.bindLong(1, albumsCursor.getLong(idColumnIndex));
+                    bindString(statement, 2, albumsCursor.getString(albumColumnIndex));
+                    bindString(statement, 3, albumsCursor.getString(albumKeyColumnIndex));
+                    bindString(statement, 4, albumsCursor.getString(albumArtColumnIndex));
+                    bindString(statement, 5, albumsCursor.getString(artistColumnIndex));
+                    statement.bindLong(6, albumsCursor.getInt(firstYearColumnIndex));
+                    statement.executeInsert();
+                } while (albumsCursor.moveToNext());
+            }
+
+            statement.close();
+            albumsCursor.close();
+        }
+
+        final Cursor artistsCursor = PermissionHelper.query(mContext, MediaStore.Audio.Artists.EXTERNAL_CONTENT_URI, projectionArtists, null, null, null);
+
+        if (artistsCursor != null) {
+            final SQLiteStatement statement = database.compileStatement(INSERT_ARTIST);
+
+            if (artistsCursor.moveToFirst()) {
+                final int idColumnIndex = artistsCursor.getColumnIndex(MediaStore.Audio.Artists._ID);
+                final int artistColumnIndex = artistsCursor.getColumnIndex(MediaStore.Audio.Artists.ARTIST);
+
+                do {
+                    statement.clearBindings();
+                    statement.bindLong(1, artistsCursor.getLong(idColumnIndex));
+                    bindString(statement, 2, artistsCursor.getString(artistColumnIndex));
+                    statement.executeInsert();
+                } while (artistsCursor.moveToNext());
+            }
+
+            statement.close();
+            artistsCursor.close();
+        }
+    }
+
+    /**
+     * Binds the given value to the statement. {@link SQLiteStatement#bindString} does not accept null values.
+     */
+    private static void bindString(final SQLiteStatement statement, final int index, final String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Observer that marks the index as outdated if the mediastore reports a change.
+     */
+    private class MediaStoreObserver extends ContentObserver {
+
+        MediaStoreObserver() {
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            mDirty = true;
+        }
+    }
+}
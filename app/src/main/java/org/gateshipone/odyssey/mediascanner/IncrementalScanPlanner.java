@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.mediascanner;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.gateshipone.odyssey.models.FileModel;
+import org.gateshipone.odyssey.utils.FileExplorerHelper;
+import org.gateshipone.odyssey.utils.PermissionHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates the list of files that must be sent to the mediascanner for a directory.
+ * <p>
+ * The first scan of a directory compares the whole tree with the mediastore and records a snapshot
+ * in the {@link MediaScanSnapshotManager}. Later scans only list directories whose last modified time changed
+ * since the snapshot and only return new, modified and removed files of these directories.
+ * Unchanged directories are not listed at all, only their known subdirectories are checked.
+ * <p>
+ * The changes to the snapshot are kept in memory until {@link #saveSnapshot()} is called after the scan finished.
+ */
+public class IncrementalScanPlanner {
+    private static final String TAG = IncrementalScanPlanner.class.getSimpleName();
+
+    private final Context mContext;
+
+    private final MediaScanSnapshotManager mSnapshotManager;
+
+    private final List<String> mRemovedTrees = new ArrayList<>();
+
+    private final List<String> mRemovedFiles = new ArrayList<>();
+
+    private final Map<String, Long> mChangedDirectories = new HashMap<>();
+
+    private final Map<String, MediaScanSnapshotManager.FileState> mChangedFiles = new HashMap<>();
+
+    /**
+     * Last modified times of the known directories below the scanned directory.
+     */
+    private Map<String, Long> mKnownDirectories;
+
+    /**
+     * Known subdirectories per known directory.
+     */
+    private Map<String, List<String>> mKnownSubDirectories;
+
+    public IncrementalScanPlanner(final Context context) {
+        mContext = context.getApplicationContext();
+        mSnapshotManager = MediaScanSnapshotManager.getInstance(mContext);
+    }
+
+    /**
+     * Creates the list of files that must be scanned for the given directory.
+     *
+     * @param basePath The directory to scan.
+     * @return The list of new, modified and removed files.
+     */
+    public List<FileModel> createScanList(final FileModel basePath) {
+        mKnownDirectories = mSnapshotManager.getDirectories(basePath.getPath());
+
+        final List<FileModel> scanFiles = new ArrayList<>();
+
+        if (!mKnownDirectories.containsKey(basePath.getPath())) {
+            // no snapshot available, compare the complete tree with the mediastore
+            final List<FileModel> files = new ArrayList<>();
+
+            mRemovedTrees.add(basePath.getPath());
+            recordTree(basePath, files);
+
+            scanFiles.addAll(FileExplorerHelper.getInstance().getMissingDBFiles(mContext, basePath, files));
+
+            Log.v(TAG, "created snapshot for " + basePath.getPath());
+        } else {
+            mKnownSubDirectories = new HashMap<>();
+
+            for (String directory : mKnownDirectories.keySet()) {
+                final String parent = new File(directory).getParent();
+
+                List<String> subDirectories = mKnownSubDirectories.get(parent);
+                if (subDirectories == null) {
+                    subDirectories = new ArrayList<>();
+                    mKnownSubDirectories.put(parent, subDirectories);
+                }
+                subDirectories.add(directory);
+            }
+
+            updateTree(basePath, scanFiles);
+
+            Log.v(TAG, "changed directories since the last scan: " + mChangedDirectories.size());
+        }
+
+        return scanFiles;
+    }
+
+    /**
+     * Saves the changes found by {@link #createScanList(FileModel)} to the snapshot.
+     * Should only be called if all files were handed to the mediascanner.
+     */
+    public void saveSnapshot() {
+        mSnapshotManager.saveChanges(mRemovedTrees, mRemovedFiles, mChangedDirectories, mChangedFiles);
+    }
+
+    /**
+     * Records the state of all directories and files in the given tree.
+     */
+    private void recordTree(final FileModel directory, final List<FileModel> files) {
+        mChangedDirectories.put(directory.getPath(), directory.getLastModified());
+
+        for (FileModel file : PermissionHelper.getFilesForDirectory(mContext, directory)) {
+            if (file.isDirectory()) {
+                recordTree(file, files);
+            } else if (file.isFile()) {
+                files.add(file);
+                mChangedFiles.put(file.getPath(), getFileState(file));
+            }
+        }
+    }
+
+    /**
+     * Compares the given directory and all directories below it with the snapshot.
+     */
+    private void updateTree(final FileModel directory, final List<FileModel> scanFiles) {
+        final String path = directory.getPath();
+        final long lastModified = directory.getLastModified();
+
+        final Long knownLastModified = mKnownDirectories.get(path);
+
+        if (knownLastModified != null && knownLastModified == lastModified) {
+            // the entries of the directory didn't change, only check the known subdirectories
+            final List<String> subDirectories = mKnownSubDirectories.get(path);
+
+            if (subDirectories != null) {
+                for (String subDirectory : subDirectories) {
+                    final FileModel subDirectoryModel = new FileModel(subDirectory);
+
+                    if (subDirectoryModel.isDirectory()) {
+                        updateTree(subDirectoryModel, scanFiles);
+                    } else {
+                        removeTree(subDirectory, scanFiles);
+                    }
+                }
+            }
+
+            return;
+        }
+
+        mChangedDirectories.put(path, lastModified);
+
+        final Map<String, MediaScanSnapshotManager.FileState> knownFiles = knownLastModified != null ? mSnapshotManager.getFiles(path) : new HashMap<>();
+        final Set<String> currentSubDirectories = new HashSet<>();
+
+        for (FileModel file : PermissionHelper.getFilesForDirectory(mContext, directory)) {
+            if (file.isDirectory()) {
+                currentSubDirectories.add(file.getPath());
+
+                updateTree(file, scanFiles);
+            } else if (file.isFile()) {
+                final MediaScanSnapshotManager.FileState fileState = getFileState(file);
+
+                if (!fileState.matches(knownFiles.remove(file.getPath()))) {
+                    // new or modified file
+                    scanFiles.add(file);
+                    mChangedFiles.put(file.getPath(), fileState);
+                }
+            }
+        }
+
+        // files that are not part of the directory anymore must be removed from the mediastore
+        for (String removedFile : knownFiles.keySet()) {
+            scanFiles.add(new FileModel(removedFile));
+            mRemovedFiles.add(removedFile);
+        }
+
+        final List<String> knownSubDirectories = mKnownSubDirectories.get(path);
+        if (knownSubDirectories != null) {
+            for (String subDirectory : knownSubDirectories) {
+                if (!currentSubDirectories.contains(subDirectory)) {
+                    removeTree(subDirectory, scanFiles);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles a known directory that doesn't exist anymore. All its known files must be removed from the mediastore.
+     */
+    private void removeTree(final String directory, final List<FileModel> scanFiles) {
+        for (String removedFile : mSnapshotManager.getFilesInTree(directory)) {
+            scanFiles.add(new FileModel(removedFile));
+        }
+
+        mRemovedTrees.add(directory);
+    }
+
+    private static MediaScanSnapshotManager.FileState getFileState(final FileModel file) {
+        final File javaFile = new File(file.getPath());
+
+        return new MediaScanSnapshotManager.FileState(javaFile.length(), javaFile.lastModified());
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.mediascanner;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists the state of all directories and files that were handed to the mediascanner.
+ * <p>
+ * For every scanned directory its last modified time is stored, for every file its size and last modified time.
+ * The {@link IncrementalScanPlanner} uses this snapshot to skip unchanged directories on the next scan.
+ */
+public class MediaScanSnapshotManager extends SQLiteOpenHelper {
+
+    /**
+     * The name of the database
+     */
+    private static final String DATABASE_NAME = "OdysseyMediaScanSnapshotDB";
+
+    /**
+     * The version of the database
+     */
+    private static final int DATABASE_VERSION = 1;
+
+    /**
+     * Selection for a path and everything below it. Paths below a directory sort between "path/" and "path0",
+     * because '0' is the next character after '/'.
+     */
+    private static final String SELECTION_TREE = "%1$s=? OR (%1$s>? AND %1$s<?)";
+
+    private static final String INSERT_DIRECTORY = "INSERT OR REPLACE INTO " + ScannedDirectoriesTable.TABLE_NAME + " (" + ScannedDirectoriesTable.COLUMN_PATH + ", "
+            + ScannedDirectoriesTable.COLUMN_LASTMODIFIED + ") VALUES (?,?)";
+
+    private static final String INSERT_FILE = "INSERT OR REPLACE INTO " + ScannedFilesTable.TABLE_NAME + " (" + ScannedFilesTable.COLUMN_PATH + ", " + ScannedFilesTable.COLUMN_DIRECTORY + ", "
+            + ScannedFilesTable.COLUMN_FILESIZE + ", " + ScannedFilesTable.COLUMN_LASTMODIFIED + ") VALUES (?,?,?,?)";
+
+    private static MediaScanSnapshotManager mInstance;
+
+    private MediaScanSnapshotManager(final Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized MediaScanSnapshotManager getInstance(final Context context) {
+        if (null == mInstance) {
+            mInstance = new MediaScanSnapshotManager(context.getApplicationContext());
+        }
+        return mInstance;
+    }
+
+    /**
+     * Creates the database tables if they are not already existing
+     *
+     * @param db The {@link SQLiteDatabase} instance that will be used to create the tables.
+     */
+    @Override
+    public void onCreate(final SQLiteDatabase db) {
+        ScannedDirectoriesTable.createTable(db);
+        ScannedFilesTable.createTable(db);
+    }
+
+    /**
+     * The snapshot only avoids work, so it is simply recreated on schema changes.
+     */
+    @Override
+    public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+        ScannedDirectoriesTable.dropTable(db);
+        ScannedFilesTable.dropTable(db);
+        onCreate(db);
+    }
+
+    /**
+     * Returns the last modified times of the given directory and all known directories below it.
+     *
+     * @param path The path of the directory.
+     * @return A {@link Map} of the last modified time per directory path.
+     */
+    public synchronized Map<String, Long> getDirectories(final String path) {
+        final Map<String, Long> directories = new HashMap<>();
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(ScannedDirectoriesTable.TABLE_NAME, new String[]{ScannedDirectoriesTable.COLUMN_PATH, ScannedDirectoriesTable.COLUMN_LASTMODIFIED},
+                String.format(SELECTION_TREE, ScannedDirectoriesTable.COLUMN_PATH), getTreeSelectionArgs(path), null, null, null);
+
+        if (cursor.moveToFirst()) {
+            final int pathColumnIndex = cursor.getColumnIndex(ScannedDirectoriesTable.COLUMN_PATH);
+            final int lastModifiedColumnIndex = cursor.getColumnIndex(ScannedDirectoriesTable.COLUMN_LASTMODIFIED);
+
+            do {
+                directories.put(cursor.getString(pathColumnIndex), cursor.getLong(lastModifiedColumnIndex));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return directories;
+    }
+
+    /**
+     * Returns the state of all known files directly in the given directory.
+     *
+     * @param directory The path of the directory.
+     * @return A {@link Map} of the size and the last modified time per file path.
+     */
+    public synchronized Map<String, FileState> getFiles(final String directory) {
+        final Map<String, FileState> files = new HashMap<>();
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(ScannedFilesTable.TABLE_NAME, new String[]{ScannedFilesTable.COLUMN_PATH, ScannedFilesTable.COLUMN_FILESIZE, ScannedFilesTable.COLUMN_LASTMODIFIED},
+                ScannedFilesTable.COLUMN_DIRECTORY + "=?", new String[]{directory}, null, null, null);
+
+        if (cursor.moveToFirst()) {
+            final int pathColumnIndex = cursor.getColumnIndex(ScannedFilesTable.COLUMN_PATH);
+            final int fileSizeColumnIndex = cursor.getColumnIndex(ScannedFilesTable.COLUMN_FILESIZE);
+            final int lastModifiedColumnIndex = cursor.getColumnIndex(ScannedFilesTable.COLUMN_LASTMODIFIED);
+
+            do {
+                files.put(cursor.getString(pathColumnIndex), new FileState(cursor.getLong(fileSizeColumnIndex), cursor.getLong(lastModifiedColumnIndex)));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return files;
+    }
+
+    /**
+     * Returns the paths of all known files below the given directory, including all subdirectories.
+     *
+     * @param directory The path of the directory.
+     * @return The list of file paths.
+     */
+    public synchronized List<String> getFilesInTree(final String directory) {
+        final List<String> files = new ArrayList<>();
+
+        final SQLiteDatabase database = getReadableDatabase();
+
+        final Cursor cursor = database.query(ScannedFilesTable.TABLE_NAME, new String[]{ScannedFilesTable.COLUMN_PATH},
+                String.format(SELECTION_TREE, ScannedFilesTable.COLUMN_PATH), getTreeSelectionArgs(directory), null, null, null);
+
+        if (cursor.moveToFirst()) {
+            final int pathColumnIndex = cursor.getColumnIndex(ScannedFilesTable.COLUMN_PATH);
+
+            do {
+                files.add(cursor.getString(pathColumnIndex));
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        return files;
+    }
+
+    /**
+     * Applies the given changes to the snapshot in a single transaction.
+     *
+     * @param removedTrees       Directories that were removed together with everything below them.
+     * @param removedFiles       Files that were removed.
+     * @param changedDirectories New or changed directories with their last modified time.
+     * @param changedFiles       New or changed files with their state.
+     */
+    public synchronized void saveChanges(final List<String> removedTrees, final List<String> removedFiles, final Map<String, Long> changedDirectories,
+                                         final Map<String, FileState> changedFiles) {
+        final SQLiteDatabase database = getWritableDatabase();
+
+        database.beginTransaction();
+
+        try {
+            for (String tree : removedTrees) {
+                final String[] selectionArgs = getTreeSelectionArgs(tree);
+
+                database.delete(ScannedDirectoriesTable.TABLE_NAME, String.format(SELECTION_TREE, ScannedDirectoriesTable.COLUMN_PATH), selectionArgs);
+                database.delete(ScannedFilesTable.TABLE_NAME, String.format(SELECTION_TREE, ScannedFilesTable.COLUMN_PATH), selectionArgs);
+            }
+
+            for (String file : removedFiles) {
+                database.delete(ScannedFilesTable.TABLE_NAME, ScannedFilesTable.COLUMN_PATH + "=?", new String[]{file});
+            }
+
+            final SQLiteStatement directoryStatement = database.compileStatement(INSERT_DIRECTORY);
+
+            for (Map.Entry<String, Long> directory : changedDirectories.entrySet()) {
+                directoryStatement.bindString(1, directory.getKey());
+                directoryStatement.bindLong(2, directory.getValue());
+                directoryStatement.executeInsert();
+            }
+
+            directoryStatement.close();
+
+            final SQLiteStatement fileStatement = database.compileStatement(INSERT_FILE);
+
+            for (Map.Entry<String, FileState> file : changedFiles.entrySet()) {
+                final String path = file.getKey();
+                final String directory = new File(path).getParent();
+
+                fileStatement.bindString(1, path);
+                if (directory == null) {
+                    fileStatement.bindNull(2);
+                } else {
+                    fileStatement.bindString(2, directory);
+                }
+                fileStatement.bindLong(3, file.getValue().mFileSize);
+                fileStatement.bindLong(4, file.getValue().mLastModified);
+                fileStatement.executeInsert();
+            }
+
+            fileStatement.close();
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static String[] getTreeSelectionArgs(final String path) {
+        final String prefix = path.endsWith("/") ? path : path + '/';
+
+        return new String[]{path, prefix, prefix.substring(0, prefix.length() - 1) + '0'};
+    }
+
+    /**
+     * The size and the last modified time of a file.
+     */
+    public static class FileState {
+        final long mFileSize;
+
+        final long mLastModified;
+
+        public FileState(final long fileSize, final long lastModified) {
+            mFileSize = fileSize;
+            mLastModified = lastModified;
+        }
+
+        boolean matches(final FileState other) {
+            return other != null && mFileSize == other.mFileSize && mLastModified == other.mLastModified;
+        }
+    }
+}
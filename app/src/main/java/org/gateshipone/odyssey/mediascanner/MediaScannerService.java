@@ -31,33 +31,34 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.media.MediaScannerConnection;
-import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.gateshipone.odyssey.R;
 import org.gateshipone.odyssey.models.FileModel;
-import org.gateshipone.odyssey.utils.FileExplorerHelper;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Timer;
 import java.util.TimerTask;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-public class MediaScannerService extends Service {
+public class MediaScannerService extends Service implements WindowedMediaScanner.ScanProgressListener {
     private static final String TAG = MediaScannerService.class.getSimpleName();
 
     public static final String BUNDLE_KEY_DIRECTORY = "org.gateshipone.odyssey.mediascanner.directory";
 
+    /**
+     * Optional extra to override the number of files that are in flight at the mediascanner.
+     */
+    public static final String BUNDLE_KEY_WINDOW_SIZE = "org.gateshipone.odyssey.mediascanner.window_size";
+
     public static final String ACTION_START_MEDIASCANNING = "org.gateshipone.odyssey.mediascanner.start";
     public static final String ACTION_CANCEL_MEDIASCANNING = "org.gateshipone.odyssey.mediascanner.cancel";
 
@@ -66,18 +67,27 @@ public class MediaScannerService extends Service {
     private static final String NOTIFICATION_CHANNEL_ID = "MediaScanner";
 
     /**
-     * Defines how many tracks are sent at once to the MediaScanner. Should not be to big to avoid creating
-     * to large objects for Binder IPC.
+     * Defines how many files are in flight at the MediaScanner by default.
+     * A new file is submitted whenever a file is completed.
+     */
+    private static final int MEDIASCANNER_WINDOW_SIZE = 16;
+
+    /**
+     * Minimum time in milliseconds between two updates of the progress notification.
      */
-    private static final int MEDIASCANNER_BUNCH_SIZE = 100;
+    private static final long NOTIFICATION_UPDATE_INTERVAL = 500;
 
     private NotificationManager mNotificationManager;
     private NotificationCompat.Builder mBuilder;
 
-    private List<FileModel> mRemainingFiles;
+    private int mWindowSize;
 
-    private int mFilesToScan;
-    private int mScannedFiles;
+    private long mLastNotificationUpdate;
+
+    /**
+     * Scanner of the current file list, null while the list is created.
+     */
+    private WindowedMediaScanner mScanner;
 
     private MediaScannerService.ActionReceiver mBroadcastReceiver;
 
@@ -85,6 +95,11 @@ public class MediaScannerService extends Service {
 
     private boolean mAbort;
 
+    /**
+     * Planner of the current scan, used to save the snapshot once all files are scanned.
+     */
+    private IncrementalScanPlanner mScanPlanner;
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
@@ -108,9 +123,9 @@ public class MediaScannerService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent != null && intent.getAction().equals(ACTION_START_MEDIASCANNING)) {
-            mRemainingFiles = new ArrayList<>();
-
             mAbort = false;
+            mLastNotificationUpdate = 0;
+            mWindowSize = MEDIASCANNER_WINDOW_SIZE;
             FileModel directory = null;
 
             // read path to directory from extras
@@ -119,6 +134,8 @@ public class MediaScannerService extends Service {
                 String startDirectory = extras.getString(BUNDLE_KEY_DIRECTORY);
 
                 directory = new FileModel(startDirectory);
+
+                mWindowSize = extras.getInt(BUNDLE_KEY_WINDOW_SIZE, MEDIASCANNER_WINDOW_SIZE);
             }
 
             Log.v(TAG, "start mediascanning");
@@ -169,12 +186,14 @@ public class MediaScannerService extends Service {
         return START_NOT_STICKY;
     }
 
-    private void updateNotification() {
-        //  Updates the notification but only every 10 elements to reduce load on the notification view
-        if (mScannedFiles % 10 == 0 && !mAbort) {
-            mBuilder.setProgress(mFilesToScan, mScannedFiles, false);
+    private void updateNotification(final int scannedFiles, final int filesToScan) {
+        // Updates the notification at most every NOTIFICATION_UPDATE_INTERVAL ms to reduce load on the notification view
+        final long now = SystemClock.elapsedRealtime();
+        if (now - mLastNotificationUpdate >= NOTIFICATION_UPDATE_INTERVAL && !mAbort) {
+            mLastNotificationUpdate = now;
+            mBuilder.setProgress(filesToScan, scannedFiles, false);
             mBuilder.setStyle(new NotificationCompat.BigTextStyle()
-                    .bigText(getString(R.string.mediascanner_notification_text, mScannedFiles, mFilesToScan)));
+                    .bigText(getString(R.string.mediascanner_notification_text, scannedFiles, filesToScan)));
             mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
         }
     }
@@ -183,40 +202,38 @@ public class MediaScannerService extends Service {
         new ListCreationTask(context).execute(basePath);
     }
 
-    private void scanFileList(final Context context, List<FileModel> files) {
-        mRemainingFiles = files;
-
-        scanNextBunch(context);
-    }
+    private synchronized void scanFileList(final Context context, List<FileModel> files) {
+        mScanner = new WindowedMediaScanner(context, files, mWindowSize, this);
 
-    /**
-     * Proceeds to the next bunch of files to scan if any available.
-     *
-     * @param context Context used for scanning.
-     */
-    private void scanNextBunch(final Context context) {
-        if (mRemainingFiles.isEmpty() || mAbort) {
-            // No files left to scan, stop service (delayed to allow the ServiceConnection to the MediaScanner to close itself)
-            Timer delayedStopTimer = new Timer();
-            delayedStopTimer.schedule(new DelayedStopTask(), 100);
-            return;
+        if (mAbort) {
+            mScanner.abort();
+        } else {
+            mScanner.start();
         }
+    }
 
-        String[] bunch = new String[Math.min(MEDIASCANNER_BUNCH_SIZE, mRemainingFiles.size())];
-        int i = 0;
+    @Override
+    public void onFileScanned(final int scannedFiles, final int filesToScan) {
+        updateNotification(scannedFiles, filesToScan);
+    }
 
-        ListIterator<FileModel> listIterator = mRemainingFiles.listIterator();
-        while (listIterator.hasNext() && i < MEDIASCANNER_BUNCH_SIZE) {
-            bunch[i] = listIterator.next().getPath();
-            listIterator.remove();
-            i++;
-        }
-        MediaScannerConnection.scanFile(context, bunch, null, new MediaScanCompletedCallback(bunch.length, context));
+    @Override
+    public void onScanFinished(final WindowedMediaScanner scanner) {
+        // No files left to scan, stop service (delayed to allow the ServiceConnection to the MediaScanner to close itself)
+        Timer delayedStopTimer = new Timer();
+        delayedStopTimer.schedule(new DelayedStopTask(), 100);
     }
 
     private void finishService() {
         Log.v(TAG, "finish mediascanning");
 
+        if (!mAbort && mScanPlanner != null) {
+            // all changes are known to the mediastore now
+            mScanPlanner.saveSnapshot();
+        }
+        mScanPlanner = null;
+        mScanner = null;
+
         mNotificationManager.cancel(NOTIFICATION_ID);
         stopForeground(true);
 
@@ -244,37 +261,6 @@ public class MediaScannerService extends Service {
         }
     }
 
-    private class MediaScanCompletedCallback implements MediaScannerConnection.OnScanCompletedListener {
-
-        private final Context mContext;
-
-        private final int mNumberOfFiles;
-
-        private int mBunchScannedFiles;
-
-        public MediaScanCompletedCallback(final int numberOfFiles, final Context context) {
-            mContext = context;
-            mNumberOfFiles = numberOfFiles;
-            mBunchScannedFiles = 0;
-        }
-
-        @Override
-        public void onScanCompleted(String path, Uri uri) {
-            Log.v(TAG, "scan completed: " + uri);
-
-            mScannedFiles++;
-
-            mBunchScannedFiles++;
-
-            updateNotification();
-
-            if (mBunchScannedFiles == mNumberOfFiles) {
-                Log.v(TAG, "Bunch complete, proceed to next one");
-                scanNextBunch(mContext);
-            }
-        }
-    }
-
     private class ActionReceiver extends BroadcastReceiver {
 
         @Override
@@ -282,8 +268,13 @@ public class MediaScannerService extends Service {
             Log.e(TAG, "Broadcast requested");
             if (intent.getAction().equals(ACTION_CANCEL_MEDIASCANNING)) {
                 Log.e(TAG, "Cancel requested");
-                // abort scan after finish scanning current folder
-                mAbort = true;
+                // abort scan after the files in flight are finished
+                synchronized (MediaScannerService.this) {
+                    mAbort = true;
+                    if (mScanner != null) {
+                        mScanner.abort();
+                    }
+                }
                 // cancel notification
                 mNotificationManager.cancel(NOTIFICATION_ID);
                 stopForeground(true);
@@ -301,9 +292,10 @@ public class MediaScannerService extends Service {
 
         @Override
         protected List<FileModel> doInBackground(FileModel... params) {
-            List<FileModel> files = FileExplorerHelper.getInstance().getMissingDBFiles(mContext, params[0]);
+            mScanPlanner = new IncrementalScanPlanner(mContext);
+
+            List<FileModel> files = mScanPlanner.createScanList(params[0]);
             Log.v(TAG, "Got missing tracks: " + files.size());
-            mFilesToScan = files.size();
             scanFileList(mContext, files);
             return files;
         }
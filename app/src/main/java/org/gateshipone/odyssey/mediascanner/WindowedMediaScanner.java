@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.mediascanner;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.gateshipone.odyssey.models.FileModel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sends a list of files to the mediascanner while keeping a fixed number of paths in flight.
+ * <p>
+ * A new path is submitted as soon as the mediascanner reports a completed one, so a single slow file
+ * does not delay the submission of the following files. All paths are sent over one connection to avoid
+ * a new service binding for every file.
+ * <p>
+ * The throughput and the latency of each file (time between submission and completion) are recorded
+ * and logged when the scan finishes to allow tuning the window size for different devices.
+ */
+public class WindowedMediaScanner implements MediaScannerConnection.MediaScannerConnectionClient {
+    private static final String TAG = WindowedMediaScanner.class.getSimpleName();
+
+    public interface ScanProgressListener {
+        void onFileScanned(final int scannedFiles, final int filesToScan);
+
+        void onScanFinished(final WindowedMediaScanner scanner);
+    }
+
+    private final MediaScannerConnection mConnection;
+
+    private final List<FileModel> mFiles;
+
+    private final int mWindowSize;
+
+    private final ScanProgressListener mListener;
+
+    /**
+     * Submission time for each path that is currently in flight.
+     */
+    private final HashMap<String, Long> mSubmitTimes = new HashMap<>();
+
+    /**
+     * Latency in milliseconds of each completed file.
+     */
+    private final long[] mLatencies;
+
+    /**
+     * Position of the next file to submit.
+     */
+    private int mNextFile;
+
+    /**
+     * Number of recorded latencies.
+     */
+    private int mLatencyCount;
+
+    private int mScannedFiles;
+
+    private long mStartTime;
+
+    private long mFinishTime;
+
+    private boolean mAborted;
+
+    private boolean mFinished;
+
+    public WindowedMediaScanner(final Context context, final List<FileModel> files, final int windowSize, final ScanProgressListener listener) {
+        mConnection = new MediaScannerConnection(context.getApplicationContext(), this);
+        mFiles = files;
+        mWindowSize = Math.max(1, windowSize);
+        mListener = listener;
+        mLatencies = new long[files.size()];
+    }
+
+    /**
+     * Connects to the mediascanner and starts the submission of the files.
+     */
+    public synchronized void start() {
+        mStartTime = SystemClock.elapsedRealtime();
+
+        if (mFiles.isEmpty()) {
+            finish();
+            return;
+        }
+
+        mConnection.connect();
+    }
+
+    /**
+     * Stops submitting new files. The scanner finishes after the files in flight are completed.
+     */
+    public synchronized void abort() {
+        mAborted = true;
+
+        if (mSubmitTimes.isEmpty() && !mFinished) {
+            finish();
+        }
+    }
+
+    @Override
+    public synchronized void onMediaScannerConnected() {
+        submitFiles();
+    }
+
+    @Override
+    public synchronized void onScanCompleted(String path, Uri uri) {
+        if (mFinished) {
+            return;
+        }
+
+        final Long submitTime = mSubmitTimes.remove(path);
+        if (submitTime != null && mLatencyCount < mLatencies.length) {
+            mLatencies[mLatencyCount++] = SystemClock.elapsedRealtime() - submitTime;
+        }
+
+        mScannedFiles++;
+
+        mListener.onFileScanned(mScannedFiles, mFiles.size());
+
+        submitFiles();
+
+        if (mSubmitTimes.isEmpty() && (mAborted || mNextFile >= mFiles.size())) {
+            finish();
+        }
+    }
+
+    public synchronized int getScannedFiles() {
+        return mScannedFiles;
+    }
+
+    /**
+     * @return The number of scanned files per second since the start of the scan.
+     */
+    public synchronized float getFilesPerSecond() {
+        final long endTime = mFinished ? mFinishTime : SystemClock.elapsedRealtime();
+        final long duration = Math.max(1, endTime - mStartTime);
+
+        return mScannedFiles * 1000f / duration;
+    }
+
+    /**
+     * @param percentile The requested percentile between 0 and 100.
+     * @return The latency in milliseconds that the given percentage of the scanned files did not exceed.
+     */
+    public synchronized long getLatencyPercentile(final int percentile) {
+        final int count = mLatencyCount;
+        if (count == 0) {
+            return 0;
+        }
+
+        final long[] latencies = Arrays.copyOf(mLatencies, count);
+        Arrays.sort(latencies);
+
+        final int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return latencies[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Fills the window with the next files if the scan is not aborted.
+     */
+    private void submitFiles() {
+        while (!mAborted && mSubmitTimes.size() < mWindowSize && mNextFile < mFiles.size()) {
+            final String path = mFiles.get(mNextFile++).getPath();
+
+            if (mSubmitTimes.containsKey(path)) {
+                // the same path is already in flight, count it as scanned
+                mScannedFiles++;
+                continue;
+            }
+
+            mSubmitTimes.put(path, SystemClock.elapsedRealtime());
+            mConnection.scanFile(path, null);
+        }
+    }
+
+    private void finish() {
+        mFinished = true;
+        mFinishTime = SystemClock.elapsedRealtime();
+
+        if (mConnection.isConnected()) {
+            mConnection.disconnect();
+        }
+
+        Log.v(TAG, String.format(Locale.US, "Scanned %d of %d files in %d ms with window %d: %.1f files/s, latency p50 %d ms, p95 %d ms, p99 %d ms, max %d ms",
+                mScannedFiles, mFiles.size(), mFinishTime - mStartTime, mWindowSize, getFilesPerSecond(),
+                getLatencyPercentile(50), getLatencyPercentile(95), getLatencyPercentile(99), getLatencyPercentile(100)));
+
+        mListener.onScanFinished(this);
+    }
+}
@@ -23,37 +23,61 @@
 package org.gateshipone.odyssey.models;
 
 import android.util.Log;
-import android.util.Pair;
 
 import org.gateshipone.odyssey.BuildConfig;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
 /**
  * This class keeps a HashMap of all artists that are part of a track list (e.g. playlist)
- * and their belonging tracks with the original list position as a pair. This can be used to
+ * and their belonging tracks with the original list position. This can be used to
  * randomize the playback of the playback equally distributed over all artists of the original
  * track list.
+ * <p>
+ * The buckets are filled once with {@link #fillFromList(List)} and afterwards kept in sync with
+ * changes of the track list by {@link #insertTracks(int, List)}, {@link #removeTracks(int, int)}
+ * and {@link #updateTrack(int, TrackModel, TrackModel)} so that no full rebuild is necessary.
+ * <p>
+ * The positions are not stored in the buckets. All entries of the original list are kept in a treap
+ * ordered by their position, which is computed from the subtree sizes when a track is returned.
+ * Inserting or removing tracks therefore only costs O(log n) plus the number of changed tracks,
+ * independent of the number of tracks behind the change.
  */
 public class ArtistsTrackBuckets {
     private static final String TAG = ArtistsTrackBuckets.class.getSimpleName();
     private static final boolean DEBUG_ENABLED = BuildConfig.DEBUG;
 
     /**
-     * Underlying data structure for artist-track buckets
+     * Underlying data structure for artist-track buckets. Contains only buckets with tracks left.
      */
-    private ArrayList<List<Integer>> mData;
+    private final ArrayList<ArtistBucket> mData;
+
+    /**
+     * Lookup of the bucket for an artist name. Contains the same buckets as {@link #mData}.
+     */
+    private final HashMap<String, ArtistBucket> mBuckets;
+
+    /**
+     * Root of the treap that contains an entry for every track of the original list in order.
+     */
+    private QueueNode mRoot;
+
+    /**
+     * Generator for the priorities of the treap entries.
+     */
+    private final Random mPriorityGenerator = new Random();
 
     /**
      * Creates an empty data structure
      */
     public ArtistsTrackBuckets() {
         mData = new ArrayList<>();
+        mBuckets = new HashMap<>();
     }
 
     private BetterPseudoRandomGenerator mRandomGenerator = new BetterPseudoRandomGenerator();
@@ -61,15 +85,18 @@ public class ArtistsTrackBuckets {
     private List<TrackModel> mOriginalList;
 
     /**
-     * Creates a list of artists and their tracks with position in the original playlist
+     * Creates a list of artists and their tracks with position in the original playlist.
+     * <p>
+     * The list is kept as a reference and used to refill the buckets once all tracks were returned.
+     * If the list is null the buckets are disabled and all incremental updates are ignored.
      *
      * @param tracks List of tracks
      */
     public synchronized void fillFromList(List<TrackModel> tracks) {
         // Clear all entries
         mData.clear();
-
-        LinkedHashMap<String, List<Integer>> hashMap = new LinkedHashMap<>();
+        mBuckets.clear();
+        mRoot = null;
 
         mOriginalList = tracks;
         if (tracks == null || tracks.isEmpty()) {
@@ -77,28 +104,121 @@ public class ArtistsTrackBuckets {
             return;
         }
 
-        // Iterate over the list and add all tracks to their artist lists
-        int trackNo = 0;
-        for (TrackModel track : tracks) {
-            String artistName = track.getTrackArtistName();
-            List<Integer> list = hashMap.get(artistName);
-            if (list == null) {
-                // If artist is not already in HashMap add a new list for it
-                list = new ArrayList<>();
-                hashMap.put(artistName, list);
+        // Add all tracks to their artist lists and build the treap in the order of the original playlist
+        mRoot = createNodes(tracks);
+
+        if (DEBUG_ENABLED) {
+            Log.v(TAG, "Recreated buckets with: " + mData.size() + " artists");
+        }
+    }
+
+    /**
+     * Notifies the buckets that tracks were inserted into the original track list.
+     * The positions of the tracks behind the inserted ones are moved implicitly.
+     *
+     * @param position Position of the first inserted track in the original list
+     * @param tracks   The inserted tracks in order
+     */
+    public synchronized void insertTracks(int position, List<TrackModel> tracks) {
+        if (mOriginalList == null || tracks.isEmpty()) {
+            return;
+        }
+
+        final QueueNode[] parts = new QueueNode[2];
+        split(mRoot, position, parts);
+
+        mRoot = setRoot(merge(parts[0], merge(setRoot(createNodes(tracks)), parts[1])));
+    }
+
+    /**
+     * Notifies the buckets that a single track was inserted into the original track list.
+     *
+     * @param position Position of the inserted track in the original list
+     * @param track    The inserted track
+     */
+    public synchronized void insertTrack(int position, TrackModel track) {
+        insertTracks(position, Collections.singletonList(track));
+    }
+
+    /**
+     * Notifies the buckets that a range of tracks was removed from the original track list.
+     * The positions of the tracks behind the removed ones are moved implicitly.
+     *
+     * @param position Position of the first removed track in the original list
+     * @param count    Number of removed tracks
+     */
+    public synchronized void removeTracks(int position, int count) {
+        if (mOriginalList == null || count <= 0) {
+            return;
+        }
+
+        final QueueNode[] parts = new QueueNode[2];
+        split(mRoot, position, parts);
+        final QueueNode head = parts[0];
+
+        split(parts[1], count, parts);
+
+        // Remove the tracks of the removed range from their buckets
+        final ArrayList<QueueNode> pending = new ArrayList<>();
+        if (parts[0] != null) {
+            pending.add(parts[0]);
+        }
+        while (!pending.isEmpty()) {
+            final QueueNode node = pending.remove(pending.size() - 1);
+
+            if (node.mLeft != null) {
+                pending.add(node.mLeft);
+            }
+            if (node.mRight != null) {
+                pending.add(node.mRight);
             }
-            // Add pair of position in original playlist and track itself to artists bucket list
-            list.add(trackNo);
 
-            // Increase the track number (index) of the original playlist
-            trackNo++;
+            final ArtistBucket bucket = node.mBucket;
+            if (bucket != null) {
+                bucket.remove(node);
+                if (bucket.isEmpty()) {
+                    removeBucket(bucket.mDataIndex);
+                }
+            }
         }
-        if (DEBUG_ENABLED) {
-            Log.v(TAG, "Recreated buckets with: " + hashMap.size() + " artists");
+
+        mRoot = setRoot(merge(setRoot(head), setRoot(parts[1])));
+    }
+
+    /**
+     * Notifies the buckets that a track in the original list was replaced (e.g. with parsed metadata).
+     * If the artist changed and the track was not yet returned it is moved to the bucket of the new artist.
+     *
+     * @param position Position of the replaced track in the original list
+     * @param oldTrack The track that was previously at the position
+     * @param newTrack The track that is now at the position
+     */
+    public synchronized void updateTrack(int position, TrackModel oldTrack, TrackModel newTrack) {
+        if (mOriginalList == null) {
+            return;
+        }
+
+        final String oldArtist = oldTrack.getTrackArtistName();
+        final String newArtist = newTrack.getTrackArtistName();
+
+        if (oldArtist == null ? newArtist == null : oldArtist.equals(newArtist)) {
+            return;
         }
 
-        mData.addAll(hashMap.values());
-        Collections.shuffle(mData);
+        final QueueNode node = getNode(position);
+        if (node == null || node.mBucket == null) {
+            // Track was already returned in this run, nothing to move
+            return;
+        }
+
+        final ArtistBucket oldBucket = node.mBucket;
+        oldBucket.remove(node);
+
+        if (oldBucket.isEmpty()) {
+            removeBucket(oldBucket.mDataIndex);
+        }
+
+        getOrCreateBucket(newArtist).add(node);
     }
 
     /**
@@ -113,35 +233,29 @@ public class ArtistsTrackBuckets {
             fillFromList(mOriginalList);
         }
 
+        // Check if an artist is available at all
+        if (mData.isEmpty()) {
+            return 0;
+        }
+
         // First level random, get artist
         int randomArtistNumber = mRandomGenerator.getLimitedRandomNumber(mData.size());
 
-        // Get artists bucket list to artist number
-        List<Integer> artistsTracks;
-
-
         // Get the list of tracks belonging to the selected artist
-        artistsTracks = mData.get(randomArtistNumber);
-
-        // Check if an artist was found
-        if (artistsTracks == null) {
-            return 0;
-        }
-
-        int randomTrackNo = mRandomGenerator.getLimitedRandomNumber(artistsTracks.size());
+        final ArtistBucket artistsTracks = mData.get(randomArtistNumber);
 
-        Integer songNumber = artistsTracks.get(randomTrackNo);
+        int randomTrackNo = mRandomGenerator.getLimitedRandomNumber(artistsTracks.mSize);
 
         // Remove track to prevent double plays
-        artistsTracks.remove(randomTrackNo);
+        int songNumber = getPosition(artistsTracks.removeAt(randomTrackNo));
         if (DEBUG_ENABLED) {
-            Log.v(TAG, "Tracks from artist left: " + artistsTracks.size());
+            Log.v(TAG, "Tracks from artist left: " + artistsTracks.mSize);
         }
 
         // Check if tracks from this artist are left, otherwise remove the artist
-        if(artistsTracks.isEmpty()) {
+        if (artistsTracks.isEmpty()) {
             // No tracks left from artist, remove from map
-            mData.remove(randomArtistNumber);
+            removeBucket(randomArtistNumber);
             if (DEBUG_ENABLED) {
                 Log.v(TAG, "Artists left: " + mData.size());
             }
@@ -153,6 +267,250 @@ public class ArtistsTrackBuckets {
         return songNumber;
     }
 
+    private ArtistBucket getOrCreateBucket(String artistName) {
+        ArtistBucket bucket = mBuckets.get(artistName);
+        if (bucket == null) {
+            // If artist is not already in HashMap add a new bucket for it
+            bucket = new ArtistBucket(artistName, mData.size());
+            mBuckets.put(artistName, bucket);
+            mData.add(bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Removes the bucket at the given index by swapping the last bucket into its place.
+     * The order of the buckets is irrelevant because they are selected randomly.
+     */
+    private void removeBucket(int dataIndex) {
+        final ArtistBucket bucket = mData.get(dataIndex);
+        final ArtistBucket last = mData.remove(mData.size() - 1);
+        if (last != bucket) {
+            mData.set(dataIndex, last);
+            last.mDataIndex = dataIndex;
+        }
+        mBuckets.remove(bucket.mArtistName);
+    }
+
+    /**
+     * Creates an entry for each of the given tracks, adds them to the bucket of their artist
+     * and builds a treap of the entries in the order of the list in linear time.
+     *
+     * @return The root of the created treap
+     */
+    private QueueNode createNodes(List<TrackModel> tracks) {
+        // Right spine of the treap built so far
+        final QueueNode[] spine = new QueueNode[tracks.size()];
+        int spineSize = 0;
+
+        for (TrackModel track : tracks) {
+            final QueueNode node = new QueueNode(mPriorityGenerator.nextInt());
+            getOrCreateBucket(track.getTrackArtistName()).add(node);
+
+            // Entries with a lower priority become the left subtree of the new entry, they won't change anymore
+            QueueNode last = null;
+            while (spineSize > 0 && spine[spineSize - 1].mPriority < node.mPriority) {
+                last = update(spine[--spineSize]);
+            }
+            node.mLeft = last;
+
+            if (spineSize > 0) {
+                spine[spineSize - 1].mRight = node;
+            }
+            spine[spineSize++] = node;
+        }
+
+        QueueNode root = null;
+        while (spineSize > 0) {
+            root = update(spine[--spineSize]);
+        }
+        return root;
+    }
+
+    /**
+     * Returns the entry at the given position of the original list or null if the position is not available.
+     */
+    private QueueNode getNode(int position) {
+        QueueNode node = mRoot;
+        while (node != null) {
+            final int leftSize = size(node.mLeft);
+            if (position < leftSize) {
+                node = node.mLeft;
+            } else if (position == leftSize) {
+                return node;
+            } else {
+                position -= leftSize + 1;
+                node = node.mRight;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the current position of the given entry in the original list.
+     */
+    private static int getPosition(QueueNode node) {
+        int position = size(node.mLeft);
+        while (node.mParent != null) {
+            if (node.mParent.mRight == node) {
+                position += size(node.mParent.mLeft) + 1;
+            }
+            node = node.mParent;
+        }
+        return position;
+    }
+
+    private static int size(QueueNode node) {
+        return node == null ? 0 : node.mSize;
+    }
+
+    /**
+     * Updates the size of the given entry and the parent of its children after the children changed.
+     */
+    private static QueueNode update(QueueNode node) {
+        node.mSize = 1 + size(node.mLeft) + size(node.mRight);
+        if (node.mLeft != null) {
+            node.mLeft.mParent = node;
+        }
+        if (node.mRight != null) {
+            node.mRight.mParent = node;
+        }
+        return node;
+    }
+
+    /**
+     * Detaches the given entry from its previous parent so that it can be used as a root.
+     */
+    private static QueueNode setRoot(QueueNode node) {
+        if (node != null) {
+            node.mParent = null;
+        }
+        return node;
+    }
+
+    /**
+     * Concatenates two treaps. All entries of the left treap are placed before the entries of the right one.
+     */
+    private static QueueNode merge(QueueNode left, QueueNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.mPriority > right.mPriority) {
+            left.mRight = merge(left.mRight, right);
+            return update(left);
+        }
+        right.mLeft = merge(left, right.mLeft);
+        return update(right);
+    }
+
+    /**
+     * Splits the treap into the first count entries and the remaining ones.
+     * The roots are returned in result[0] and result[1] and still have to be detached with {@link #setRoot(QueueNode)}.
+     */
+    private static void split(QueueNode node, int count, QueueNode[] result) {
+        if (node == null) {
+            result[0] = null;
+            result[1] = null;
+            return;
+        }
+        if (size(node.mLeft) < count) {
+            split(node.mRight, count - size(node.mLeft) - 1, result);
+            node.mRight = result[0];
+            result[0] = update(node);
+        } else {
+            split(node.mLeft, count, result);
+            node.mLeft = result[1];
+            result[1] = update(node);
+        }
+    }
+
+    /**
+     * Entry of a track of the original list in the treap.
+     */
+    private static class QueueNode {
+        private final int mPriority;
+
+        private QueueNode mLeft;
+
+        private QueueNode mRight;
+
+        private QueueNode mParent;
+
+        /**
+         * Number of entries in the subtree of this entry
+         */
+        private int mSize = 1;
+
+        /**
+         * Bucket that contains this entry, null if the track was already returned
+         */
+        private ArtistBucket mBucket;
+
+        /**
+         * Index of this entry in its bucket
+         */
+        private int mBucketIndex;
+
+        private QueueNode(int priority) {
+            mPriority = priority;
+        }
+    }
+
+    /**
+     * Unordered set of the remaining track entries for one artist backed by an array.
+     */
+    private static class ArtistBucket {
+        private final String mArtistName;
+
+        /**
+         * Index of this bucket in {@link ArtistsTrackBuckets#mData}
+         */
+        private int mDataIndex;
+
+        private QueueNode[] mNodes = new QueueNode[4];
+
+        private int mSize;
+
+        private ArtistBucket(String artistName, int dataIndex) {
+            mArtistName = artistName;
+            mDataIndex = dataIndex;
+        }
+
+        private boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        private void add(QueueNode node) {
+            if (mSize == mNodes.length) {
+                mNodes = Arrays.copyOf(mNodes, mNodes.length * 2);
+            }
+            node.mBucket = this;
+            node.mBucketIndex = mSize;
+            mNodes[mSize++] = node;
+        }
+
+        /**
+         * Removes the entry at the given index by swapping the last entry into its place.
+         */
+        private QueueNode removeAt(int index) {
+            final QueueNode node = mNodes[index];
+            final QueueNode last = mNodes[--mSize];
+            mNodes[index] = last;
+            last.mBucketIndex = index;
+            mNodes[mSize] = null;
+
+            node.mBucket = null;
+            return node;
+        }
+
+        private void remove(QueueNode node) {
+            removeAt(node.mBucketIndex);
+        }
+    }
+
     private class BetterPseudoRandomGenerator {
         /**
          * Timeout in ns (1 second)
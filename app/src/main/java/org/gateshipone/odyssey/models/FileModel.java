@@ -23,7 +23,6 @@
 package org.gateshipone.odyssey.models;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -34,20 +33,28 @@ import androidx.annotation.NonNull;
 
 public class FileModel implements GenericModel, Comparable<FileModel> {
 
+    private static final int TYPE_UNKNOWN = 0;
+
+    private static final int TYPE_DIRECTORY = 1;
+
+    private static final int TYPE_FILE = 2;
+
+    private static final int TYPE_OTHER = 3;
+
     /**
      * The file object for this instance
      */
     private final File mFile;
 
     /**
-     * Helper class to compare to FileModel instances
+     * The cached type of the file object, so that the file system is only queried once.
      */
-    private final FileModelComparator mFileModelComparator;
+    private int mType;
 
     /**
-     * Helper class to filter specific file extensions
+     * Helper class to compare to FileModel instances
      */
-    private final FileExtensionFilter mFileExtensionFilter;
+    private static final FileModelComparator mFileModelComparator = new FileModelComparator();
 
     /**
      * Static list of valid file extensions
@@ -62,20 +69,22 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
      * Construct a FileModel instance for the given file object.
      */
     public FileModel(File file) {
-        mFile = file;
-
-        mFileModelComparator = new FileModelComparator();
-        mFileExtensionFilter = new FileExtensionFilter(fileExtensions);
+        this(file, TYPE_UNKNOWN);
     }
 
     /**
      * Construct a FileModel instance for the given file path.
      */
     public FileModel(String filePath) {
-        mFile = new File(filePath);
+        this(new File(filePath), TYPE_UNKNOWN);
+    }
 
-        mFileModelComparator = new FileModelComparator();
-        mFileExtensionFilter = new FileExtensionFilter(fileExtensions);
+    /**
+     * Construct a FileModel instance for a file object whose type is already known.
+     */
+    private FileModel(File file, int type) {
+        mFile = file;
+        mType = type;
     }
 
     /**
@@ -120,14 +129,31 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
      * Return if the file object is a directory
      */
     public boolean isDirectory() {
-        return mFile.isDirectory();
+        return getType() == TYPE_DIRECTORY;
     }
 
     /**
      * Return if the file object is a file
      */
     public boolean isFile() {
-        return mFile.isFile();
+        return getType() == TYPE_FILE;
+    }
+
+    /**
+     * Return the type of the file object. The file system is only queried on the first call.
+     */
+    private int getType() {
+        if (mType == TYPE_UNKNOWN) {
+            if (mFile.isDirectory()) {
+                mType = TYPE_DIRECTORY;
+            } else if (mFile.isFile()) {
+                mType = TYPE_FILE;
+            } else {
+                mType = TYPE_OTHER;
+            }
+        }
+
+        return mType;
     }
 
     /**
@@ -149,26 +175,12 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
     /**
      * Return a list of the files in the directory represented by the file object.
      * This list will contain FileModel objects sorted by the filename and the filetype.
+     * <p>
+     * The directory is read once and the type of each entry is queried once. The resulting
+     * FileModel objects keep this type, so sorting and later checks don't access the file system again.
      */
     public List<FileModel> listFilesSorted() {
-        List<FileModel> files = new ArrayList<>();
-
-        // get all files in the current folder
-        File[] filesArray = mFile.listFiles(mFileExtensionFilter);
-
-        if (null == filesArray) {
-            return files;
-        }
-        // create FileModel instances
-        for (File file : filesArray) {
-            if (file.getName().equals(".nomedia")) {
-                // .nomedia file found so clear the list and finish
-                files.clear();
-                break;
-            }
-
-            files.add(new FileModel(file));
-        }
+        final List<FileModel> files = listFiles();
 
         // sort the list
         Collections.sort(files, mFileModelComparator);
@@ -182,20 +194,49 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
     public int getNumberOfSubFolders() {
         int numberOfSubFolders = 0;
 
-        // get all files in the current folder
-        File[] filesArray = mFile.listFiles(mFileExtensionFilter);
+        for (FileModel file : listFiles()) {
+            if (file.isDirectory()) {
+                numberOfSubFolders++;
+            }
+        }
+
+        return numberOfSubFolders;
+    }
+
+    /**
+     * Return all directories and all files with a valid extension in the directory represented by the file object.
+     * If the directory contains a .nomedia file an empty list is returned.
+     */
+    private List<FileModel> listFiles() {
+        final List<FileModel> files = new ArrayList<>();
 
-        if (null == filesArray) {
-            return numberOfSubFolders;
+        // get the names of all entries in the current folder
+        final String[] fileNames = mFile.list();
+
+        if (null == fileNames) {
+            return files;
         }
 
-        for (File file : filesArray) {
+        for (String fileName : fileNames) {
+            if (fileName.equals(".nomedia")) {
+                // .nomedia file found so clear the list and finish
+                files.clear();
+                break;
+            }
+
+            final File file = new File(mFile, fileName);
+
+            // the only file system access per entry
             if (file.isDirectory()) {
-                numberOfSubFolders++;
+                // show all directories
+                files.add(new FileModel(file, TYPE_DIRECTORY));
+            } else if (fileExtensions.contains(getFileExtension(fileName))) {
+                // a listed entry that is no directory is treated as file
+                files.add(new FileModel(file, TYPE_FILE));
             }
         }
 
-        return numberOfSubFolders;
+        return files;
     }
 
     /**
@@ -226,10 +267,24 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
         return mFile.compareTo(model.mFile);
     }
 
+    /**
+     * Return the lower case extension of the given filename or null if it has none.
+     */
+    private static String getFileExtension(String filename) {
+        // get the extension of the given filename
+
+        String ext = null;
+        int i = filename.lastIndexOf('.');
+        if (i != -1 && i < filename.length()) {
+            ext = filename.substring(i + 1).toLowerCase();
+        }
+        return ext;
+    }
+
     /**
      * Comparator class for the FileModel
      */
-    private class FileModelComparator implements Comparator<FileModel> {
+    private static class FileModelComparator implements Comparator<FileModel> {
 
         @Override
         public int compare(FileModel f1, FileModel f2) {
@@ -252,50 +307,4 @@ public class FileModel implements GenericModel, Comparable<FileModel> {
             return f1.getSectionTitle().compareToIgnoreCase(f2.getSectionTitle());
         }
     }
-
-    /**
-     * Filename filter class for the FileModel.
-     */
-    private class FileExtensionFilter implements FilenameFilter {
-
-        private List<String> mExtensions;
-
-        FileExtensionFilter(List<String> extensions) {
-            mExtensions = extensions;
-        }
-
-        @Override
-        public boolean accept(File dir, String filename) {
-
-            // check if directory
-            if (new File(dir, filename).isDirectory()) {
-                // show all directories
-                return true;
-            }
-
-            // check if file matches the valid extensions
-
-            if (!mExtensions.isEmpty()) {
-
-                // get file extension
-                String ext = getFileExtension(filename);
-
-                return mExtensions.contains(ext);
-            }
-
-            // filename has no valid extension
-            return false;
-        }
-
-        private String getFileExtension(String filename) {
-            // get the extension of the given filename
-
-            String ext = null;
-            int i = filename.lastIndexOf('.');
-            if (i != -1 && i < filename.length()) {
-                ext = filename.substring(i + 1).toLowerCase();
-            }
-            return ext;
-        }
-    }
 }
@@ -24,6 +24,8 @@ package org.gateshipone.odyssey.playbackservice;
 
 import org.gateshipone.odyssey.models.TrackModel;
 
+import java.util.List;
+
 /**
  * Message object which get passed between PlaybackServiceInterface ->
  * PlaybackServiceHandler
@@ -35,6 +37,7 @@ public class ControlObject {
     public enum PLAYBACK_ACTION {
         ODYSSEY_PLAY, ODYSSEY_TOGGLEPAUSE, ODYSSEY_NEXT, ODYSSEY_PREVIOUS, ODYSSEY_SEEKTO, ODYSSEY_JUMPTO, ODYSSEY_REPEAT, ODYSSEY_RANDOM,
         ODYSSEY_ENQUEUETRACK, ODYSSEY_PLAYTRACK, ODYSSEY_DEQUEUETRACK, ODYSSEY_DEQUEUETRACKS,
+        ODYSSEY_ENQUEUETRACKSAT, ODYSSEY_DEQUEUETRACKRANGE, ODYSSEY_DEQUEUETRACKINDICES, ODYSSEY_MOVETRACKS,
         ODYSSEY_PLAYALLTRACKS,
         ODYSSEY_RESUMEBOOKMARK, ODYSSEY_DELETEBOOKMARK, ODYSSEY_CREATEBOOKMARK,
         ODYSSEY_SAVEPLAYLIST, ODYSSEY_CLEARPLAYLIST, ODYSSEY_SHUFFLEPLAYLIST,
@@ -52,9 +55,13 @@ public class ControlObject {
     private PLAYBACK_ACTION mAction;
     private boolean mBoolparam;
     private int mIntparam;
+    private int mSecondIntParam;
+    private int mThirdIntParam;
+    private int[] mIntArrayParam;
     private String mStringparam;
     private String mSecondStringParam;
     private TrackModel mTrack;
+    private List<TrackModel> mTrackList;
     private long mLongParam;
 
     public ControlObject(PLAYBACK_ACTION action) {
@@ -66,6 +73,30 @@ public class ControlObject {
         mAction = action;
     }
 
+    public ControlObject(PLAYBACK_ACTION action, int param, int secondParam) {
+        mAction = action;
+        mIntparam = param;
+        mSecondIntParam = secondParam;
+    }
+
+    public ControlObject(PLAYBACK_ACTION action, int param, int secondParam, int thirdParam) {
+        mAction = action;
+        mIntparam = param;
+        mSecondIntParam = secondParam;
+        mThirdIntParam = thirdParam;
+    }
+
+    public ControlObject(PLAYBACK_ACTION action, int[] param) {
+        mAction = action;
+        mIntArrayParam = param;
+    }
+
+    public ControlObject(PLAYBACK_ACTION action, List<TrackModel> tracks, int intParam) {
+        mAction = action;
+        mTrackList = tracks;
+        mIntparam = intParam;
+    }
+
     public ControlObject(PLAYBACK_ACTION action, String param) {
         mStringparam = param;
         mAction = action;
@@ -139,6 +170,18 @@ public class ControlObject {
         return mIntparam;
     }
 
+    public int getSecondIntParam() {
+        return mSecondIntParam;
+    }
+
+    public int getThirdIntParam() {
+        return mThirdIntParam;
+    }
+
+    public int[] getIntArrayParam() {
+        return mIntArrayParam;
+    }
+
     public boolean getBoolParam() {
         return mBoolparam;
     }
@@ -150,4 +193,8 @@ public class ControlObject {
     public TrackModel getTrack() {
         return mTrack;
     }
+
+    public List<TrackModel> getTrackList() {
+        return mTrackList;
+    }
 }
@@ -44,6 +44,7 @@ public final class NowPlayingInformation implements Parcelable {
     private final PlaybackService.RANDOMSTATE mRandom;
     private final int mPlaylistLength;
     private final TrackModel mCurrentTrack;
+    private final long mPlaylistVersion;
 
     public static Parcelable.Creator<NowPlayingInformation> CREATOR = new Parcelable.Creator<NowPlayingInformation>() {
 
@@ -55,7 +56,8 @@ public final class NowPlayingInformation implements Parcelable {
             PlaybackService.RANDOMSTATE random = PlaybackService.RANDOMSTATE.values()[source.readInt()];
             int playlistlength = source.readInt();
             TrackModel currentTrack = source.readParcelable(TrackModel.class.getClassLoader());
-            return new NowPlayingInformation(playState, playingIndex, repeat, random, playlistlength, currentTrack);
+            long playlistVersion = source.readLong();
+            return new NowPlayingInformation(playState, playingIndex, repeat, random, playlistlength, currentTrack, playlistVersion);
         }
 
         @Override
@@ -77,15 +79,17 @@ public final class NowPlayingInformation implements Parcelable {
         mRandom = PlaybackService.RANDOMSTATE.RANDOM_OFF;
         mPlaylistLength = 0;
         mCurrentTrack = new TrackModel();
+        mPlaylistVersion = 0;
     }
 
-    public NowPlayingInformation(PlaybackService.PLAYSTATE playing, int playingIndex, PlaybackService.REPEATSTATE repeat, PlaybackService.RANDOMSTATE random, int playlistlength, TrackModel currentTrack) {
+    public NowPlayingInformation(PlaybackService.PLAYSTATE playing, int playingIndex, PlaybackService.REPEATSTATE repeat, PlaybackService.RANDOMSTATE random, int playlistlength, TrackModel currentTrack, long playlistVersion) {
         mPlayState = playing;
         mPlayingIndex = playingIndex;
         mRepeat = repeat;
         mRandom = random;
         mPlaylistLength = playlistlength;
         mCurrentTrack = currentTrack;
+        mPlaylistVersion = playlistVersion;
     }
 
     @Override
@@ -96,6 +100,7 @@ public final class NowPlayingInformation implements Parcelable {
         dest.writeInt(mRandom.ordinal());
         dest.writeInt(mPlaylistLength);
         dest.writeParcelable(mCurrentTrack, flags);
+        dest.writeLong(mPlaylistVersion);
     }
 
     public PlaybackService.PLAYSTATE getPlayState() {
@@ -126,4 +131,11 @@ public final class NowPlayingInformation implements Parcelable {
         return mCurrentTrack;
     }
 
+    /**
+     * @return The version of the playlist or 0 if unknown.
+     */
+    public long getPlaylistVersion() {
+        return mPlaylistVersion;
+    }
+
 }
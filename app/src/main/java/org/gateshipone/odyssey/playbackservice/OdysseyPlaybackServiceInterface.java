@@ -28,6 +28,7 @@ import android.os.RemoteException;
 import org.gateshipone.odyssey.models.TrackModel;
 
 import java.lang.ref.WeakReference;
+import java.util.List;
 
 public class OdysseyPlaybackServiceInterface extends IOdysseyPlaybackService.Stub {
     // Holds the actual playback service for handling reasons
@@ -218,11 +219,53 @@ public class OdysseyPlaybackServiceInterface extends IOdysseyPlaybackService.Stu
         mService.get().getHandler().sendMessage(msg);
     }
 
+    @Override
+    public void enqueueTracksAt(List<TrackModel> tracks, int position) {
+        ControlObject obj = new ControlObject(ControlObject.PLAYBACK_ACTION.ODYSSEY_ENQUEUETRACKSAT, tracks, position);
+        Message msg = mService.get().getHandler().obtainMessage();
+        msg.obj = obj;
+        mService.get().getHandler().sendMessage(msg);
+    }
+
+    @Override
+    public void dequeueTrackRange(int start, int count) {
+        ControlObject obj = new ControlObject(ControlObject.PLAYBACK_ACTION.ODYSSEY_DEQUEUETRACKRANGE, start, count);
+        Message msg = mService.get().getHandler().obtainMessage();
+        msg.obj = obj;
+        mService.get().getHandler().sendMessage(msg);
+    }
+
+    @Override
+    public void dequeueTrackIndices(int[] indices) {
+        ControlObject obj = new ControlObject(ControlObject.PLAYBACK_ACTION.ODYSSEY_DEQUEUETRACKINDICES, indices);
+        Message msg = mService.get().getHandler().obtainMessage();
+        msg.obj = obj;
+        mService.get().getHandler().sendMessage(msg);
+    }
+
+    @Override
+    public void moveTracks(int start, int count, int toPosition) {
+        ControlObject obj = new ControlObject(ControlObject.PLAYBACK_ACTION.ODYSSEY_MOVETRACKS, start, count, toPosition);
+        Message msg = mService.get().getHandler().obtainMessage();
+        msg.obj = obj;
+        mService.get().getHandler().sendMessage(msg);
+    }
+
     @Override
     public TrackModel getPlaylistSong(int index) {
         return mService.get().getPlaylistTrack(index);
     }
 
+    @Override
+    public List<TrackModel> getPlaylistWindow(int start, int count) {
+        return mService.get().getPlaylistWindow(start, count);
+    }
+
+    @Override
+    public int getFirstChangedPlaylistIndex(long sinceVersion) {
+        return mService.get().getFirstChangedPlaylistIndex(sinceVersion);
+    }
+
     @Override
     public int getPlaylistSize() {
         return mService.get().getPlaylistSize();
@@ -40,6 +40,7 @@ import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.Process;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -49,14 +50,20 @@ import org.gateshipone.odyssey.models.ArtistsTrackBuckets;
 import org.gateshipone.odyssey.models.FileModel;
 import org.gateshipone.odyssey.models.TrackModel;
 import org.gateshipone.odyssey.playbackservice.managers.PlaybackServiceStatusHelper;
+import org.gateshipone.odyssey.playbackservice.statemanager.CompactTrackList;
 import org.gateshipone.odyssey.playbackservice.statemanager.OdysseyDatabaseManager;
+import org.gateshipone.odyssey.playbackservice.statemanager.PagedTrackList;
+import org.gateshipone.odyssey.playbackservice.statemanager.QueueJournal;
+import org.gateshipone.odyssey.utils.DirectoryCrawler;
 import org.gateshipone.odyssey.utils.FileExplorerHelper;
 import org.gateshipone.odyssey.utils.MetaDataLoader;
 import org.gateshipone.odyssey.utils.MusicLibraryHelper;
 import org.gateshipone.odyssey.utils.PlaylistParser;
 import org.gateshipone.odyssey.utils.PlaylistParserFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
@@ -131,6 +138,12 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
 
     private static final int INDEX_NO_TRACKS_AVAILABLE = -1;
 
+    /**
+     * Maximum number of tracks returned by a single {@link #getPlaylistWindow(int, int)} call
+     * to not exceed the size of the binder IPC transaction buffer.
+     */
+    private static final int MAX_PLAYLIST_WINDOW_SIZE = 200;
+
     /**
      * Request code for the timeout intent when the PlaybackService is waiting to quit
      */
@@ -169,7 +182,7 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
     /**
      * Currently active playlist.
      */
-    private List<TrackModel> mCurrentList;
+    private CompactTrackList mCurrentList;
 
     /**
      * Index of the currently active track.
@@ -229,6 +242,11 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
      */
     private OdysseyDatabaseManager mDatabaseManager = null;
 
+    /**
+     * Changes of the playlist since the last autosave
+     */
+    private QueueJournal mQueueJournal;
+
     /**
      * BroadcastReceiver that handles all control intents
      */
@@ -236,6 +254,16 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
 
     private boolean mBusy = false;
 
+    /**
+     * The running crawl for a directory and its subdirectories. Only accessed by the handler thread.
+     */
+    private DirectoryCrawler mDirectoryCrawler;
+
+    /**
+     * Crawls of enqueued directories that are started in order once the running crawl finished. Only accessed by the handler thread.
+     */
+    private final ArrayDeque<DirectoryCrawler> mPendingDirectoryCrawlers = new ArrayDeque<>();
+
     private MetaDataLoader mMetaDataLoader;
 
     private OdysseyComponentCallback mComponentCallback;
@@ -313,6 +341,10 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         // read a possible saved playlist from the database
         mCurrentList = mDatabaseManager.readPlaylist();
 
+        // record further changes relative to the saved playlist
+        mQueueJournal = new QueueJournal();
+        mQueueJournal.reset(mCurrentList.size(), !mDatabaseManager.hasAutosaveCheckpoint());
+
         // Create empty bucket list
         mArtistTrackBuckets = new ArtistsTrackBuckets();
         updateArtistTrackBuckets();
@@ -332,6 +364,11 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
             mCurrentPlayingIndex = playlistSize == 0 ? -1 : 0;
         }
 
+        // read the current and the next track of a large restored playlist now and the rest in the background
+        if (mCurrentList instanceof PagedTrackList) {
+            ((PagedTrackList) mCurrentList).loadInBackground(mCurrentPlayingIndex);
+        }
+
         if (null == mComponentCallback) {
             mComponentCallback = new OdysseyComponentCallback();
         }
@@ -652,6 +689,7 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         List<TrackModel> allTracks = MusicLibraryHelper.getAllTracks(filterString, getApplicationContext());
 
         mCurrentList.addAll(allTracks);
+        mQueueJournal.insertTracks(0, allTracks);
 
         // Start playing the first item in the list
         jumpToIndex(0);
@@ -671,9 +709,15 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
             mCurrentList.remove(mCurrentPlayingIndex);
 
             // shuffle playlist and set currentitem as first element
-            Collections.shuffle(mCurrentList);
+            mCurrentList.shuffle();
             mCurrentList.add(0, currentItem);
 
+            // the new order can only be saved completely
+            mQueueJournal.requestSnapshot();
+
+            // every position changed, so the buckets must be rebuilt
+            updateArtistTrackBuckets();
+
             // reset index
             mCurrentPlayingIndex = 0;
 
@@ -691,7 +735,12 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
             }
         } else if (mCurrentList.size() > 0 && mCurrentPlayingIndex < 0) {
             // service stopped just shuffle playlist
-            Collections.shuffle(mCurrentList);
+            mCurrentList.shuffle();
+
+            // the new order can only be saved completely
+            mQueueJournal.requestSnapshot();
+
+            updateArtistTrackBuckets();
 
             // sent broadcast
             mPlaybackServiceStatusHelper.updateStatus();
@@ -784,12 +833,44 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         return new TrackModel();
     }
 
+    /**
+     * Getter to retrieve a range of TrackModel items from the playlist with a single call.
+     *
+     * @param start Position of the first track to return
+     * @param count Number of tracks to return, limited to {@link #MAX_PLAYLIST_WINDOW_SIZE}
+     * @return The tracks of the range that are within bounds
+     */
+    public List<TrackModel> getPlaylistWindow(int start, int count) {
+        final int first = Math.max(0, start);
+        final int end = Math.min(mCurrentList.size(), start + Math.min(count, MAX_PLAYLIST_WINDOW_SIZE));
+
+        final List<TrackModel> tracks = new ArrayList<>(Math.max(0, end - first));
+        for (int i = first; i < end; i++) {
+            tracks.add(mCurrentList.get(i));
+        }
+        return tracks;
+    }
+
+    /**
+     * Returns the first position of the playlist that changed since the given version.
+     *
+     * @param sinceVersion A playlist version of a previous {@link NowPlayingInformation}
+     * @return The first changed position, -1 if nothing changed or 0 if the version is unknown
+     */
+    public int getFirstChangedPlaylistIndex(long sinceVersion) {
+        return mQueueJournal.getFirstChangedPosition(sinceVersion);
+    }
+
     /**
      * Clears the current playlist and stops playback afterwards. Also resets repeat, random state
      */
     public void clearPlaylist() {
+        // tracks of a running directory crawl must not be added to the new playlist
+        cancelDirectoryCrawl();
+
         // Clear the list
         mCurrentList.clear();
+        mQueueJournal.requestSnapshot();
 
         updateArtistTrackBuckets();
 
@@ -952,7 +1033,8 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         mPlaybackServiceStatusHelper.updateStatus();
 
         // Update artists track buckets
-        updateArtistTrackBuckets();
+        mArtistTrackBuckets.insertTracks(oldSize, tracklist);
+        mQueueJournal.insertTracks(oldSize, tracklist);
     }
 
     /**
@@ -1110,7 +1192,8 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         mPlaybackServiceStatusHelper.updateStatus();
 
         // Update artists track buckets
-        updateArtistTrackBuckets();
+        mArtistTrackBuckets.insertTrack(oldSize, track);
+        mQueueJournal.insertTrack(oldSize, track);
     }
 
     /**
@@ -1124,21 +1207,22 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         if (mCurrentPlayingIndex >= 0) {
             // Enqueue in list structure
             mCurrentList.add(mCurrentPlayingIndex + 1, track);
+            mArtistTrackBuckets.insertTrack(mCurrentPlayingIndex + 1, track);
+            mQueueJournal.insertTrack(mCurrentPlayingIndex + 1, track);
             mNextPlayingIndex = mCurrentPlayingIndex + 1;
             // Set next track to new one
             setNextTrackForMP();
         } else {
             // If not playing just add it to the beginning of the playlist
             mCurrentList.add(0, track);
+            mArtistTrackBuckets.insertTrack(0, track);
+            mQueueJournal.insertTrack(0, track);
             // Start playback which is probably intended
             jumpToIndex(0);
         }
 
         // Send new NowPlaying because playlist changed
         mPlaybackServiceStatusHelper.updateStatus();
-
-        // Update artists track buckets
-        updateArtistTrackBuckets();
     }
 
     /**
@@ -1152,6 +1236,8 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         if (mCurrentPlayingIndex == index) {
             // Delete song at index
             mCurrentList.remove(index);
+            mArtistTrackBuckets.removeTracks(index, 1);
+            mQueueJournal.removeTracks(index, 1);
 
             // Check if a next track exists and jump to it if player was playing before
             if (state == PLAYSTATE.PLAYING && index < mCurrentList.size()) {
@@ -1163,9 +1249,13 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
             // Deletion of next song which requires extra handling
             // because of gapless playback, set next song to next one
             mCurrentList.remove(index);
+            mArtistTrackBuckets.removeTracks(index, 1);
+            mQueueJournal.removeTracks(index, 1);
             setNextTrackForMP();
         } else if (index >= 0 && index < mCurrentList.size()) {
             mCurrentList.remove(index);
+            mArtistTrackBuckets.removeTracks(index, 1);
+            mQueueJournal.removeTracks(index, 1);
             // mCurrentIndex and mNextPlayingIndex is now moved one position up so update variables
             if (index < mCurrentPlayingIndex) {
                 mCurrentPlayingIndex--;
@@ -1181,9 +1271,6 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
 
         // Send new NowPlaying because playlist changed
         mPlaybackServiceStatusHelper.updateStatus();
-
-        // Update artists track buckets
-        updateArtistTrackBuckets();
     }
 
     /**
@@ -1198,13 +1285,16 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
 
         PLAYSTATE state = getPlaybackState();
 
+        // Saved to update the artists track buckets with the removed tracks
+        int oldSize = mCurrentList.size();
+
         int endIndex = index + 1;
 
-        String albumKey = mCurrentList.get(index).getTrackAlbumKey();
+        String albumKey = mCurrentList.getTrackAlbumKey(index);
 
         // get endindex for section
         while (endIndex < mCurrentList.size()) {
-            if (albumKey.equals(mCurrentList.get(endIndex).getTrackAlbumKey())) {
+            if (albumKey.equals(mCurrentList.getTrackAlbumKey(endIndex))) {
                 endIndex++;
             } else {
                 break;
@@ -1225,6 +1315,11 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
                     break;
                 }
             }
+
+            // Update artists track buckets
+            mArtistTrackBuckets.removeTracks(index, oldSize - mCurrentList.size());
+            mQueueJournal.removeTracks(index, oldSize - mCurrentList.size());
+
             // Check if a next track exists and jump to it if player was playing before
             if (state == PLAYSTATE.PLAYING && endIndex < mCurrentList.size()) {
                 jumpToIndex(endIndex);
@@ -1248,6 +1343,10 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
                 }
             }
 
+            // Update artists track buckets
+            mArtistTrackBuckets.removeTracks(index, oldSize - mCurrentList.size());
+            mQueueJournal.removeTracks(index, oldSize - mCurrentList.size());
+
             setNextTrackForMP();
         } else if (index >= 0 && index < mCurrentList.size()) {
             // check if section is before current song
@@ -1269,6 +1368,10 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
                     break;
                 }
             }
+
+            // Update artists track buckets
+            mArtistTrackBuckets.removeTracks(index, oldSize - mCurrentList.size());
+            mQueueJournal.removeTracks(index, oldSize - mCurrentList.size());
         }
 
         // Check if a song remains
@@ -1282,9 +1385,238 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
 
         mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.IDLE);
         mBusy = false;
+    }
 
-        // Update artists track buckets
-        updateArtistTrackBuckets();
+    /**
+     * Inserts all given tracks at the given position of the playlist.
+     * The state is updated only once for all tracks.
+     *
+     * @param tracklist The tracks to insert
+     * @param position  Position of the first inserted track
+     */
+    public void enqueueTracks(List<TrackModel> tracklist, int position) {
+        if (tracklist.isEmpty()) {
+            return;
+        }
+
+        final int insertPosition = Math.max(0, Math.min(position, mCurrentList.size()));
+        final int count = tracklist.size();
+
+        mCurrentList.addAll(insertPosition, tracklist);
+        mArtistTrackBuckets.insertTracks(insertPosition, tracklist);
+        mQueueJournal.insertTracks(insertPosition, tracklist);
+
+        if (mCurrentPlayingIndex == INDEX_NO_TRACKS_AVAILABLE) {
+            // If tracks are the first to be added, set playing index to 0
+            mCurrentPlayingIndex = 0;
+        } else {
+            if (insertPosition <= mCurrentPlayingIndex) {
+                mCurrentPlayingIndex += count;
+            }
+            if (insertPosition <= mNextPlayingIndex) {
+                mNextPlayingIndex += count;
+            }
+
+            updateNextTrack(false);
+        }
+
+        // Send new NowPlaying because playlist changed
+        mPlaybackServiceStatusHelper.updateStatus();
+    }
+
+    /**
+     * Dequeues a range of tracks from the playlist.
+     *
+     * @param start Position of the first track to remove
+     * @param count Number of tracks to remove
+     */
+    public void dequeueTrackRange(int start, int count) {
+        final int first = Math.max(0, start);
+        final int end = Math.min(mCurrentList.size(), start + count);
+
+        if (first < end) {
+            dequeueTrackRanges(new int[]{first}, new int[]{end}, 1);
+        }
+    }
+
+    /**
+     * Dequeues the tracks at the given positions from the playlist.
+     *
+     * @param indices Positions of the tracks to remove in any order
+     */
+    public void dequeueTrackIndices(int[] indices) {
+        final int[] sortedIndices = indices.clone();
+        Arrays.sort(sortedIndices);
+
+        // merge consecutive positions to ranges
+        final int[] starts = new int[sortedIndices.length];
+        final int[] ends = new int[sortedIndices.length];
+        int rangeCount = 0;
+
+        for (int index : sortedIndices) {
+            if (index < 0 || index >= mCurrentList.size()) {
+                continue;
+            }
+
+            if (rangeCount > 0 && index <= ends[rangeCount - 1]) {
+                ends[rangeCount - 1] = index + 1;
+            } else {
+                starts[rangeCount] = index;
+                ends[rangeCount] = index + 1;
+                rangeCount++;
+            }
+        }
+
+        dequeueTrackRanges(starts, ends, rangeCount);
+    }
+
+    /**
+     * Removes the given ranges from the playlist. The playback state, the GaplessPlayer and the
+     * listeners are only updated once after all ranges are removed.
+     *
+     * @param starts     Positions of the first track of each range in ascending order
+     * @param ends       Positions behind the last track of each range, ranges must not overlap
+     * @param rangeCount Number of valid ranges
+     */
+    private void dequeueTrackRanges(final int[] starts, final int[] ends, final int rangeCount) {
+        if (rangeCount == 0) {
+            return;
+        }
+
+        PLAYSTATE state = getPlaybackState();
+
+        int removedBeforeCurrent = 0;
+        int removedBeforeNext = 0;
+        int currentRangeStart = -1;
+        boolean nextRemoved = false;
+
+        // remove the last range first so the positions of the other ranges stay valid
+        for (int i = rangeCount - 1; i >= 0; i--) {
+            final int start = starts[i];
+            final int count = ends[i] - start;
+
+            if (mCurrentPlayingIndex >= ends[i]) {
+                removedBeforeCurrent += count;
+            } else if (mCurrentPlayingIndex >= start) {
+                currentRangeStart = start;
+            }
+
+            if (mNextPlayingIndex >= ends[i]) {
+                removedBeforeNext += count;
+            } else if (mNextPlayingIndex >= start) {
+                nextRemoved = true;
+            }
+
+            mCurrentList.subList(start, ends[i]).clear();
+            mArtistTrackBuckets.removeTracks(start, count);
+            mQueueJournal.removeTracks(start, count);
+        }
+
+        if (currentRangeStart >= 0) {
+            // The current track was removed, continue with the first track behind its range
+            final int nextIndex = currentRangeStart - removedBeforeCurrent;
+
+            if (state == PLAYSTATE.PLAYING && nextIndex < mCurrentList.size()) {
+                jumpToIndex(nextIndex);
+            } else {
+                stop();
+            }
+        } else {
+            mCurrentPlayingIndex -= removedBeforeCurrent;
+            mNextPlayingIndex -= removedBeforeNext;
+
+            updateNextTrack(nextRemoved);
+        }
+
+        // Check if a song remains
+        if (mCurrentList.size() == 0) {
+            // No track remains
+            stop();
+        }
+
+        // Send new NowPlaying because playlist changed
+        mPlaybackServiceStatusHelper.updateStatus();
+    }
+
+    /**
+     * Moves a range of tracks to a new position in the playlist.
+     *
+     * @param start      Position of the first track to move
+     * @param count      Number of tracks to move
+     * @param toPosition Position of the first moved track after the move
+     */
+    public void moveTracks(int start, int count, int toPosition) {
+        if (start < 0 || count <= 0 || start + count > mCurrentList.size()) {
+            return;
+        }
+
+        final int to = Math.max(0, Math.min(toPosition, mCurrentList.size() - count));
+        if (to == start) {
+            return;
+        }
+
+        final List<TrackModel> tracks = new ArrayList<>(mCurrentList.subList(start, start + count));
+
+        mCurrentList.subList(start, start + count).clear();
+        mCurrentList.addAll(to, tracks);
+
+        mArtistTrackBuckets.removeTracks(start, count);
+        mArtistTrackBuckets.insertTracks(to, tracks);
+        mQueueJournal.moveTracks(start, count, to);
+
+        mCurrentPlayingIndex = getMovedIndex(mCurrentPlayingIndex, start, count, to);
+        mNextPlayingIndex = getMovedIndex(mNextPlayingIndex, start, count, to);
+
+        updateNextTrack(false);
+
+        // Send new NowPlaying because playlist changed
+        mPlaybackServiceStatusHelper.updateStatus();
+    }
+
+    /**
+     * Returns the new position of a track after a range of tracks was moved.
+     */
+    private static int getMovedIndex(final int index, final int start, final int count, final int to) {
+        if (index < 0) {
+            return index;
+        }
+
+        if (index >= start && index < start + count) {
+            // the track was moved itself
+            return to + index - start;
+        }
+
+        final int remainingIndex = index >= start + count ? index - count : index;
+
+        return remainingIndex >= to ? remainingIndex + count : remainingIndex;
+    }
+
+    /**
+     * Recalculates the next track after the playlist was edited and notifies the GaplessPlayer.
+     *
+     * @param nextRemoved True if the previous next track was removed from the playlist
+     */
+    private void updateNextTrack(final boolean nextRemoved) {
+        if (mCurrentPlayingIndex < 0) {
+            return;
+        }
+
+        if (mRandom == RANDOMSTATE.RANDOM_ON) {
+            // keep the random choice if it is still part of the playlist
+            if (nextRemoved || mNextPlayingIndex < 0 || mNextPlayingIndex >= mCurrentList.size()) {
+                randomizeNextTrack();
+            }
+        } else if (mRepeat == REPEATSTATE.REPEAT_TRACK) {
+            mNextPlayingIndex = mCurrentPlayingIndex;
+        } else if (mCurrentPlayingIndex + 1 < mCurrentList.size()) {
+            mNextPlayingIndex = mCurrentPlayingIndex + 1;
+        } else if (mRepeat == REPEATSTATE.REPEAT_ALL) {
+            mNextPlayingIndex = 0;
+        } else {
+            mNextPlayingIndex = INDEX_NO_TRACKS_AVAILABLE;
+        }
+
+        setNextTrackForMP();
     }
 
     /**
@@ -1296,6 +1628,8 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         cancelQuitAlert();
         cancelSleepTimer();
 
+        cancelDirectoryCrawl();
+
         // Save the current playback position
         mLastPosition = getTrackPosition();
 
@@ -1312,7 +1646,7 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         serviceState.mTrackPosition = mLastPosition;
         serviceState.mRandomState = mRandom;
         serviceState.mRepeatState = mRepeat;
-        mDatabaseManager.saveState(mCurrentList, serviceState, "auto", true);
+        mDatabaseManager.saveAutoState(mCurrentList, serviceState, mQueueJournal);
 
         if (mCurrentList.size() > 0 && mCurrentPlayingIndex >= 0 && (mCurrentPlayingIndex < mCurrentList.size())) {
             // Notify simple last.fm scrobbler about playback stop
@@ -1415,6 +1749,31 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         return null;
     }
 
+    /**
+     * Stores the given track with the duration reported by the player in the playlist.
+     * Only used if the playlist entry of the current track has no duration, e.g. for files without parsed tags.
+     * The playlist is changed on the handler thread like all other changes.
+     *
+     * @param track A copy of the current track with the duration set.
+     */
+    public void updateCurrentTrackDuration(final TrackModel track) {
+        mHandler.post(() -> {
+            if (mCurrentPlayingIndex < 0 || mCurrentPlayingIndex >= mCurrentList.size()) {
+                return;
+            }
+
+            final TrackModel currentTrack = mCurrentList.get(mCurrentPlayingIndex);
+
+            // the current track might have changed in the meantime
+            if (currentTrack.getTrackDuration() != 0 || !TextUtils.equals(currentTrack.getTrackURL(), track.getTrackURL())) {
+                return;
+            }
+
+            mCurrentList.set(mCurrentPlayingIndex, track);
+            mQueueJournal.updateTrack(mCurrentPlayingIndex, track);
+        });
+    }
+
     /**
      * Return the current nowplaying information including the current track.
      */
@@ -1427,7 +1786,7 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
         } else {
             TrackModel currentTrack = mCurrentList.get(mCurrentPlayingIndex);
 
-            return new NowPlayingInformation(state, mCurrentPlayingIndex, mRepeat, mRandom, mCurrentList.size(), currentTrack);
+            return new NowPlayingInformation(state, mCurrentPlayingIndex, mRepeat, mRandom, mCurrentList.size(), currentTrack, mQueueJournal.getVersion());
         }
     }
 
@@ -1546,6 +1905,10 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
             mCurrentPlayingIndex = -1;
         }
 
+        if (mCurrentList instanceof PagedTrackList) {
+            ((PagedTrackList) mCurrentList).loadInBackground(mCurrentPlayingIndex);
+        }
+
         mLastPlayingIndex = -1;
         mNextPlayingIndex = -1;
 
@@ -1709,21 +2072,7 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
      * @param filterString  A filter that is used to exclude folders/files that didn't contain this String.
      */
     public void enqueueDirectoryAndSubDirectories(String directoryPath, String filterString) {
-        mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.WORKING);
-        mBusy = true;
-
-        final FileModel currentDirectory = new FileModel(directoryPath);
-
-        List<TrackModel> tracks = FileExplorerHelper.getInstance().getTrackModelsForFolderAndSubFolders(getApplicationContext(), currentDirectory, filterString);
-
-        // add tracks to current playlist
-        enqueueTracks(tracks);
-
-        // start meta data extraction for new tracks
-        mMetaDataLoader.getTrackListMetaData(getApplicationContext(), tracks);
-
-        mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.IDLE);
-        mBusy = false;
+        startDirectoryCrawl(directoryPath, filterString, false);
     }
 
     /**
@@ -1736,9 +2085,90 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
     public void playDirectoryAndSubDirectories(String directoryPath, String filterString) {
         clearPlaylist();
 
-        enqueueDirectoryAndSubDirectories(directoryPath, filterString);
+        startDirectoryCrawl(directoryPath, filterString, true);
+    }
 
-        jumpToIndex(0);
+    /**
+     * Starts a {@link DirectoryCrawler} for the given directory. The found tracks are enqueued batch by batch
+     * on the handler thread of the service, so that the playback can start with the first batch.
+     * If another crawl is running the new one is started after it finished, so all directories are enqueued in order.
+     *
+     * @param directoryPath the path to the selected directory
+     * @param filterString  A filter that is used to exclude folder/files that didn't contain this String.
+     * @param play          True if the playback should start with the first found track.
+     */
+    private void startDirectoryCrawl(String directoryPath, String filterString, final boolean play) {
+        mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.WORKING);
+        mBusy = true;
+
+        final DirectoryCrawler directoryCrawler = new DirectoryCrawler(getApplicationContext(), new FileModel(directoryPath), filterString, new DirectoryCrawler.DirectoryCrawlerListener() {
+            private boolean mFirstBatch = true;
+
+            @Override
+            public void onTracksFound(DirectoryCrawler crawler, List<TrackModel> tracks) {
+                mHandler.post(() -> {
+                    if (crawler != mDirectoryCrawler || crawler.isCancelled()) {
+                        return;
+                    }
+
+                    final int startIndex = mCurrentList.size();
+
+                    // add tracks to current playlist
+                    enqueueTracks(tracks);
+
+                    // start meta data extraction for new tracks
+                    mMetaDataLoader.getTrackListMetaData(getApplicationContext(), tracks);
+
+                    if (play && mFirstBatch) {
+                        jumpToIndex(startIndex);
+                    }
+                    mFirstBatch = false;
+                });
+            }
+
+            @Override
+            public void onCrawlFinished(DirectoryCrawler crawler) {
+                mHandler.post(() -> {
+                    if (crawler != mDirectoryCrawler) {
+                        return;
+                    }
+
+                    // continue with the next enqueued directory
+                    mDirectoryCrawler = mPendingDirectoryCrawlers.poll();
+
+                    if (mDirectoryCrawler != null) {
+                        mDirectoryCrawler.start();
+                        return;
+                    }
+
+                    mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.IDLE);
+                    mBusy = false;
+                });
+            }
+        });
+
+        if (mDirectoryCrawler != null) {
+            mPendingDirectoryCrawlers.add(directoryCrawler);
+        } else {
+            mDirectoryCrawler = directoryCrawler;
+            mDirectoryCrawler.start();
+        }
+    }
+
+    /**
+     * Cancels a running {@link DirectoryCrawler} and all pending ones. Already enqueued tracks remain in the playlist.
+     * Only used for commands that replace the playlist or stop the service.
+     */
+    private void cancelDirectoryCrawl() {
+        mPendingDirectoryCrawlers.clear();
+
+        if (mDirectoryCrawler != null) {
+            mDirectoryCrawler.cancel();
+            mDirectoryCrawler = null;
+
+            mPlaybackServiceStatusHelper.broadcastPlaybackServiceState(PLAYBACKSERVICESTATE.IDLE);
+            mBusy = false;
+        }
     }
 
     /**
@@ -2024,33 +2454,45 @@ public class PlaybackService extends Service implements AudioManager.OnAudioFocu
     }
 
     /**
-     * Callback if the parsing of all unknown tracks has finished.
-     * This will update all unknown tracks in the current playlist if they still exist.
+     * Callback if the parsing of a chunk of unknown tracks has finished. Called on a thread of the {@link MetaDataLoader}.
+     * The tracks are applied on the handler thread like all other changes of the playlist.
      *
      * @param parsedTracks A Map of parsed tracks.
      */
     @Override
     public void metaDataLoaderFinished(Map<String, TrackModel> parsedTracks) {
+        mHandler.post(() -> updateParsedTracks(parsedTracks));
+    }
+
+    /**
+     * Updates all unknown tracks in the current playlist with the parsed tracks if they still exist.
+     *
+     * @param parsedTracks A Map of parsed tracks.
+     */
+    private void updateParsedTracks(Map<String, TrackModel> parsedTracks) {
         ListIterator<TrackModel> iterator = mCurrentList.listIterator();
 
         boolean updatedNeeded = false;
 
         while (iterator.hasNext()) {
+            final int position = iterator.nextIndex();
             final TrackModel track = iterator.next();
 
-            if (parsedTracks.containsKey(track.getTrackURL())) {
+            final TrackModel parsedTrack = parsedTracks.get(track.getTrackURL());
+            if (parsedTrack != null) {
                 // if the track is in the map replace it in the playlist
-                iterator.set(parsedTracks.get(track.getTrackURL()));
+                iterator.set(parsedTrack);
                 updatedNeeded = true;
+
+                // Update smart random data if necessary
+                mArtistTrackBuckets.updateTrack(position, track, parsedTrack);
+                mQueueJournal.updateTrack(position, parsedTrack);
             }
         }
 
         if (updatedNeeded) {
             // notify the UI if an update has occurred
             mPlaybackServiceStatusHelper.updateStatus();
-
-            // Update smart random data if necessary
-            updateArtistTrackBuckets();
         }
     }
 
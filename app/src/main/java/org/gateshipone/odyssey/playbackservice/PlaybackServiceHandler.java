@@ -86,6 +86,18 @@ public class PlaybackServiceHandler extends Handler {
                 case ODYSSEY_DEQUEUETRACKS:
                     mService.get().dequeueTracks(msgObj.getIntParam());
                     break;
+                case ODYSSEY_ENQUEUETRACKSAT:
+                    mService.get().enqueueTracks(msgObj.getTrackList(), msgObj.getIntParam());
+                    break;
+                case ODYSSEY_DEQUEUETRACKRANGE:
+                    mService.get().dequeueTrackRange(msgObj.getIntParam(), msgObj.getSecondIntParam());
+                    break;
+                case ODYSSEY_DEQUEUETRACKINDICES:
+                    mService.get().dequeueTrackIndices(msgObj.getIntArrayParam());
+                    break;
+                case ODYSSEY_MOVETRACKS:
+                    mService.get().moveTracks(msgObj.getIntParam(), msgObj.getSecondIntParam(), msgObj.getThirdIntParam());
+                    break;
                 case ODYSSEY_CLEARPLAYLIST:
                     mService.get().clearPlaylist();
                     break;
@@ -135,6 +135,11 @@ public class PlaybackServiceStatusHelper {
         // Get duration from PBS if no duration was set before
         if (currentTrack.getTrackDuration() == 0) {
             currentTrack.setTrackDuration(mPlaybackService.getTrackDuration());
+
+            // the track is a copy of the playlist entry, so keep the duration in the playlist as well
+            if (currentTrack.getTrackDuration() != 0) {
+                mPlaybackService.updateCurrentTrackDuration(currentTrack);
+            }
         }
 
         PlaybackService.PLAYSTATE currentState = info.getPlayState();
@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.playbackservice.statemanager;
+
+import org.gateshipone.odyssey.models.TrackModel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.RandomAccess;
+
+/**
+ * A memory efficient list of tracks for large playlists.
+ * <p>
+ * The tracks are not kept as {@link TrackModel} objects but in a table of primitive arrays. The artist, album
+ * and album key strings are interned, so all tracks of an album share the same strings.
+ * The list itself only contains handles to the rows of this table. The handles are split into chunks of limited size,
+ * so inserting or removing a track only moves the handles of a single chunk instead of the complete list.
+ * <p>
+ * {@link #get(int)} creates a new {@link TrackModel} for every call.
+ * <p>
+ * Subclasses can store placeholder handles for tracks that are not known yet, see {@link PagedTrackList}.
+ */
+public class CompactTrackList extends AbstractList<TrackModel> implements RandomAccess {
+
+    /**
+     * Maximum number of handles in a chunk.
+     */
+    private static final int CHUNK_CAPACITY = 512;
+
+    /**
+     * Number of handles per chunk if the chunks are created from scratch. Leaves space for insertions.
+     */
+    private static final int CHUNK_FILL_SIZE = CHUNK_CAPACITY * 3 / 4;
+
+    private static final int INITIAL_TABLE_CAPACITY = 64;
+
+    /**
+     * Resolves placeholder handles to their tracks.
+     */
+    protected interface PlaceholderResolver {
+        TrackModel resolve(int value);
+    }
+
+    private static class Chunk {
+        final int[] mHandles = new int[CHUNK_CAPACITY];
+
+        int mSize;
+    }
+
+    /**
+     * Chunks of handles in list order.
+     */
+    private final ArrayList<Chunk> mChunks = new ArrayList<>();
+
+    private int mSize;
+
+    /**
+     * Chunk and its first list position of the last lookup, speeds up sequential access.
+     */
+    private int mCachedChunkIndex = -1;
+
+    private int mCachedChunkStart;
+
+    /**
+     * Offset inside the chunk that was found by the last call of {@link #locate(int)}.
+     */
+    private int mLocatedOffset;
+
+    /*
+     * The track table, one row per track in the list.
+     */
+    private String[] mNames;
+    private String[] mURLs;
+    private int[] mArtistNames;
+    private int[] mAlbumNames;
+    private int[] mAlbumKeys;
+    private long[] mDurations;
+    private int[] mNumbers;
+    private long[] mTrackIds;
+    private int[] mDateAdded;
+
+    /**
+     * Number of used rows including the free rows.
+     */
+    private int mRowCount;
+
+    private int[] mFreeRows;
+    private int mFreeRowCount;
+
+    /*
+     * The string pool with a reference count for each string.
+     */
+    private final HashMap<String, Integer> mStringIndices = new HashMap<>();
+    private String[] mStrings;
+    private int[] mStringReferences;
+    private int mStringCount;
+    private int[] mFreeStrings;
+    private int mFreeStringCount;
+
+    public CompactTrackList() {
+        initTables();
+    }
+
+    public CompactTrackList(final Collection<TrackModel> tracks) {
+        initTables();
+        addAll(tracks);
+    }
+
+    @Override
+    public synchronized TrackModel get(final int index) {
+        checkIndex(index);
+
+        final int handle = getHandle(index);
+
+        if (isPlaceholder(handle)) {
+            return new TrackModel();
+        }
+
+        return createTrack(handle);
+    }
+
+    /**
+     * Returns the album key of the track at the given index without creating a {@link TrackModel}.
+     */
+    public String getTrackAlbumKey(final int index) {
+        synchronized (this) {
+            checkIndex(index);
+
+            final int handle = getHandle(index);
+            if (!isPlaceholder(handle)) {
+                return mStrings[mAlbumKeys[handle]];
+            }
+        }
+
+        // placeholders are resolved by get
+        return get(index).getTrackAlbumKey();
+    }
+
+    @Override
+    public TrackModel set(final int index, final TrackModel track) {
+        // get is called without holding the lock because subclasses might need to read the track first
+        final TrackModel previousTrack = get(index);
+
+        synchronized (this) {
+            final int chunkIndex = locate(index);
+            final Chunk chunk = mChunks.get(chunkIndex);
+
+            final int previousHandle = chunk.mHandles[mLocatedOffset];
+            chunk.mHandles[mLocatedOffset] = storeTrack(track);
+
+            if (!isPlaceholder(previousHandle)) {
+                releaseTrack(previousHandle);
+            }
+        }
+
+        return previousTrack;
+    }
+
+    @Override
+    public synchronized void add(final int index, final TrackModel track) {
+        if (index < 0 || index > mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+
+        insertHandle(index, storeTrack(track));
+    }
+
+    @Override
+    public TrackModel remove(final int index) {
+        final TrackModel track = get(index);
+
+        synchronized (this) {
+            removeHandles(index, index + 1);
+        }
+
+        return track;
+    }
+
+    @Override
+    public synchronized void clear() {
+        mChunks.clear();
+        mSize = 0;
+        mCachedChunkIndex = -1;
+        mStringIndices.clear();
+        initTables();
+        modCount++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return mSize;
+    }
+
+    @Override
+    protected synchronized void removeRange(final int fromIndex, final int toIndex) {
+        // removing a range does not need to create the removed tracks
+        removeHandles(fromIndex, toIndex);
+    }
+
+    /**
+     * Shuffles the tracks of the list by only moving their handles.
+     */
+    public synchronized void shuffle() {
+        final int[] handles = new int[mSize];
+
+        int position = 0;
+        for (Chunk chunk : mChunks) {
+            System.arraycopy(chunk.mHandles, 0, handles, position, chunk.mSize);
+            position += chunk.mSize;
+        }
+
+        final Random random = new Random();
+        for (int i = handles.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int handle = handles[i];
+            handles[i] = handles[j];
+            handles[j] = handle;
+        }
+
+        mChunks.clear();
+        mCachedChunkIndex = -1;
+
+        for (int start = 0; start < handles.length; start += CHUNK_FILL_SIZE) {
+            final Chunk chunk = new Chunk();
+            chunk.mSize = Math.min(CHUNK_FILL_SIZE, handles.length - start);
+            System.arraycopy(handles, start, chunk.mHandles, 0, chunk.mSize);
+            mChunks.add(chunk);
+        }
+
+        modCount++;
+    }
+
+    protected static int createPlaceholder(final int value) {
+        return -value - 1;
+    }
+
+    protected static boolean isPlaceholder(final int handle) {
+        return handle < 0;
+    }
+
+    protected static int getPlaceholderValue(final int handle) {
+        return -handle - 1;
+    }
+
+    /**
+     * Appends the given placeholder handle to the list.
+     */
+    protected synchronized void addPlaceholder(final int handle) {
+        insertHandle(mSize, handle);
+    }
+
+    /**
+     * @return The handle at the given index, either a row of the track table or a placeholder.
+     */
+    protected synchronized int getHandle(final int index) {
+        final int chunkIndex = locate(index);
+
+        return mChunks.get(chunkIndex).mHandles[mLocatedOffset];
+    }
+
+    /**
+     * Replaces the placeholder at the given index with the given track.
+     */
+    protected synchronized void resolvePlaceholder(final int index, final TrackModel track) {
+        final int chunkIndex = locate(index);
+        final Chunk chunk = mChunks.get(chunkIndex);
+
+        if (isPlaceholder(chunk.mHandles[mLocatedOffset])) {
+            chunk.mHandles[mLocatedOffset] = storeTrack(track);
+        }
+    }
+
+    /**
+     * Replaces all placeholders of the list with the tracks returned by the given resolver.
+     */
+    protected synchronized void resolvePlaceholders(final PlaceholderResolver resolver) {
+        for (Chunk chunk : mChunks) {
+            for (int i = 0; i < chunk.mSize; i++) {
+                if (isPlaceholder(chunk.mHandles[i])) {
+                    chunk.mHandles[i] = storeTrack(resolver.resolve(getPlaceholderValue(chunk.mHandles[i])));
+                }
+            }
+        }
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+    }
+
+    /**
+     * Finds the chunk that contains the given index. The offset inside the chunk is stored in {@link #mLocatedOffset}.
+     *
+     * @return The index of the chunk.
+     */
+    private int locate(final int index) {
+        int chunkIndex = 0;
+        int chunkStart = 0;
+
+        if (mCachedChunkIndex >= 0 && index >= mCachedChunkStart) {
+            chunkIndex = mCachedChunkIndex;
+            chunkStart = mCachedChunkStart;
+        }
+
+        while (index >= chunkStart + mChunks.get(chunkIndex).mSize) {
+            chunkStart += mChunks.get(chunkIndex).mSize;
+            chunkIndex++;
+        }
+
+        mCachedChunkIndex = chunkIndex;
+        mCachedChunkStart = chunkStart;
+        mLocatedOffset = index - chunkStart;
+
+        return chunkIndex;
+    }
+
+    private void insertHandle(final int index, final int handle) {
+        int chunkIndex;
+
+        if (mChunks.isEmpty()) {
+            mChunks.add(new Chunk());
+            chunkIndex = 0;
+            mCachedChunkStart = 0;
+            mLocatedOffset = 0;
+        } else if (index == mSize) {
+            // append to the last chunk
+            locate(index - 1);
+            chunkIndex = mCachedChunkIndex;
+            mLocatedOffset++;
+        } else {
+            chunkIndex = locate(index);
+        }
+
+        Chunk chunk = mChunks.get(chunkIndex);
+
+        if (chunk.mSize == CHUNK_CAPACITY) {
+            // split the full chunk into two halves
+            final Chunk newChunk = new Chunk();
+            final int half = CHUNK_CAPACITY / 2;
+
+            System.arraycopy(chunk.mHandles, half, newChunk.mHandles, 0, CHUNK_CAPACITY - half);
+            newChunk.mSize = CHUNK_CAPACITY - half;
+            chunk.mSize = half;
+            mChunks.add(chunkIndex + 1, newChunk);
+
+            if (mLocatedOffset > half) {
+                mCachedChunkStart += half;
+                chunkIndex++;
+                mLocatedOffset -= half;
+                chunk = newChunk;
+            }
+        }
+
+        System.arraycopy(chunk.mHandles, mLocatedOffset, chunk.mHandles, mLocatedOffset + 1, chunk.mSize - mLocatedOffset);
+        chunk.mHandles[mLocatedOffset] = handle;
+        chunk.mSize++;
+        mSize++;
+
+        mCachedChunkIndex = chunkIndex;
+        modCount++;
+    }
+
+    private void removeHandles(final int fromIndex, final int toIndex) {
+        if (fromIndex < 0 || toIndex > mSize || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + mSize);
+        }
+
+        int count = toIndex - fromIndex;
+
+        while (count > 0) {
+            final int chunkIndex = locate(fromIndex);
+            final Chunk chunk = mChunks.get(chunkIndex);
+
+            final int removeCount = Math.min(count, chunk.mSize - mLocatedOffset);
+            for (int i = mLocatedOffset; i < mLocatedOffset + removeCount; i++) {
+                if (!isPlaceholder(chunk.mHandles[i])) {
+                    releaseTrack(chunk.mHandles[i]);
+                }
+            }
+
+            System.arraycopy(chunk.mHandles, mLocatedOffset + removeCount, chunk.mHandles, mLocatedOffset, chunk.mSize - mLocatedOffset - removeCount);
+            chunk.mSize -= removeCount;
+            mSize -= removeCount;
+            count -= removeCount;
+
+            if (chunk.mSize == 0) {
+                mChunks.remove(chunkIndex);
+                mCachedChunkIndex = -1;
+            } else if (chunkIndex + 1 < mChunks.size() && chunk.mSize + mChunks.get(chunkIndex + 1).mSize <= CHUNK_FILL_SIZE) {
+                // merge small neighbours to keep the number of chunks low
+                final Chunk nextChunk = mChunks.remove(chunkIndex + 1);
+                System.arraycopy(nextChunk.mHandles, 0, chunk.mHandles, chunk.mSize, nextChunk.mSize);
+                chunk.mSize += nextChunk.mSize;
+            }
+        }
+
+        modCount++;
+    }
+
+    private void initTables() {
+        mNames = new String[INITIAL_TABLE_CAPACITY];
+        mURLs = new String[INITIAL_TABLE_CAPACITY];
+        mArtistNames = new int[INITIAL_TABLE_CAPACITY];
+        mAlbumNames = new int[INITIAL_TABLE_CAPACITY];
+        mAlbumKeys = new int[INITIAL_TABLE_CAPACITY];
+        mDurations = new long[INITIAL_TABLE_CAPACITY];
+        mNumbers = new int[INITIAL_TABLE_CAPACITY];
+        mTrackIds = new long[INITIAL_TABLE_CAPACITY];
+        mDateAdded = new int[INITIAL_TABLE_CAPACITY];
+        mRowCount = 0;
+        mFreeRows = new int[INITIAL_TABLE_CAPACITY];
+        mFreeRowCount = 0;
+
+        mStrings = new String[INITIAL_TABLE_CAPACITY];
+        mStringReferences = new int[INITIAL_TABLE_CAPACITY];
+        mStringCount = 0;
+        mFreeStrings = new int[INITIAL_TABLE_CAPACITY];
+        mFreeStringCount = 0;
+    }
+
+    /**
+     * Stores the given track in a free row of the track table.
+     *
+     * @return The row of the track.
+     */
+    private int storeTrack(final TrackModel track) {
+        final int row;
+
+        if (mFreeRowCount > 0) {
+            row = mFreeRows[--mFreeRowCount];
+        } else {
+            if (mRowCount == mNames.length) {
+                final int capacity = mRowCount * 2;
+                mNames = Arrays.copyOf(mNames, capacity);
+                mURLs = Arrays.copyOf(mURLs, capacity);
+                mArtistNames = Arrays.copyOf(mArtistNames, capacity);
+                mAlbumNames = Arrays.copyOf(mAlbumNames, capacity);
+                mAlbumKeys = Arrays.copyOf(mAlbumKeys, capacity);
+                mDurations = Arrays.copyOf(mDurations, capacity);
+                mNumbers = Arrays.copyOf(mNumbers, capacity);
+                mTrackIds = Arrays.copyOf(mTrackIds, capacity);
+                mDateAdded = Arrays.copyOf(mDateAdded, capacity);
+            }
+            row = mRowCount++;
+        }
+
+        mNames[row] = track.getTrackName();
+        mURLs[row] = track.getTrackURL();
+        mArtistNames[row] = internString(track.getTrackArtistName());
+        mAlbumNames[row] = internString(track.getTrackAlbumName());
+        mAlbumKeys[row] = internString(track.getTrackAlbumKey());
+        mDurations[row] = track.getTrackDuration();
+        mNumbers[row] = track.getTrackNumber();
+        mTrackIds[row] = track.getTrackId();
+        mDateAdded[row] = track.getDateAdded();
+
+        return row;
+    }
+
+    private void releaseTrack(final int row) {
+        mNames[row] = null;
+        mURLs[row] = null;
+        releaseString(mArtistNames[row]);
+        releaseString(mAlbumNames[row]);
+        releaseString(mAlbumKeys[row]);
+
+        if (mFreeRowCount == mFreeRows.length) {
+            mFreeRows = Arrays.copyOf(mFreeRows, mFreeRowCount * 2);
+        }
+        mFreeRows[mFreeRowCount++] = row;
+    }
+
+    private TrackModel createTrack(final int row) {
+        return new TrackModel(mNames[row], mStrings[mArtistNames[row]], mStrings[mAlbumNames[row]], mStrings[mAlbumKeys[row]],
+                mDurations[row], mNumbers[row], mURLs[row], mTrackIds[row], mDateAdded[row]);
+    }
+
+    /**
+     * @return The index of the given string in the string pool.
+     */
+    private int internString(final String value) {
+        Integer index = mStringIndices.get(value);
+
+        if (index == null) {
+            if (mFreeStringCount > 0) {
+                index = mFreeStrings[--mFreeStringCount];
+            } else {
+                if (mStringCount == mStrings.length) {
+                    mStrings = Arrays.copyOf(mStrings, mStringCount * 2);
+                    mStringReferences = Arrays.copyOf(mStringReferences, mStringCount * 2);
+                }
+                index = mStringCount++;
+            }
+
+            mStrings[index] = value;
+            mStringIndices.put(value, index);
+        }
+
+        mStringReferences[index]++;
+
+        return index;
+    }
+
+    private void releaseString(final int index) {
+        if (--mStringReferences[index] == 0) {
+            mStringIndices.remove(mStrings[index]);
+            mStrings[index] = null;
+
+            if (mFreeStringCount == mFreeStrings.length) {
+                mFreeStrings = Arrays.copyOf(mFreeStrings, mFreeStringCount * 2);
+            }
+            mFreeStrings[mFreeStringCount++] = index;
+        }
+    }
+}
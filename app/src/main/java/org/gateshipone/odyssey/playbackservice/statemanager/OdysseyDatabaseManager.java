@@ -22,20 +22,28 @@
 
 package org.gateshipone.odyssey.playbackservice.statemanager;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
 import org.gateshipone.odyssey.models.BookmarkModel;
 import org.gateshipone.odyssey.models.TrackModel;
 import org.gateshipone.odyssey.playbackservice.OdysseyServiceState;
 import org.gateshipone.odyssey.playbackservice.PlaybackService;
+import org.gateshipone.odyssey.utils.MusicLibraryHelper;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OdysseyDatabaseManager extends SQLiteOpenHelper {
     public static final String TAG = "OdysseyStateManager";
@@ -48,15 +56,117 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
     /**
      * The version of the database
      */
-    private static final int DATABASE_VERSION = 21;
+    private static final int DATABASE_VERSION = 25;
+
+    /**
+     * Maximum number of paths used in a single tag cache query.
+     */
+    private static final int TAG_CACHE_CHUNK_SIZE = 200;
+
+    /**
+     * Maximum number of files in the tag cache. If more files are cached the oldest entries are removed.
+     */
+    private static final int TAG_CACHE_MAX_ENTRIES = 20000;
+
+    /**
+     * Timestamp used for the tracks of the autosave snapshot. The autosave state itself gets a new timestamp with each save.
+     */
+    private static final long CHECKPOINT_TIMESTAMP = -1;
+
+    /**
+     * Minimum number of journal entries before the queue journal is compacted into a new snapshot.
+     * Above this the journal is compacted as soon as it has more entries than the queue has tracks.
+     */
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
+
+    private static final String INSERT_STATE = "INSERT INTO " + StateTable.TABLE_NAME + " (" + StateTable.COLUMN_BOOKMARK_TIMESTAMP + ", " + StateTable.COLUMN_TRACKNUMBER + ", "
+            + StateTable.COLUMN_TRACKPOSITION + ", " + StateTable.COLUMN_RANDOM_STATE + ", " + StateTable.COLUMN_REPEAT_STATE + ", " + StateTable.COLUMN_AUTOSAVE + ", " + StateTable.COLUMN_TITLE + ", "
+            + StateTable.COLUMN_TRACKS + ") VALUES (?,?,?,?,?,?,?,?)";
+
+    private static final String DELETE_STATE = "DELETE FROM " + StateTable.TABLE_NAME + " WHERE " + StateTable.COLUMN_BOOKMARK_TIMESTAMP + "=?";
+
+    private static final String DELETE_STATE_TRACKS = "DELETE FROM " + StateTracksTable.TABLE_NAME + " WHERE " + StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?";
+
+    private static final String SELECT_LATEST_AUTOSAVE = "SELECT " + StateTable.COLUMN_AUTOSAVE + " FROM " + StateTable.TABLE_NAME + " ORDER BY " + StateTable.COLUMN_BOOKMARK_TIMESTAMP + " DESC LIMIT 1";
+
+    private static final String COUNT_CHECKPOINTS = "SELECT COUNT(*) FROM " + QueueJournalTable.TABLE_NAME + " WHERE " + QueueJournalTable.COLUMN_OPERATION + "=" + QueueJournal.OPERATION_CHECKPOINT;
+
+    private static final String INSERT_CACHED_TRACK = "INSERT OR REPLACE INTO " + TagCacheTable.TABLE_NAME + " (" + TagCacheTable.COLUMN_PATH + ", " + TagCacheTable.COLUMN_FILESIZE + ", "
+            + TagCacheTable.COLUMN_LASTMODIFIED + ", " + TagCacheTable.COLUMN_TRACKTITLE + ", " + TagCacheTable.COLUMN_TRACKARTIST + ", " + TagCacheTable.COLUMN_TRACKALBUM + ", "
+            + TagCacheTable.COLUMN_TRACKALBUMKEY + ", " + TagCacheTable.COLUMN_TRACKNUMBER + ", " + TagCacheTable.COLUMN_TRACKDURATION + ") VALUES (?,?,?,?,?,?,?,?,?)";
+
+    /**
+     * Removes the oldest entries of the tag cache above {@link #TAG_CACHE_MAX_ENTRIES}. Replaced entries get a new rowid, so the rowid follows the insert time.
+     */
+    private static final String DELETE_OLD_CACHED_TRACKS = "DELETE FROM " + TagCacheTable.TABLE_NAME + " WHERE rowid <= (SELECT rowid FROM " + TagCacheTable.TABLE_NAME
+            + " ORDER BY rowid DESC LIMIT 1 OFFSET " + TAG_CACHE_MAX_ENTRIES + ")";
+
+    private static final String INSERT_JOURNAL_ENTRY = "INSERT INTO " + QueueJournalTable.TABLE_NAME + " (" + QueueJournalTable.COLUMN_OPERATION + ", " + QueueJournalTable.COLUMN_POSITION + ", "
+            + QueueJournalTable.COLUMN_COUNT + ", " + QueueJournalTable.COLUMN_TRACKTITLE + ", " + QueueJournalTable.COLUMN_TRACKDURATION + ", " + QueueJournalTable.COLUMN_TRACKNUMBER + ", "
+            + QueueJournalTable.COLUMN_TRACKARTIST + ", " + QueueJournalTable.COLUMN_TRACKALBUM + ", " + QueueJournalTable.COLUMN_TRACKURL + ", " + QueueJournalTable.COLUMN_TRACKALBUMKEY + ", "
+            + QueueJournalTable.COLUMN_TRACKID + ", " + QueueJournalTable.COLUMN_TARGET + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String INSERT_SHARED_TRACK = "INSERT OR IGNORE INTO " + SharedTracksTable.TABLE_NAME + " (" + SharedTracksTable.COLUMN_TRACKURL + ") VALUES (?)";
+
+    private static final String UPDATE_SHARED_TRACK = "UPDATE " + SharedTracksTable.TABLE_NAME + " SET " + SharedTracksTable.COLUMN_TRACKTITLE + "=?, " + SharedTracksTable.COLUMN_TRACKDURATION + "=?, "
+            + SharedTracksTable.COLUMN_TRACKNUMBER + "=?, " + SharedTracksTable.COLUMN_TRACKARTIST + "=?, " + SharedTracksTable.COLUMN_TRACKALBUM + "=?, " + SharedTracksTable.COLUMN_TRACKALBUMKEY + "=? WHERE "
+            + SharedTracksTable.COLUMN_TRACKURL + "=?";
+
+    private static final String SELECT_SHARED_TRACK_ID = "SELECT " + SharedTracksTable.COLUMN_ID + " FROM " + SharedTracksTable.TABLE_NAME + " WHERE " + SharedTracksTable.COLUMN_TRACKURL + "=?";
+
+    private static final String INSERT_STATE_TRACK_ID = "INSERT INTO " + StateTracksTable.TABLE_NAME + " (" + StateTracksTable.COLUMN_TRACKID + ", " + StateTracksTable.COLUMN_SHAREDTRACK + ", "
+            + StateTracksTable.COLUMN_TRACKURL + ", " + StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + ") VALUES (?,?,?,?)";
+
+    /**
+     * Query for the tracks of states. Tracks that are not part of the mediastore are joined with their shared track.
+     * Tracks saved before database version 24 hold their data in the state tracks table itself.
+     */
+    private static final String SELECT_STATE_TRACKS = "SELECT s." + StateTracksTable.COLUMN_TRACKNUMBER + ", s." + StateTracksTable.COLUMN_TRACKTITLE + ", s." + StateTracksTable.COLUMN_TRACKALBUM + ", s."
+            + StateTracksTable.COLUMN_TRACKALBUMKEY + ", s." + StateTracksTable.COLUMN_TRACKDURATION + ", s." + StateTracksTable.COLUMN_TRACKARTIST + ", s." + StateTracksTable.COLUMN_TRACKURL + ", s."
+            + StateTracksTable.COLUMN_TRACKID + ", s." + StateTracksTable.COLUMN_SHAREDTRACK + ", t." + SharedTracksTable.COLUMN_TRACKNUMBER + " AS shared_tracknumber, t."
+            + SharedTracksTable.COLUMN_TRACKTITLE + " AS shared_title, t." + SharedTracksTable.COLUMN_TRACKALBUM + " AS shared_album, t." + SharedTracksTable.COLUMN_TRACKALBUMKEY
+            + " AS shared_albumkey, t." + SharedTracksTable.COLUMN_TRACKDURATION + " AS shared_duration, t." + SharedTracksTable.COLUMN_TRACKARTIST + " AS shared_artist, t."
+            + SharedTracksTable.COLUMN_TRACKURL + " AS shared_url FROM " + StateTracksTable.TABLE_NAME + " s LEFT JOIN " + SharedTracksTable.TABLE_NAME + " t ON s."
+            + StateTracksTable.COLUMN_SHAREDTRACK + "=t." + SharedTracksTable.COLUMN_ID;
+
+    private static final String WHERE_STATE_TRACKS = " WHERE s." + StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=? ORDER BY s." + StateTracksTable.COLUMN_ID;
+
+    private static final String WHERE_STATE_TRACKS_PAGE = " WHERE s." + StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=? AND s." + StateTracksTable.COLUMN_ID + " BETWEEN ? AND ? ORDER BY s."
+            + StateTracksTable.COLUMN_ID;
+
+    /**
+     * Removes all shared tracks that are not referenced by a state anymore.
+     */
+    private static final String DELETE_UNUSED_SHARED_TRACKS = "DELETE FROM " + SharedTracksTable.TABLE_NAME + " WHERE " + SharedTracksTable.COLUMN_ID + " NOT IN (SELECT "
+            + StateTracksTable.COLUMN_SHAREDTRACK + " FROM " + StateTracksTable.TABLE_NAME + " WHERE " + StateTracksTable.COLUMN_SHAREDTRACK + " IS NOT NULL)";
 
     private static OdysseyDatabaseManager mInstance;
 
+    private final Context mContext;
+
+    /**
+     * Compiled statements of the long-lived database connection, mapped by their sql.
+     * Only used while holding the lock of this manager.
+     */
+    private final HashMap<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    /**
+     * Playlists returned by this manager that still read their tracks from the database.
+     */
+    private final List<PagedTrackList> mPagedLists = new ArrayList<>();
+
+    /**
+     * Array of returned columns from the TagCache table
+     */
+    private String[] projectionTagCache = {TagCacheTable.COLUMN_PATH, TagCacheTable.COLUMN_FILESIZE, TagCacheTable.COLUMN_LASTMODIFIED, TagCacheTable.COLUMN_TRACKTITLE,
+            TagCacheTable.COLUMN_TRACKARTIST, TagCacheTable.COLUMN_TRACKALBUM, TagCacheTable.COLUMN_TRACKALBUMKEY, TagCacheTable.COLUMN_TRACKNUMBER, TagCacheTable.COLUMN_TRACKDURATION};
+
     /**
-     * Array of returned columns from the StateTracks table
+     * Array of returned columns from the QueueJournal table
      */
-    private String[] projectionTrackModels = {StateTracksTable.COLUMN_TRACKNUMBER, StateTracksTable.COLUMN_TRACKTITLE, StateTracksTable.COLUMN_TRACKALBUM, StateTracksTable.COLUMN_TRACKALBUMKEY,
-            StateTracksTable.COLUMN_TRACKDURATION, StateTracksTable.COLUMN_TRACKARTIST, StateTracksTable.COLUMN_TRACKURL, StateTracksTable.COLUMN_TRACKID};
+    private String[] projectionJournal = {QueueJournalTable.COLUMN_OPERATION, QueueJournalTable.COLUMN_POSITION, QueueJournalTable.COLUMN_COUNT, QueueJournalTable.COLUMN_TRACKNUMBER,
+            QueueJournalTable.COLUMN_TRACKTITLE, QueueJournalTable.COLUMN_TRACKALBUM, QueueJournalTable.COLUMN_TRACKALBUMKEY, QueueJournalTable.COLUMN_TRACKDURATION,
+            QueueJournalTable.COLUMN_TRACKARTIST, QueueJournalTable.COLUMN_TRACKURL, QueueJournalTable.COLUMN_TRACKID, QueueJournalTable.COLUMN_TARGET};
 
     /**
      * Array of returned columns from the State table
@@ -65,11 +175,16 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
 
     private OdysseyDatabaseManager(final Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        mContext = context;
+
+        // the connection is kept open for the lifetime of the process, readers don't block the writer with WAL
+        setWriteAheadLoggingEnabled(true);
     }
 
     public static synchronized OdysseyDatabaseManager getInstance(Context context) {
         if (null == mInstance) {
-            mInstance = new OdysseyDatabaseManager(context);
+            mInstance = new OdysseyDatabaseManager(context.getApplicationContext());
         }
         return mInstance;
     }
@@ -77,21 +192,41 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
 
     /**
      * Called when the database is created for the first time.
-     * This method creates the StateTracks and the State table
+     * This method creates the StateTracks, the SharedTracks, the State, the TagCache and the QueueJournal table
      */
     @Override
     public void onCreate(final SQLiteDatabase db) {
         StateTracksTable.onCreate(db);
+        SharedTracksTable.onCreate(db);
         StateTable.onCreate(db);
+        TagCacheTable.onCreate(db);
+        QueueJournalTable.onCreate(db);
     }
 
     /**
      * Called when the database needs to be upgraded.
-     * This method is currently not implemented.
+     * This method only adds tables that were introduced in later versions.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // FIXME if database schema change provide update path here
+        if (oldVersion < 22) {
+            // tag cache was added in version 22
+            TagCacheTable.onCreate(db);
+        }
+        if (oldVersion < 23) {
+            // queue journal was added in version 23
+            QueueJournalTable.onCreate(db);
+        }
+        if (oldVersion < 24) {
+            // shared tracks were added in version 24
+            SharedTracksTable.onCreate(db);
+            StateTracksTable.addSharedTrackColumn(db);
+        }
+        if (oldVersion >= 23 && oldVersion < 25) {
+            // moves of track ranges were added to the queue journal in version 25
+            QueueJournalTable.addTargetColumn(db);
+        }
+        // FIXME if database schema of existing tables change provide update path here
     }
 
     /**
@@ -103,139 +238,167 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
      * @param title    The title of this state
      * @param autosave True if it's an auto generated state
      */
-    public void saveState(List<TrackModel> playList, OdysseyServiceState state, String title, boolean autosave) {
+    public synchronized void saveState(List<TrackModel> playList, OdysseyServiceState state, String title, boolean autosave) {
         Log.v(TAG, "save state");
 
         final long stateTimeStamp = System.currentTimeMillis();
 
-        final ContentValues values = new ContentValues();
-
         final SQLiteDatabase odysseyStateDB = getWritableDatabase();
 
+        completePagedLists(odysseyStateDB);
+
         odysseyStateDB.beginTransaction();
 
-        if (autosave) {
-            // delete previous auto saved states if this save is an auto generated save
-            final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP, StateTable.COLUMN_AUTOSAVE}, StateTable.COLUMN_AUTOSAVE + "=?", new String[]{"1"},
-                    "", "", StateTable.COLUMN_BOOKMARK_TIMESTAMP + " DESC");
+        try {
+            if (autosave) {
+                // delete previous auto saved states if this save is an auto generated save
+                final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP, StateTable.COLUMN_AUTOSAVE}, StateTable.COLUMN_AUTOSAVE + "=?", new String[]{"1"},
+                        "", "", StateTable.COLUMN_BOOKMARK_TIMESTAMP + " DESC");
 
-            if (stateCursor.moveToFirst()) {
-                do {
-                    final long timeStamp = stateCursor.getLong(stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP));
+                if (stateCursor.moveToFirst()) {
+                    final int timeStampColumnIndex = stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP);
 
-                    // delete playlist
-                    odysseyStateDB.delete(StateTracksTable.TABLE_NAME, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)});
+                    do {
+                        deleteState(odysseyStateDB, stateCursor.getLong(timeStampColumnIndex));
+                    } while (stateCursor.moveToNext());
+                }
 
-                    // delete state
-                    odysseyStateDB.delete(StateTable.TABLE_NAME, StateTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)});
-                } while (stateCursor.moveToNext());
+                stateCursor.close();
+
+                // the new autosave replaces the snapshot and journal of the previous one
+                clearCheckpoint(odysseyStateDB);
+            } else {
+                // delete the state with the same name from the database if exists
+                final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP, StateTable.COLUMN_TITLE}, StateTable.COLUMN_TITLE + "=?", new String[]{title},
+                        "", "", "");
+
+                if (stateCursor.moveToFirst()) {
+                    deleteState(odysseyStateDB, stateCursor.getLong(stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP)));
+                }
+
+                stateCursor.close();
             }
 
-            stateCursor.close();
-        } else {
-            // delete the state with the same name from the database if exists
-            final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP, StateTable.COLUMN_TITLE}, StateTable.COLUMN_TITLE + "=?", new String[]{title},
+            // save the playlist
+            insertStateTracks(odysseyStateDB, playList, stateTimeStamp);
+
+            // save the current state
+            insertState(odysseyStateDB, stateTimeStamp, state, title, autosave, playList.size());
+
+            odysseyStateDB.setTransactionSuccessful();
+        } finally {
+            odysseyStateDB.endTransaction();
+        }
+    }
+
+    /**
+     * Save the given state as the new autosave state.
+     * <p>
+     * Instead of writing the complete playlist again only the changes recorded in the given {@link QueueJournal}
+     * are appended to the queue journal of the database. A full snapshot of the playlist is written if the journal
+     * requests it or if the journal in the database grew too large.
+     *
+     * @param playList The list of tracks for the current state
+     * @param state    The current state
+     * @param journal  The changes of the playlist since the last autosave
+     */
+    public synchronized void saveAutoState(List<TrackModel> playList, OdysseyServiceState state, QueueJournal journal) {
+        final long stateTimeStamp = System.currentTimeMillis();
+
+        final SQLiteDatabase odysseyStateDB = getWritableDatabase();
+
+        // take the changes atomically, changes recorded during the save are kept for the next one
+        final List<QueueJournal.Entry> entries = journal.drainEntries(playList.size());
+
+        odysseyStateDB.beginTransaction();
+
+        try {
+            // delete previous auto saved states, their tracks are only stored with their timestamp if they were saved before the journal existed
+            final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP}, StateTable.COLUMN_AUTOSAVE + "=?", new String[]{"1"},
                     "", "", "");
 
             if (stateCursor.moveToFirst()) {
-                final long timeStamp = stateCursor.getLong(stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP));
+                final int timeStampColumnIndex = stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP);
 
-                // delete playlist
-                odysseyStateDB.delete(StateTracksTable.TABLE_NAME, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)});
+                do {
+                    final long timeStamp = stateCursor.getLong(timeStampColumnIndex);
 
-                // delete state
-                odysseyStateDB.delete(StateTable.TABLE_NAME, StateTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)});
+                    completePagedLists(odysseyStateDB, timeStamp);
+                    deleteState(odysseyStateDB, timeStamp);
+                } while (stateCursor.moveToNext());
             }
 
             stateCursor.close();
-        }
-
-        // save the playlist
-        for (TrackModel item : playList) {
-
-            values.clear();
-
-            // set TrackModel parameters
-            values.put(StateTracksTable.COLUMN_TRACKTITLE, item.getTrackName());
-            values.put(StateTracksTable.COLUMN_TRACKDURATION, item.getTrackDuration());
-            values.put(StateTracksTable.COLUMN_TRACKNUMBER, item.getTrackNumber());
-            values.put(StateTracksTable.COLUMN_TRACKARTIST, item.getTrackArtistName());
-            values.put(StateTracksTable.COLUMN_TRACKALBUM, item.getTrackAlbumName());
-            values.put(StateTracksTable.COLUMN_TRACKURL, item.getTrackURL());
-            values.put(StateTracksTable.COLUMN_TRACKALBUMKEY, item.getTrackAlbumKey());
-            values.put(StateTracksTable.COLUMN_TRACKID, item.getTrackId());
-            values.put(StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP, stateTimeStamp);
 
-            odysseyStateDB.insert(StateTracksTable.TABLE_NAME, null, values);
-        }
+            final boolean snapshotRequired = entries == null
+                    || !hasCheckpoint(odysseyStateDB)
+                    // compact the journal
+                    || DatabaseUtils.queryNumEntries(odysseyStateDB, QueueJournalTable.TABLE_NAME) + entries.size() > Math.max(JOURNAL_COMPACTION_THRESHOLD, playList.size());
 
-        // save the current state
-        values.clear();
+            if (snapshotRequired) {
+                Log.v(TAG, "save queue snapshot with " + playList.size() + " tracks");
 
-        // set state parameters
-        values.put(StateTable.COLUMN_BOOKMARK_TIMESTAMP, stateTimeStamp);
-        values.put(StateTable.COLUMN_TRACKNUMBER, state.mTrackNumber);
-        values.put(StateTable.COLUMN_TRACKPOSITION, state.mTrackPosition);
-        values.put(StateTable.COLUMN_RANDOM_STATE, state.mRandomState.ordinal());
-        values.put(StateTable.COLUMN_REPEAT_STATE, state.mRepeatState.ordinal());
-        values.put(StateTable.COLUMN_AUTOSAVE, autosave);
-        values.put(StateTable.COLUMN_TITLE, title);
-        values.put(StateTable.COLUMN_TRACKS, playList.size());
+                writeCheckpoint(odysseyStateDB, playList);
+            } else {
+                Log.v(TAG, "append " + entries.size() + " queue journal entries");
 
-        odysseyStateDB.insert(StateTable.TABLE_NAME, null, values);
+                insertJournalEntries(odysseyStateDB, entries);
+            }
 
-        odysseyStateDB.setTransactionSuccessful();
-        odysseyStateDB.endTransaction();
+            // save the current state
+            insertState(odysseyStateDB, stateTimeStamp, state, "auto", true, playList.size());
 
-        // close the connection
-        odysseyStateDB.close();
+            odysseyStateDB.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            // the taken changes are not part of the database, save the complete queue next time
+            journal.requestSnapshot();
+            throw e;
+        } finally {
+            odysseyStateDB.endTransaction();
+        }
     }
 
     /**
-     * Return the playlist for the given timestamp
+     * Checks if the playlist of the most recent state is stored as snapshot and queue journal.
+     * If not the next autosave needs to write a full snapshot.
+     *
+     * @return True if the most recent state is an autosave with a valid snapshot.
      */
-    public List<TrackModel> readPlaylist(long timeStamp) {
-
+    public synchronized boolean hasAutosaveCheckpoint() {
         final SQLiteDatabase odysseyStateDB = getReadableDatabase();
 
-        final List<TrackModel> playList = new ArrayList<>();
-
-        final Cursor cursor = odysseyStateDB.query(StateTracksTable.TABLE_NAME, projectionTrackModels, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)},
-                "", "", StateTracksTable.COLUMN_ID);
-
-        if (cursor.moveToFirst()) {
-            do {
-                final String trackName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKTITLE));
-                final long duration = cursor.getLong(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKDURATION));
-                final int number = cursor.getInt(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKNUMBER));
-                final String artistName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKARTIST));
-                final String albumName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUM));
-                final String url = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKURL));
-                final String albumKey = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUMKEY));
-                final long id = cursor.getLong(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKID));
-
-                TrackModel item = new TrackModel(trackName, artistName, albumName, albumKey, duration, number, url, id);
+        final boolean hasCheckpoint = isAutosaveLatest(odysseyStateDB) && hasCheckpoint(odysseyStateDB);
 
-                playList.add(item);
+        return hasCheckpoint;
+    }
 
-            } while (cursor.moveToNext());
-        }
+    /**
+     * Return the playlist for the given timestamp.
+     * Large playlists read their tracks lazily, see {@link PagedTrackList}.
+     */
+    public synchronized CompactTrackList readPlaylist(long timeStamp) {
 
-        cursor.close();
+        final SQLiteDatabase odysseyStateDB = getReadableDatabase();
 
-        odysseyStateDB.close();
+        final CompactTrackList playList = readPagedStateTracks(odysseyStateDB, timeStamp);
 
         return playList;
     }
 
     /**
-     * Returns the playlist for the most recent timestamp
+     * Returns the playlist for the most recent timestamp.
+     * Large playlists read their tracks lazily, see {@link PagedTrackList}.
      */
-    public List<TrackModel> readPlaylist() {
+    public synchronized CompactTrackList readPlaylist() {
 
         final SQLiteDatabase odysseyStateDB = getReadableDatabase();
 
-        final List<TrackModel> playList = new ArrayList<>();
+        if (isAutosaveLatest(odysseyStateDB) && hasCheckpoint(odysseyStateDB)) {
+            // the playlist of the autosave is stored as snapshot and journal
+            return readCheckpointPlaylist(odysseyStateDB);
+        }
+
+        CompactTrackList playList = new CompactTrackList();
 
         // query the most recent timestamp
         final Cursor stateCursor = odysseyStateDB.query(StateTable.TABLE_NAME, new String[]{StateTable.COLUMN_BOOKMARK_TIMESTAMP}, "", null, "", "", StateTable.COLUMN_BOOKMARK_TIMESTAMP + " DESC", "1");
@@ -244,34 +407,11 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
             final long timeStamp = stateCursor.getLong(stateCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP));
 
             // get the playlist tracks for the queried timestamp
-            final Cursor cursor = odysseyStateDB.query(StateTracksTable.TABLE_NAME, projectionTrackModels, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)},
-                    "", "", StateTracksTable.COLUMN_ID);
-
-            if (cursor.moveToFirst()) {
-                do {
-                    final String trackName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKTITLE));
-                    final long duration = cursor.getLong(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKDURATION));
-                    final int number = cursor.getInt(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKNUMBER));
-                    final String artistName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKARTIST));
-                    final String albumName = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUM));
-                    final String url = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKURL));
-                    final String albumKey = cursor.getString(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUMKEY));
-                    final long id = cursor.getLong(cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKID));
-
-                    TrackModel item = new TrackModel(trackName, artistName, albumName, albumKey, duration, number, url, id);
-
-                    playList.add(item);
-
-                } while (cursor.moveToNext());
-            }
-
-            cursor.close();
+            playList = readPagedStateTracks(odysseyStateDB, timeStamp);
         }
 
         stateCursor.close();
 
-        odysseyStateDB.close();
-
         return playList;
     }
 
@@ -286,18 +426,10 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
 
         final Cursor cursor = odysseyStateDB.query(StateTable.TABLE_NAME, projectionState, StateTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timeStamp)}, "", "", "", "1");
 
-        if (cursor.moveToFirst()) {
-
-            state.mTrackNumber = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKNUMBER));
-            state.mTrackPosition = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKPOSITION));
-            state.mRandomState = PlaybackService.RANDOMSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_RANDOM_STATE))];
-            state.mRepeatState = PlaybackService.REPEATSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_REPEAT_STATE))];
-        }
+        readState(cursor, state);
 
         cursor.close();
 
-        odysseyStateDB.close();
-
         return state;
     }
 
@@ -312,18 +444,10 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
 
         final Cursor cursor = odysseyStateDB.query(StateTable.TABLE_NAME, projectionState, "", null, "", "", StateTable.COLUMN_BOOKMARK_TIMESTAMP + " DESC", "1");
 
-        if (cursor.moveToFirst()) {
-
-            state.mTrackNumber = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKNUMBER));
-            state.mTrackPosition = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKPOSITION));
-            state.mRandomState = PlaybackService.RANDOMSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_RANDOM_STATE))];
-            state.mRepeatState = PlaybackService.REPEATSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_REPEAT_STATE))];
-        }
+        readState(cursor, state);
 
         cursor.close();
 
-        odysseyStateDB.close();
-
         return state;
     }
 
@@ -346,10 +470,14 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
         if (bookmarkCursor != null) {
 
             if (bookmarkCursor.moveToFirst()) {
+                final int timeStampColumnIndex = bookmarkCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP);
+                final int titleColumnIndex = bookmarkCursor.getColumnIndex(StateTable.COLUMN_TITLE);
+                final int tracksColumnIndex = bookmarkCursor.getColumnIndex(StateTable.COLUMN_TRACKS);
+
                 do {
-                    long timeStamp = bookmarkCursor.getLong(bookmarkCursor.getColumnIndex(StateTable.COLUMN_BOOKMARK_TIMESTAMP));
-                    String title = bookmarkCursor.getString(bookmarkCursor.getColumnIndex(StateTable.COLUMN_TITLE));
-                    int numberOfTracks = bookmarkCursor.getInt(bookmarkCursor.getColumnIndex(StateTable.COLUMN_TRACKS));
+                    long timeStamp = bookmarkCursor.getLong(timeStampColumnIndex);
+                    String title = bookmarkCursor.getString(titleColumnIndex);
+                    int numberOfTracks = bookmarkCursor.getInt(tracksColumnIndex);
 
                     bookmarks.add(new BookmarkModel(timeStamp, title, numberOfTracks));
 
@@ -359,29 +487,590 @@ public class OdysseyDatabaseManager extends SQLiteOpenHelper {
             bookmarkCursor.close();
         }
 
-        odysseyStateDB.close();
-
         return bookmarks;
     }
 
     /**
      * Remove the state from the database related to the given timestamp
      */
-    public void removeState(final long timestamp) {
+    public synchronized void removeState(final long timestamp) {
 
         final SQLiteDatabase odysseyStateDB = getWritableDatabase();
 
+        completePagedLists(odysseyStateDB);
+
         odysseyStateDB.beginTransaction();
 
+        try {
+            deleteState(odysseyStateDB, timestamp);
+
+            odysseyStateDB.execSQL(DELETE_UNUSED_SHARED_TRACKS);
+
+            odysseyStateDB.setTransactionSuccessful();
+        } finally {
+            odysseyStateDB.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the cached tags of the given files.
+     * A cache entry is only used if the size and the last modified time of the file didn't change since the tags were read.
+     *
+     * @param files The files to look up
+     * @return A {@link Map} of {@link TrackModel} per file path. Files without a valid cache entry are missing in the map.
+     */
+    public Map<String, TrackModel> getCachedTracks(final List<File> files) {
+        final Map<String, TrackModel> cachedTracks = new HashMap<>();
+
+        if (files.isEmpty()) {
+            return cachedTracks;
+        }
+
+        final HashMap<String, File> filePaths = new HashMap<>();
+        for (File file : files) {
+            filePaths.put(file.getPath(), file);
+        }
+
+        final List<String> paths = new ArrayList<>(filePaths.keySet());
+
+        final SQLiteDatabase odysseyStateDB = getReadableDatabase();
+
+        for (int i = 0; i < paths.size(); i += TAG_CACHE_CHUNK_SIZE) {
+            final List<String> chunk = paths.subList(i, Math.min(i + TAG_CACHE_CHUNK_SIZE, paths.size()));
+
+            final String where = TagCacheTable.COLUMN_PATH + " IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            final Cursor cursor = odysseyStateDB.query(TagCacheTable.TABLE_NAME, projectionTagCache, where, chunk.toArray(new String[0]), "", "", "");
+
+            if (cursor.moveToFirst()) {
+                final int pathColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_PATH);
+                final int fileSizeColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_FILESIZE);
+                final int lastModifiedColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_LASTMODIFIED);
+                final int titleColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKTITLE);
+                final int artistColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKARTIST);
+                final int albumColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKALBUM);
+                final int albumKeyColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKALBUMKEY);
+                final int numberColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKNUMBER);
+                final int durationColumnIndex = cursor.getColumnIndex(TagCacheTable.COLUMN_TRACKDURATION);
+
+                do {
+                    final String path = cursor.getString(pathColumnIndex);
+                    final File file = filePaths.get(path);
+
+                    if (file == null || file.length() != cursor.getLong(fileSizeColumnIndex) || file.lastModified() != cursor.getLong(lastModifiedColumnIndex)) {
+                        // file changed since the tags were read
+                        continue;
+                    }
+
+                    final String title = cursor.getString(titleColumnIndex);
+                    final String artist = cursor.getString(artistColumnIndex);
+                    final String album = cursor.getString(albumColumnIndex);
+                    final String albumKey = cursor.getString(albumKeyColumnIndex);
+                    final int no = cursor.getInt(numberColumnIndex);
+                    final long duration = cursor.getLong(durationColumnIndex);
+
+                    cachedTracks.put(path, new TrackModel(title, artist, album, albumKey, duration, no, path, -1));
+                } while (cursor.moveToNext());
+            }
+
+            cursor.close();
+        }
+
+        return cachedTracks;
+    }
+
+    /**
+     * Saves the tags of the given tracks in the cache together with the current size and last modified time of the belonging file.
+     * Tracks whose file is not accessible are skipped. An existing entry of the same file is replaced and the cache is limited
+     * to {@link #TAG_CACHE_MAX_ENTRIES} files by removing the entries that were cached first.
+     *
+     * @param tracks The tracks to cache per file
+     */
+    public synchronized void saveCachedTracks(final Map<File, TrackModel> tracks) {
+        if (tracks.isEmpty()) {
+            return;
+        }
+
+        final SQLiteDatabase odysseyStateDB = getWritableDatabase();
+
+        final SQLiteStatement statement = getStatement(odysseyStateDB, INSERT_CACHED_TRACK);
+
+        odysseyStateDB.beginTransaction();
+
+        try {
+            for (Map.Entry<File, TrackModel> entry : tracks.entrySet()) {
+                final File file = entry.getKey();
+                final TrackModel track = entry.getValue();
+
+                final long lastModified = file.lastModified();
+
+                if (lastModified == 0) {
+                    // file is not accessible
+                    continue;
+                }
+
+                statement.clearBindings();
+
+                statement.bindString(1, file.getPath());
+                statement.bindLong(2, file.length());
+                statement.bindLong(3, lastModified);
+                bindString(statement, 4, track.getTrackName());
+                bindString(statement, 5, track.getTrackArtistName());
+                bindString(statement, 6, track.getTrackAlbumName());
+                bindString(statement, 7, track.getTrackAlbumKey());
+                statement.bindLong(8, track.getTrackNumber());
+                statement.bindLong(9, track.getTrackDuration());
+
+                statement.executeInsert();
+            }
+
+            // entries of deleted files are never replaced, so keep only the most recently cached files
+            getStatement(odysseyStateDB, DELETE_OLD_CACHED_TRACKS).executeUpdateDelete();
+
+            odysseyStateDB.setTransactionSuccessful();
+        } finally {
+            odysseyStateDB.endTransaction();
+        }
+    }
+
+    /**
+     * Checks if the most recent state is an autosave.
+     */
+    private boolean isAutosaveLatest(final SQLiteDatabase odysseyStateDB) {
+        try {
+            return getStatement(odysseyStateDB, SELECT_LATEST_AUTOSAVE).simpleQueryForLong() == 1;
+        } catch (SQLiteDoneException e) {
+            // no state saved yet
+            return false;
+        }
+    }
+
+    /**
+     * Checks if a valid snapshot of the autosave playlist exists.
+     */
+    private boolean hasCheckpoint(final SQLiteDatabase odysseyStateDB) {
+        return getStatement(odysseyStateDB, COUNT_CHECKPOINTS).simpleQueryForLong() > 0;
+    }
+
+    /**
+     * Removes the snapshot and the journal of the autosave playlist.
+     */
+    private void clearCheckpoint(final SQLiteDatabase odysseyStateDB) {
+        final SQLiteStatement deleteTracksStatement = getStatement(odysseyStateDB, DELETE_STATE_TRACKS);
+        deleteTracksStatement.bindLong(1, CHECKPOINT_TIMESTAMP);
+        deleteTracksStatement.executeUpdateDelete();
+
+        odysseyStateDB.delete(QueueJournalTable.TABLE_NAME, null, null);
+    }
+
+    /**
+     * Replaces the snapshot and the journal of the autosave playlist with a snapshot of the given playlist.
+     * Must be called within a transaction.
+     */
+    private void writeCheckpoint(final SQLiteDatabase odysseyStateDB, final List<TrackModel> playList) {
+        // the given playlist might still read its tracks from the old snapshot
+        completePagedLists(odysseyStateDB, CHECKPOINT_TIMESTAMP);
+
+        clearCheckpoint(odysseyStateDB);
+
+        insertStateTracks(odysseyStateDB, playList, CHECKPOINT_TIMESTAMP);
+
+        // mark the snapshot as valid
+        insertJournalEntries(odysseyStateDB, Collections.singletonList(new QueueJournal.Entry(QueueJournal.OPERATION_CHECKPOINT, 0, 0, null)));
+
+        odysseyStateDB.execSQL(DELETE_UNUSED_SHARED_TRACKS);
+    }
+
+    /**
+     * Reads the snapshot of the autosave playlist and applies all operations of the queue journal.
+     * If the journal doesn't match the snapshot the replayed playlist is saved as new snapshot, so the broken journal is not extended.
+     */
+    private CompactTrackList readCheckpointPlaylist(final SQLiteDatabase odysseyStateDB) {
+        final CompactTrackList playList = readPagedStateTracks(odysseyStateDB, CHECKPOINT_TIMESTAMP);
+
+        final Cursor journalCursor = odysseyStateDB.query(QueueJournalTable.TABLE_NAME, projectionJournal, "", null, "", "", QueueJournalTable.COLUMN_ID);
+
+        boolean replayFailed = false;
+
+        if (journalCursor.moveToFirst()) {
+            final int operationColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_OPERATION);
+            final int positionColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_POSITION);
+            final int countColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_COUNT);
+            final int titleColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKTITLE);
+            final int durationColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKDURATION);
+            final int numberColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKNUMBER);
+            final int artistColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKARTIST);
+            final int albumColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKALBUM);
+            final int urlColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKURL);
+            final int albumKeyColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKALBUMKEY);
+            final int idColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TRACKID);
+            final int targetColumnIndex = journalCursor.getColumnIndex(QueueJournalTable.COLUMN_TARGET);
+
+            try {
+                do {
+                    final int operation = journalCursor.getInt(operationColumnIndex);
+
+                    TrackModel track = null;
+                    if (operation == QueueJournal.OPERATION_INSERT || operation == QueueJournal.OPERATION_UPDATE) {
+                        track = new TrackModel(journalCursor.getString(titleColumnIndex), journalCursor.getString(artistColumnIndex), journalCursor.getString(albumColumnIndex),
+                                journalCursor.getString(albumKeyColumnIndex), journalCursor.getLong(durationColumnIndex), journalCursor.getInt(numberColumnIndex),
+                                journalCursor.getString(urlColumnIndex), journalCursor.getLong(idColumnIndex));
+                    }
+
+                    QueueJournal.apply(playList, new QueueJournal.Entry(operation, journalCursor.getInt(positionColumnIndex), journalCursor.getInt(countColumnIndex),
+                            journalCursor.getInt(targetColumnIndex), track));
+                } while (journalCursor.moveToNext());
+            } catch (IndexOutOfBoundsException e) {
+                Log.e(TAG, "queue journal does not match the snapshot", e);
+                replayFailed = true;
+            }
+
+        }
+
+        journalCursor.close();
+
+        if (replayFailed) {
+            final SQLiteDatabase writableDB = getWritableDatabase();
+
+            writableDB.beginTransaction();
+            try {
+                writeCheckpoint(writableDB, playList);
+
+                writableDB.setTransactionSuccessful();
+            } finally {
+                writableDB.endTransaction();
+            }
+        }
+
+        return playList;
+    }
+
+    /**
+     * Inserts the given tracks with compiled statements.
+     * <p>
+     * Tracks of the mediastore are only stored by their id and url. All other tracks are stored once in the
+     * {@link SharedTracksTable} and referenced by their shared id.
+     */
+    private void insertStateTracks(final SQLiteDatabase odysseyStateDB, final List<TrackModel> playList, final long timeStamp) {
+        final SQLiteStatement statement = getStatement(odysseyStateDB, INSERT_STATE_TRACK_ID);
+        final SQLiteStatement insertSharedStatement = getStatement(odysseyStateDB, INSERT_SHARED_TRACK);
+        final SQLiteStatement updateSharedStatement = getStatement(odysseyStateDB, UPDATE_SHARED_TRACK);
+        final SQLiteStatement selectSharedStatement = getStatement(odysseyStateDB, SELECT_SHARED_TRACK_ID);
+
+        // shared ids of the tracks of this playlist to handle tracks that are part of the playlist multiple times
+        final HashMap<String, Long> sharedIds = new HashMap<>();
+
+        for (TrackModel item : playList) {
+            statement.clearBindings();
+
+            if (item.getTrackId() != -1) {
+                statement.bindLong(1, item.getTrackId());
+                statement.bindNull(2);
+                // fallback if the track is removed from the mediastore
+                bindString(statement, 3, item.getTrackURL());
+            } else {
+                final String url = item.getTrackURL();
+
+                Long sharedId = sharedIds.get(url);
+
+                if (sharedId == null) {
+                    insertSharedStatement.bindString(1, url);
+                    insertSharedStatement.executeInsert();
+
+                    // update the data of the shared track, it might have changed since it was saved the last time
+                    bindString(updateSharedStatement, 1, item.getTrackName());
+                    updateSharedStatement.bindLong(2, item.getTrackDuration());
+                    updateSharedStatement.bindLong(3, item.getTrackNumber());
+                    bindString(updateSharedStatement, 4, item.getTrackArtistName());
+                    bindString(updateSharedStatement, 5, item.getTrackAlbumName());
+                    bindString(updateSharedStatement, 6, item.getTrackAlbumKey());
+                    updateSharedStatement.bindString(7, url);
+                    updateSharedStatement.executeUpdateDelete();
+
+                    selectSharedStatement.bindString(1, url);
+                    sharedId = selectSharedStatement.simpleQueryForLong();
+
+                    sharedIds.put(url, sharedId);
+                }
+
+                statement.bindLong(1, -1);
+                statement.bindLong(2, sharedId);
+                statement.bindNull(3);
+            }
+
+            statement.bindLong(4, timeStamp);
+
+            statement.executeInsert();
+        }
+    }
+
+    /**
+     * Reads the tracks of the state with the given timestamp between the given ids of the state tracks table.
+     * Used by {@link PagedTrackList} to read a single page.
+     */
+    synchronized List<TrackModel> readStatePage(final long timeStamp, final long firstId, final long lastId) {
+        final SQLiteDatabase odysseyStateDB = getReadableDatabase();
+
+        return readStatePage(odysseyStateDB, timeStamp, firstId, lastId);
+    }
+
+    /**
+     * Reads a single page of a {@link PagedTrackList} with an already opened connection.
+     */
+    List<TrackModel> readStatePage(final SQLiteDatabase odysseyStateDB, final long timeStamp, final long firstId, final long lastId) {
+        return readStateTracks(odysseyStateDB, WHERE_STATE_TRACKS_PAGE, new String[]{Long.toString(timeStamp), Long.toString(firstId), Long.toString(lastId)});
+    }
+
+    /**
+     * Returns the tracks of the state with the given timestamp.
+     * <p>
+     * Small playlists are read directly. For larger playlists only the ids of the saved tracks are read
+     * and a {@link PagedTrackList} is returned that reads the tracks when they are needed.
+     */
+    private CompactTrackList readPagedStateTracks(final SQLiteDatabase odysseyStateDB, final long timeStamp) {
+        final Cursor idCursor = odysseyStateDB.query(StateTracksTable.TABLE_NAME, new String[]{StateTracksTable.COLUMN_ID}, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?",
+                new String[]{Long.toString(timeStamp)}, "", "", StateTracksTable.COLUMN_ID);
+
+        final long[] rowIds = new long[idCursor.getCount()];
+
+        if (idCursor.moveToFirst()) {
+            final int idColumnIndex = idCursor.getColumnIndex(StateTracksTable.COLUMN_ID);
+
+            int i = 0;
+            do {
+                rowIds[i++] = idCursor.getLong(idColumnIndex);
+            } while (idCursor.moveToNext());
+        }
+
+        idCursor.close();
+
+        if (rowIds.length <= PagedTrackList.PAGE_SIZE) {
+            return new CompactTrackList(readStateTracks(odysseyStateDB, WHERE_STATE_TRACKS, new String[]{Long.toString(timeStamp)}));
+        }
+
+        final PagedTrackList playList = new PagedTrackList(this, timeStamp, rowIds);
+
+        // forget lists that read all their tracks already
+        for (int i = mPagedLists.size() - 1; i >= 0; i--) {
+            if (mPagedLists.get(i).isComplete()) {
+                mPagedLists.remove(i);
+            }
+        }
+
+        mPagedLists.add(playList);
+
+        return playList;
+    }
+
+    /**
+     * Reads all remaining tracks of the returned {@link PagedTrackList}s of the state with the given timestamp.
+     * Must be called before the saved tracks of the state are deleted from the database.
+     */
+    private void completePagedLists(final SQLiteDatabase odysseyStateDB, final long timeStamp) {
+        for (int i = mPagedLists.size() - 1; i >= 0; i--) {
+            final PagedTrackList playList = mPagedLists.get(i);
+
+            if (playList.getTimeStamp() == timeStamp) {
+                playList.loadAllPages(odysseyStateDB);
+                mPagedLists.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Reads all remaining tracks of the returned {@link PagedTrackList}s.
+     * Must be called before saved tracks are deleted from the database.
+     */
+    private void completePagedLists(final SQLiteDatabase odysseyStateDB) {
+        for (PagedTrackList playList : mPagedLists) {
+            playList.loadAllPages(odysseyStateDB);
+        }
+
+        mPagedLists.clear();
+    }
+
+    /**
+     * Reads the tracks of states that match the given selection.
+     * <p>
+     * Tracks that are only stored by their mediastore id are created with bulk queries to the mediastore.
+     * If a track was removed from the mediastore it is created from its saved url like a file of the file explorer, so the positions of the playlist are kept.
+     */
+    private List<TrackModel> readStateTracks(final SQLiteDatabase odysseyStateDB, final String selection, final String[] selectionArgs) {
+        final List<TrackModel> playList = new ArrayList<>();
+
+        // positions of the tracks that must be created from the mediastore
+        final List<Integer> mediaStorePositions = new ArrayList<>();
+        final List<Long> mediaStoreIds = new ArrayList<>();
+        final List<String> mediaStoreUrls = new ArrayList<>();
+
+        final Cursor cursor = odysseyStateDB.rawQuery(SELECT_STATE_TRACKS + selection, selectionArgs);
+
+        if (cursor.moveToFirst()) {
+            final int titleColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKTITLE);
+            final int durationColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKDURATION);
+            final int numberColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKNUMBER);
+            final int artistColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKARTIST);
+            final int albumColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUM);
+            final int urlColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKURL);
+            final int albumKeyColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKALBUMKEY);
+            final int idColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_TRACKID);
+            final int sharedTrackColumnIndex = cursor.getColumnIndex(StateTracksTable.COLUMN_SHAREDTRACK);
+
+            final int sharedTitleColumnIndex = cursor.getColumnIndex("shared_title");
+            final int sharedDurationColumnIndex = cursor.getColumnIndex("shared_duration");
+            final int sharedNumberColumnIndex = cursor.getColumnIndex("shared_tracknumber");
+            final int sharedArtistColumnIndex = cursor.getColumnIndex("shared_artist");
+            final int sharedAlbumColumnIndex = cursor.getColumnIndex("shared_album");
+            final int sharedUrlColumnIndex = cursor.getColumnIndex("shared_url");
+            final int sharedAlbumKeyColumnIndex = cursor.getColumnIndex("shared_albumkey");
+
+            do {
+                final long id = cursor.getLong(idColumnIndex);
+
+                if (!cursor.isNull(sharedTrackColumnIndex)) {
+                    // track is stored in the shared tracks table
+                    playList.add(new TrackModel(cursor.getString(sharedTitleColumnIndex), cursor.getString(sharedArtistColumnIndex), cursor.getString(sharedAlbumColumnIndex),
+                            cursor.getString(sharedAlbumKeyColumnIndex), cursor.getLong(sharedDurationColumnIndex), cursor.getInt(sharedNumberColumnIndex),
+                            cursor.getString(sharedUrlColumnIndex), -1));
+                } else if (cursor.isNull(titleColumnIndex) && id != -1) {
+                    // track is only stored by its mediastore id and url
+                    mediaStorePositions.add(playList.size());
+                    mediaStoreIds.add(id);
+                    mediaStoreUrls.add(cursor.getString(urlColumnIndex));
+                    playList.add(null);
+                } else {
+                    // track was saved with all data
+                    playList.add(new TrackModel(cursor.getString(titleColumnIndex), cursor.getString(artistColumnIndex), cursor.getString(albumColumnIndex),
+                            cursor.getString(albumKeyColumnIndex), cursor.getLong(durationColumnIndex), cursor.getInt(numberColumnIndex),
+                            cursor.getString(urlColumnIndex), id));
+                }
+            } while (cursor.moveToNext());
+        }
+
+        cursor.close();
+
+        if (!mediaStoreIds.isEmpty()) {
+            final Map<Long, TrackModel> mediaStoreTracks = MusicLibraryHelper.getTracksForIds(mediaStoreIds, mContext);
+
+            for (int i = 0; i < mediaStorePositions.size(); i++) {
+                TrackModel track = mediaStoreTracks.get(mediaStoreIds.get(i));
+
+                if (track == null) {
+                    Log.w(TAG, "track " + mediaStoreIds.get(i) + " is not available in the mediastore anymore");
+
+                    final String url = mediaStoreUrls.get(i);
+                    if (url != null) {
+                        track = new TrackModel(new File(url).getName(), null, null, null, 0, -1, url, -1);
+                    } else {
+                        // saved without url by a previous version
+                        track = new TrackModel();
+                    }
+                }
+
+                playList.set(mediaStorePositions.get(i), track);
+            }
+        }
+
+        return playList;
+    }
+
+    /**
+     * Appends the given operations to the queue journal with a compiled statement.
+     */
+    private void insertJournalEntries(final SQLiteDatabase odysseyStateDB, final List<QueueJournal.Entry> entries) {
+        final SQLiteStatement statement = getStatement(odysseyStateDB, INSERT_JOURNAL_ENTRY);
+
+        for (QueueJournal.Entry entry : entries) {
+            statement.clearBindings();
+
+            statement.bindLong(1, entry.mOperation);
+            statement.bindLong(2, entry.mPosition);
+            statement.bindLong(3, entry.mCount);
+            statement.bindLong(12, entry.mTarget);
+
+            final TrackModel item = entry.mTrack;
+            if (item != null) {
+                bindString(statement, 4, item.getTrackName());
+                statement.bindLong(5, item.getTrackDuration());
+                statement.bindLong(6, item.getTrackNumber());
+                bindString(statement, 7, item.getTrackArtistName());
+                bindString(statement, 8, item.getTrackAlbumName());
+                bindString(statement, 9, item.getTrackURL());
+                bindString(statement, 10, item.getTrackAlbumKey());
+                statement.bindLong(11, item.getTrackId());
+            }
+
+            statement.executeInsert();
+        }
+    }
+
+    /**
+     * Inserts a new row in the state table.
+     */
+    private void insertState(final SQLiteDatabase odysseyStateDB, final long timeStamp, final OdysseyServiceState state, final String title, final boolean autosave, final int tracks) {
+        final SQLiteStatement statement = getStatement(odysseyStateDB, INSERT_STATE);
+
+        statement.bindLong(1, timeStamp);
+        statement.bindLong(2, state.mTrackNumber);
+        statement.bindLong(3, state.mTrackPosition);
+        statement.bindLong(4, state.mRandomState.ordinal());
+        statement.bindLong(5, state.mRepeatState.ordinal());
+        statement.bindLong(6, autosave ? 1 : 0);
+        bindString(statement, 7, title);
+        statement.bindLong(8, tracks);
+
+        statement.executeInsert();
+    }
+
+    /**
+     * Deletes the state with the given timestamp and its playlist.
+     */
+    private void deleteState(final SQLiteDatabase odysseyStateDB, final long timeStamp) {
         // delete playlist
-        odysseyStateDB.delete(StateTracksTable.TABLE_NAME, StateTracksTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timestamp)});
+        final SQLiteStatement deleteTracksStatement = getStatement(odysseyStateDB, DELETE_STATE_TRACKS);
+        deleteTracksStatement.bindLong(1, timeStamp);
+        deleteTracksStatement.executeUpdateDelete();
 
         // delete state
-        odysseyStateDB.delete(StateTable.TABLE_NAME, StateTable.COLUMN_BOOKMARK_TIMESTAMP + "=?", new String[]{Long.toString(timestamp)});
+        final SQLiteStatement deleteStateStatement = getStatement(odysseyStateDB, DELETE_STATE);
+        deleteStateStatement.bindLong(1, timeStamp);
+        deleteStateStatement.executeUpdateDelete();
+    }
 
-        odysseyStateDB.setTransactionSuccessful();
-        odysseyStateDB.endTransaction();
+    /**
+     * Reads the state of the first row of the given cursor, if available.
+     */
+    private static void readState(final Cursor cursor, final OdysseyServiceState state) {
+        if (cursor.moveToFirst()) {
+            state.mTrackNumber = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKNUMBER));
+            state.mTrackPosition = cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_TRACKPOSITION));
+            state.mRandomState = PlaybackService.RANDOMSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_RANDOM_STATE))];
+            state.mRepeatState = PlaybackService.REPEATSTATE.values()[cursor.getInt(cursor.getColumnIndex(StateTable.COLUMN_REPEAT_STATE))];
+        }
+    }
+
+    /**
+     * Returns the compiled statement for the given sql. Statements are compiled once for the long-lived connection.
+     */
+    private SQLiteStatement getStatement(final SQLiteDatabase odysseyStateDB, final String sql) {
+        SQLiteStatement statement = mStatements.get(sql);
+
+        if (statement == null) {
+            statement = odysseyStateDB.compileStatement(sql);
+            mStatements.put(sql, statement);
+        }
+
+        return statement;
+    }
 
-        odysseyStateDB.close();
+    /**
+     * Binds the given value to the statement. {@link SQLiteStatement#bindString} does not accept null values.
+     */
+    private static void bindString(final SQLiteStatement statement, final int index, final String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.playbackservice.statemanager;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+import android.util.SparseArray;
+
+import org.gateshipone.odyssey.models.TrackModel;
+
+import java.util.List;
+
+/**
+ * A playlist that is backed by the tracks of a saved state.
+ * <p>
+ * Initially the list only contains placeholders for the row ids of the saved tracks. The tracks are read in pages
+ * when they are accessed for the first time or by a background thread started with {@link #loadInBackground(int)}.
+ * The list can be modified like any other list, added tracks are simply stored in place of a placeholder.
+ */
+public class PagedTrackList extends CompactTrackList {
+
+    private static final String LOADER_THREAD_NAME = "PagedTrackListLoader";
+
+    /**
+     * Number of tracks that are read at once.
+     */
+    static final int PAGE_SIZE = 100;
+
+    private final OdysseyDatabaseManager mDatabaseManager;
+
+    private final long mTimeStamp;
+
+    /**
+     * The ids of the saved tracks in the state tracks table. The placeholders of the list contain the index of a saved track.
+     */
+    private final long[] mRowIds;
+
+    /**
+     * Already loaded pages of saved tracks. Cleared as soon as all placeholders are resolved.
+     */
+    private final SparseArray<List<TrackModel>> mPages;
+
+    private int mLoadedPages;
+
+    private boolean mLoaderStarted;
+
+    PagedTrackList(final OdysseyDatabaseManager databaseManager, final long timeStamp, final long[] rowIds) {
+        mDatabaseManager = databaseManager;
+        mTimeStamp = timeStamp;
+        mRowIds = rowIds;
+
+        for (int i = 0; i < rowIds.length; i++) {
+            addPlaceholder(createPlaceholder(i));
+        }
+
+        mPages = new SparseArray<>();
+    }
+
+    @Override
+    public TrackModel get(final int index) {
+        while (true) {
+            final int page;
+
+            synchronized (this) {
+                final int handle = getHandle(index);
+
+                if (!isPlaceholder(handle)) {
+                    return super.get(index);
+                }
+
+                final int row = getPlaceholderValue(handle);
+                page = row / PAGE_SIZE;
+
+                final List<TrackModel> tracks = mPages.get(page);
+                if (tracks != null) {
+                    final TrackModel track = tracks.get(row % PAGE_SIZE);
+                    resolvePlaceholder(index, track);
+                    return track;
+                }
+            }
+
+            // read the page without holding the lock of the list, the database manager locks itself
+            setPage(page, mDatabaseManager.readStatePage(mTimeStamp, getFirstRowId(page), getLastRowId(page)));
+        }
+    }
+
+    /**
+     * Reads the track at the given index and the following track synchronously and reads all other tracks
+     * in a background thread. The background thread is only started once.
+     *
+     * @param index The index of the track that is needed first, e.g. the current track of the playback.
+     */
+    public void loadInBackground(final int index) {
+        if (index >= 0 && index < size()) {
+            get(index);
+
+            if (index + 1 < size()) {
+                get(index + 1);
+            }
+        }
+
+        synchronized (this) {
+            if (mLoaderStarted || isComplete()) {
+                return;
+            }
+
+            mLoaderStarted = true;
+        }
+
+        final Thread loaderThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            final int pageCount = getPageCount();
+            for (int page = 0; page < pageCount; page++) {
+                if (!isPageLoaded(page)) {
+                    setPage(page, mDatabaseManager.readStatePage(mTimeStamp, getFirstRowId(page), getLastRowId(page)));
+                }
+            }
+        }, LOADER_THREAD_NAME);
+
+        loaderThread.start();
+    }
+
+    /**
+     * Reads all pages that are not loaded yet with the given database connection.
+     * Must be called by the {@link OdysseyDatabaseManager} before the saved tracks are deleted.
+     */
+    void loadAllPages(final SQLiteDatabase odysseyStateDB) {
+        final int pageCount = getPageCount();
+
+        for (int page = 0; page < pageCount; page++) {
+            if (!isPageLoaded(page)) {
+                setPage(page, mDatabaseManager.readStatePage(odysseyStateDB, mTimeStamp, getFirstRowId(page), getLastRowId(page)));
+            }
+        }
+    }
+
+    /**
+     * @return The timestamp of the state whose tracks are read.
+     */
+    long getTimeStamp() {
+        return mTimeStamp;
+    }
+
+    /**
+     * @return True if all saved tracks are read.
+     */
+    synchronized boolean isComplete() {
+        return mLoadedPages == getPageCount();
+    }
+
+    private int getPageCount() {
+        return (mRowIds.length + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    private synchronized boolean isPageLoaded(final int page) {
+        return isComplete() || mPages.get(page) != null;
+    }
+
+    private long getFirstRowId(final int page) {
+        return mRowIds[page * PAGE_SIZE];
+    }
+
+    private long getLastRowId(final int page) {
+        return mRowIds[Math.min(mRowIds.length, (page + 1) * PAGE_SIZE) - 1];
+    }
+
+    private synchronized void setPage(final int page, final List<TrackModel> tracks) {
+        if (isPageLoaded(page)) {
+            return;
+        }
+
+        // the page must contain a track for every row, even if the saved track was not readable
+        final int pageLength = Math.min(PAGE_SIZE, mRowIds.length - page * PAGE_SIZE);
+        while (tracks.size() < pageLength) {
+            tracks.add(new TrackModel());
+        }
+
+        mPages.put(page, tracks);
+        mLoadedPages++;
+
+        if (isComplete()) {
+            // resolve all remaining placeholders, the pages are not needed anymore afterwards
+            resolvePlaceholders(row -> mPages.get(row / PAGE_SIZE).get(row % PAGE_SIZE));
+
+            mPages.clear();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.gateshipone.odyssey.playbackservice.statemanager;
+
+import org.gateshipone.odyssey.models.TrackModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes of the playback queue since the last autosave.
+ * <p>
+ * The {@link OdysseyDatabaseManager} appends the recorded operations to the queue journal of the database
+ * instead of writing the complete queue again. If the changes can't be expressed as operations
+ * (e.g. the queue was shuffled or replaced) a full snapshot is requested instead.
+ * <p>
+ * Additionally every change increases the version of the queue. Clients can ask for the first position
+ * that changed since a known version to only invalidate the affected part of their copy of the queue.
+ */
+public class QueueJournal {
+
+    /**
+     * Marker operation that is stored with every snapshot of the queue.
+     */
+    static final int OPERATION_CHECKPOINT = 0;
+
+    static final int OPERATION_INSERT = 1;
+
+    static final int OPERATION_REMOVE = 2;
+
+    static final int OPERATION_MOVE = 3;
+
+    static final int OPERATION_UPDATE = 4;
+
+    /**
+     * Maximum number of pending operations. If more changes are recorded a snapshot is cheaper.
+     */
+    private static final int MAX_PENDING_ENTRIES = 5000;
+
+    /**
+     * Number of changes that are remembered for {@link #getFirstChangedPosition(long)}.
+     */
+    private static final int CHANGE_HISTORY_SIZE = 64;
+
+    /**
+     * A single recorded operation.
+     */
+    static class Entry {
+        final int mOperation;
+
+        final int mPosition;
+
+        /**
+         * Number of removed or moved tracks.
+         */
+        final int mCount;
+
+        /**
+         * Position of the first moved track after a move.
+         */
+        final int mTarget;
+
+        /**
+         * The inserted or updated track.
+         */
+        final TrackModel mTrack;
+
+        Entry(final int operation, final int position, final int count, final TrackModel track) {
+            this(operation, position, count, 0, track);
+        }
+
+        Entry(final int operation, final int position, final int count, final int target, final TrackModel track) {
+            mOperation = operation;
+            mPosition = position;
+            mCount = count;
+            mTarget = target;
+            mTrack = track;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<>();
+
+    /**
+     * Flag if the queue must be saved completely with the next autosave.
+     */
+    private boolean mSnapshotRequired = true;
+
+    /**
+     * The size of the queue after all recorded operations.
+     */
+    private int mQueueSize;
+
+    /**
+     * The current version of the queue. Starts with the creation time so versions of a previous service instance are not reused.
+     */
+    private long mVersion = System.currentTimeMillis();
+
+    /**
+     * Ring buffer of the first changed position for the last versions.
+     */
+    private final int[] mChangedPositions = new int[CHANGE_HISTORY_SIZE];
+
+    /**
+     * Number of valid entries in {@link #mChangedPositions}.
+     */
+    private int mChangeCount;
+
+    /**
+     * Clears all recorded operations.
+     *
+     * @param queueSize        The size of the queue that is stored in the database.
+     * @param snapshotRequired True if the database doesn't contain the given queue yet.
+     */
+    public synchronized void reset(final int queueSize, final boolean snapshotRequired) {
+        mEntries.clear();
+        mQueueSize = queueSize;
+        mSnapshotRequired = snapshotRequired;
+    }
+
+    /**
+     * Requests a full snapshot with the next autosave. Recording is paused until then.
+     */
+    public synchronized void requestSnapshot() {
+        // the whole queue could have changed
+        recordChange(0);
+
+        mEntries.clear();
+        mSnapshotRequired = true;
+    }
+
+    public synchronized void insertTracks(final int position, final List<TrackModel> tracks) {
+        if (tracks.isEmpty()) {
+            return;
+        }
+
+        recordChange(position);
+
+        mQueueSize += tracks.size();
+
+        int trackPosition = position;
+        for (TrackModel track : tracks) {
+            addEntry(new Entry(OPERATION_INSERT, trackPosition, 1, track));
+            trackPosition++;
+        }
+    }
+
+    public synchronized void insertTrack(final int position, final TrackModel track) {
+        recordChange(position);
+
+        mQueueSize++;
+
+        addEntry(new Entry(OPERATION_INSERT, position, 1, track));
+    }
+
+    public synchronized void removeTracks(final int position, final int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        recordChange(position);
+
+        mQueueSize -= count;
+
+        addEntry(new Entry(OPERATION_REMOVE, position, count, null));
+    }
+
+    /**
+     * Records the move of a range of tracks as a single operation without the data of the tracks.
+     *
+     * @param position Position of the first moved track
+     * @param count    Number of moved tracks
+     * @param target   Position of the first moved track after the move
+     */
+    public synchronized void moveTracks(final int position, final int count, final int target) {
+        if (count <= 0 || position == target) {
+            return;
+        }
+
+        recordChange(Math.min(position, target));
+
+        addEntry(new Entry(OPERATION_MOVE, position, count, target, null));
+    }
+
+    public synchronized void updateTrack(final int position, final TrackModel track) {
+        recordChange(position);
+
+        addEntry(new Entry(OPERATION_UPDATE, position, 1, track));
+    }
+
+    /**
+     * @return The current version of the queue.
+     */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Returns the first position of the queue that changed since the given version.
+     *
+     * @param sinceVersion A version previously returned by {@link #getVersion()}.
+     * @return The first changed position, -1 if nothing changed or 0 if the version is unknown.
+     */
+    public synchronized int getFirstChangedPosition(final long sinceVersion) {
+        if (sinceVersion == mVersion) {
+            return -1;
+        }
+
+        final long changes = mVersion - sinceVersion;
+        if (changes < 0 || changes > mChangeCount) {
+            // the version is not part of the history
+            return 0;
+        }
+
+        int firstChangedPosition = Integer.MAX_VALUE;
+        for (long version = sinceVersion + 1; version <= mVersion; version++) {
+            firstChangedPosition = Math.min(firstChangedPosition, mChangedPositions[(int) (version % CHANGE_HISTORY_SIZE)]);
+        }
+
+        return firstChangedPosition;
+    }
+
+    /**
+     * Takes all recorded operations for an autosave. Operations that are recorded afterwards are kept for the next autosave.
+     *
+     * @param queueSize The size of the queue that is saved.
+     * @return The recorded operations or null if the complete queue must be saved.
+     */
+    synchronized List<Entry> drainEntries(final int queueSize) {
+        // a different size means the journal missed a change of the queue
+        final List<Entry> entries = mSnapshotRequired || mQueueSize != queueSize ? null : new ArrayList<>(mEntries);
+
+        mEntries.clear();
+        mQueueSize = queueSize;
+        mSnapshotRequired = false;
+
+        return entries;
+    }
+
+    private void addEntry(final Entry entry) {
+        if (mSnapshotRequired) {
+            // the complete queue will be saved anyway
+            return;
+        }
+
+        if (mEntries.size() >= MAX_PENDING_ENTRIES) {
+            mEntries.clear();
+            mSnapshotRequired = true;
+            return;
+        }
+
+        mEntries.add(entry);
+    }
+
+    private void recordChange(final int position) {
+        mVersion++;
+        mChangedPositions[(int) (mVersion % CHANGE_HISTORY_SIZE)] = position;
+        mChangeCount = Math.min(mChangeCount + 1, CHANGE_HISTORY_SIZE);
+    }
+
+    /**
+     * Applies the given operation to the queue.
+     */
+    static void apply(final List<TrackModel> queue, final Entry entry) {
+        switch (entry.mOperation) {
+            case OPERATION_INSERT:
+                queue.add(entry.mPosition, entry.mTrack);
+                break;
+            case OPERATION_REMOVE:
+                queue.subList(entry.mPosition, entry.mPosition + entry.mCount).clear();
+                break;
+            case OPERATION_MOVE:
+                final List<TrackModel> range = queue.subList(entry.mPosition, entry.mPosition + entry.mCount);
+                final List<TrackModel> movedTracks = new ArrayList<>(range);
+                range.clear();
+                queue.addAll(entry.mTarget, movedTracks);
+                break;
+            case OPERATION_UPDATE:
+                queue.set(entry.mPosition, entry.mTrack);
+                break;
+            default:
+                break;
+        }
+    }
+}
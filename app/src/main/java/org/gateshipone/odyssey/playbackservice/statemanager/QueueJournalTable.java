@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.gateshipone.odyssey.playbackservice.statemanager;
+
+import android.database.sqlite.SQLiteDatabase;
+
+public class QueueJournalTable {
+
+    /**
+     * The name of the table.
+     */
+    public static final String TABLE_NAME = "odyssey_queue_journal";
+
+    /**
+     * Name of the column that holds a unique and ascending id for each operation
+     */
+    public static final String COLUMN_ID = "_id";
+
+    /**
+     * Name of the column that holds the type of the operation
+     */
+    public static final String COLUMN_OPERATION = "operation";
+
+    /**
+     * Name of the column that holds the queue position the operation applies to
+     */
+    public static final String COLUMN_POSITION = "position";
+
+    /**
+     * Name of the column that holds the number of removed or moved tracks
+     */
+    public static final String COLUMN_COUNT = "count";
+
+    /**
+     * Name of the column that holds the position of the first moved track after a move
+     */
+    public static final String COLUMN_TARGET = "target";
+
+    /**
+     * Name of the column that holds the number of the track in the related album
+     */
+    public static final String COLUMN_TRACKNUMBER = "tracknumber";
+
+    /**
+     * Name of the column that holds the title of the track
+     */
+    public static final String COLUMN_TRACKTITLE = "title";
+
+    /**
+     * Name of the column that holds the album name of the track
+     */
+    public static final String COLUMN_TRACKALBUM = "album";
+
+    /**
+     * Name of the column that holds the album key of the track
+     */
+    public static final String COLUMN_TRACKALBUMKEY = "albumkey";
+
+    /**
+     * Name of the column that holds the duration of the track
+     */
+    public static final String COLUMN_TRACKDURATION = "duration";
+
+    /**
+     * Name of the column that holds the artist name of the track
+     */
+    public static final String COLUMN_TRACKARTIST = "artist";
+
+    /**
+     * Name of the column that holds the url of the track
+     */
+    public static final String COLUMN_TRACKURL = "url";
+
+    /**
+     * Name of the column that holds the id of the track
+     */
+    public static final String COLUMN_TRACKID = "trackid";
+
+    /**
+     * Database creation SQL statement
+     */
+    private static final String DATABASE_CREATE = "create table if not exists " + TABLE_NAME + "(" + COLUMN_ID + " integer primary key autoincrement,"
+            + COLUMN_OPERATION + " integer," + COLUMN_POSITION + " integer," + COLUMN_COUNT + " integer," + COLUMN_TRACKNUMBER + " integer,"
+            + COLUMN_TRACKTITLE + " text," + COLUMN_TRACKALBUM + " text," + COLUMN_TRACKALBUMKEY + " text," + COLUMN_TRACKDURATION + " integer,"
+            + COLUMN_TRACKARTIST + " text," + COLUMN_TRACKURL + " text," + COLUMN_TRACKID + " integer," + COLUMN_TARGET + " integer" + ");";
+
+    private static final String ADD_TARGET_COLUMN = "alter table " + TABLE_NAME + " add column " + COLUMN_TARGET + " integer";
+
+    public static void onCreate(SQLiteDatabase database) {
+        // create new table
+        database.execSQL(DATABASE_CREATE);
+    }
+
+    public static void addTargetColumn(SQLiteDatabase database) {
+        database.execSQL(ADD_TARGET_COLUMN);
+    }
+}
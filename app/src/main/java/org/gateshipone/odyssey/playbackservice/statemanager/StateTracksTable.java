@@ -76,6 +76,11 @@ public class StateTracksTable {
      */
     public static final String COLUMN_TRACKID = "trackid";
 
+    /**
+     * Name of the column that holds the id of the track in the {@link SharedTracksTable} for tracks that are not part of the mediastore
+     */
+    public static final String COLUMN_SHAREDTRACK = "sharedtrack";
+
     /**
      * Name of the column that holds the timestamp related to the track
      */
@@ -87,10 +92,19 @@ public class StateTracksTable {
     private static final String DATABASE_CREATE = "create table if not exists " + TABLE_NAME + "(" + COLUMN_ID
             + " integer primary key autoincrement," + COLUMN_TRACKNUMBER + " integer," + COLUMN_TRACKTITLE + " text," + COLUMN_TRACKALBUM + " text,"
             + COLUMN_TRACKALBUMKEY + " text," + COLUMN_TRACKDURATION + " integer," + COLUMN_TRACKARTIST + " text," + COLUMN_TRACKURL + " text,"
-            + COLUMN_TRACKID + " integer," + COLUMN_BOOKMARK_TIMESTAMP + " integer " + ");";
+            + COLUMN_TRACKID + " integer," + COLUMN_BOOKMARK_TIMESTAMP + " integer, " + COLUMN_SHAREDTRACK + " integer" + ");";
+
+    /**
+     * Statement to add the shared track column to tables created before database version 24
+     */
+    private static final String ADD_SHAREDTRACK_COLUMN = "alter table " + TABLE_NAME + " add column " + COLUMN_SHAREDTRACK + " integer";
 
     public static void onCreate(SQLiteDatabase database) {
         // create new table
         database.execSQL(DATABASE_CREATE);
     }
+
+    public static void addSharedTrackColumn(SQLiteDatabase database) {
+        database.execSQL(ADD_SHAREDTRACK_COLUMN);
+    }
 }
@@ -26,10 +26,15 @@ package org.gateshipone.odyssey.utils;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
+import org.gateshipone.odyssey.artwork.BitmapPool;
+
 public class BitmapUtils {
 
     /**
-     * Resize retrieved bitmap if necessary
+     * Resize retrieved bitmap if necessary.
+     * <p>
+     * The bitmap is decoded into an unused bitmap of the {@link BitmapPool} if possible and registered
+     * for reference counting. Images without alpha channel (jpeg) are decoded with {@link Bitmap.Config#RGB_565}.
      */
     public static Bitmap decodeSampledBitmapFromFile(String pathName, int reqWidth, int reqHeight) {
 
@@ -46,9 +51,46 @@ public class BitmapUtils {
             options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
         }
 
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            // not a decodable image
+            return null;
+        }
+
         // Decode bitmap with inSampleSize set
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(pathName, options);
+        options.inMutable = true;
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        final BitmapPool pool = BitmapPool.getInstance();
+        options.inBitmap = pool.get(getDecodedByteCount(options));
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(pathName, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap could not be reused for this image
+            bitmap = null;
+        }
+
+        if (bitmap == null && options.inBitmap != null) {
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(pathName, options);
+        }
+
+        pool.register(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Calculates the number of bytes of the bitmap that will be decoded with the given options.
+     */
+    private static int getDecodedByteCount(BitmapFactory.Options options) {
+        final int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        final int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        final int bytesPerPixel = options.inPreferredConfig == Bitmap.Config.RGB_565 ? 2 : 4;
+
+        return width * height * bytesPerPixel;
     }
 
     /**
@@ -20,6 +20,7 @@
  *
  */
 
+
 package org.gateshipone.odyssey.utils;
 
 import android.content.Context;
@@ -32,14 +33,22 @@ import org.gateshipone.odyssey.models.AlbumModel;
 import org.gateshipone.odyssey.models.ArtistModel;
 import org.gateshipone.odyssey.models.TrackModel;
 
+/**
+ * Loads single images (current track, album or artist header) through the {@link ImageLoadScheduler}.
+ * A new request of the same kind cancels the previous one if it is not started yet.
+ */
 public class CoverBitmapLoader {
 
     private final CoverBitmapReceiver mListener;
 
     private final Context mContext;
 
+    private ImageLoadScheduler.LoadToken mAlbumToken;
+
+    private ImageLoadScheduler.LoadToken mArtistToken;
+
     public CoverBitmapLoader(Context context, CoverBitmapReceiver listener) {
-        mContext = context;
+        mContext = context.getApplicationContext();
         mListener = listener;
     }
 
@@ -48,9 +57,8 @@ public class CoverBitmapLoader {
      */
     public void getImage(final TrackModel track, final int width, final int height) {
         if (track != null && !track.getTrackAlbumKey().isEmpty()) {
-            // start the loader thread to load the image async
-            final Thread loaderThread = new Thread(new TrackAlbumImageRunner(track, width, height));
-            loaderThread.start();
+            loadAlbumImage("cover:track:" + track.getTrackAlbumKey() + ':' + width + 'x' + height,
+                    ImageLoadScheduler.PRIORITY_CURRENT_TRACK, new TrackAlbumImageLoader(track, width, height));
         }
     }
 
@@ -59,9 +67,8 @@ public class CoverBitmapLoader {
             return;
         }
 
-        // start the loader thread to load the image async
-        final Thread loaderThread = new Thread(new ArtistImageRunner(artist, width, height));
-        loaderThread.start();
+        loadArtistImage("cover:artist:" + artist.getArtistID() + ':' + artist.getArtistName() + ':' + width + 'x' + height,
+                ImageLoadScheduler.PRIORITY_VISIBLE, new ArtistImageLoader(artist, width, height));
     }
 
     public void getAlbumImage(final AlbumModel album, final int width, final int height) {
@@ -69,9 +76,8 @@ public class CoverBitmapLoader {
             return;
         }
 
-        // start the loader thread to load the image async
-        final Thread loaderThread = new Thread(new AlbumImageRunner(album, width, height));
-        loaderThread.start();
+        loadAlbumImage("cover:album:" + album.getAlbumID() + ':' + album.getAlbumKey() + ':' + width + 'x' + height,
+                ImageLoadScheduler.PRIORITY_VISIBLE, new AlbumImageLoader(album, width, height));
     }
 
     public void getArtistImage(final TrackModel track, final int width, final int height) {
@@ -79,12 +85,25 @@ public class CoverBitmapLoader {
             return;
         }
 
-        // start the loader thread to load the image async
-        final Thread loaderThread = new Thread(new TrackArtistImageRunner(track, width, height));
-        loaderThread.start();
+        loadArtistImage("cover:trackartist:" + track.getTrackArtistName() + ':' + width + 'x' + height,
+                ImageLoadScheduler.PRIORITY_CURRENT_TRACK, new TrackArtistImageLoader(track, width, height));
+    }
+
+    private synchronized void loadAlbumImage(final String key, final int priority, final ImageLoadScheduler.ImageLoader loader) {
+        if (mAlbumToken != null) {
+            mAlbumToken.cancel();
+        }
+        mAlbumToken = ImageLoadScheduler.getInstance().load(key, priority, loader, mListener::receiveAlbumBitmap);
+    }
+
+    private synchronized void loadArtistImage(final String key, final int priority, final ImageLoadScheduler.ImageLoader loader) {
+        if (mArtistToken != null) {
+            mArtistToken.cancel();
+        }
+        mArtistToken = ImageLoadScheduler.getInstance().load(key, priority, loader, mListener::receiveArtistBitmap);
     }
 
-    private class TrackAlbumImageRunner implements Runnable {
+    private class TrackAlbumImageLoader implements ImageLoadScheduler.ImageLoader {
 
         private final int mWidth;
 
@@ -92,7 +111,7 @@ public class CoverBitmapLoader {
 
         private final TrackModel mTrack;
 
-        private TrackAlbumImageRunner(final TrackModel track, final int width, final int height) {
+        private TrackAlbumImageLoader(final TrackModel track, final int width, final int height) {
             mTrack = track;
             mWidth = width;
             mHeight = height;
@@ -102,72 +121,50 @@ public class CoverBitmapLoader {
          * Load the image for the given track from the mediastore.
          */
         @Override
-        public void run() {
+        public Bitmap loadImage(final ImageLoadScheduler.LoadJob job) {
+            if (job.isCancelled()) {
+                return null;
+            }
+
             // At first get image independent of resolution (can be replaced later with higher resolution)
-            final AlbumModel album = MusicLibraryHelper.createAlbumModelFromKey(mTrack.getTrackAlbumKey(), mContext);
+            final AlbumModel album = ArtworkManager.getInstance(mContext).getAlbumForTrack(mTrack, mContext);
             if (album == null) {
                 // No album found for track, abort
-                return;
-            }
-
-            Bitmap image = BitmapCache.getInstance().requestAlbumBitmap(album);
-            if (image != null) {
-                mListener.receiveAlbumBitmap(image);
+                return null;
             }
 
-            try {
-                // If image was to small get it in the right resolution
-                if (image == null || !(mWidth <= image.getWidth() && mHeight <= image.getHeight())) {
-                    image = ArtworkManager.getInstance(mContext.getApplicationContext()).getImage(album, mWidth, mHeight, true, mContext);
-                    mListener.receiveAlbumBitmap(image);
-                    // Replace image with higher resolution one
-                    BitmapCache.getInstance().putAlbumBitmap(album, image);
-                }
-            } catch (ImageNotFoundException e) {
-                // Try to fetch the image here
-                ArtworkManager.getInstance(mContext.getApplicationContext()).fetchImage(mTrack, mContext);
-            }
+            return loadAlbumImage(job, album, mWidth, mHeight);
         }
     }
 
-    private class ArtistImageRunner implements Runnable {
+    private class AlbumImageLoader implements ImageLoadScheduler.ImageLoader {
 
         private final int mWidth;
 
         private final int mHeight;
 
-        private final ArtistModel mArtist;
+        private final AlbumModel mAlbum;
 
-        private ArtistImageRunner(final ArtistModel artist, final int width, final int height) {
-            mArtist = artist;
+        private AlbumImageLoader(AlbumModel album, int width, int height) {
+            mAlbum = album;
             mWidth = width;
             mHeight = height;
         }
 
         /**
-         * Load the image for the given artist from the mediastore.
+         * Load the image for the given album from the mediastore.
          */
         @Override
-        public void run() {
-            // At first get image independent of resolution (can be replaced later with higher resolution)
-            Bitmap image = BitmapCache.getInstance().requestArtistImage(mArtist);
-            mListener.receiveArtistBitmap(image);
-
-            // If image was to small get it in the right resolution
-            if (image == null || !(mWidth <= image.getWidth() && mHeight <= image.getHeight())) {
-                try {
-                    image = ArtworkManager.getInstance(mContext.getApplicationContext()).getImage(mArtist, mWidth, mHeight, true, mContext);
-                    mListener.receiveArtistBitmap(image);
-                    // Replace image with higher resolution one
-                    BitmapCache.getInstance().putArtistImage(mArtist, image);
-                } catch (ImageNotFoundException e) {
-                    ArtworkManager.getInstance(mContext.getApplicationContext()).fetchImage(mArtist, mContext);
-                }
+        public Bitmap loadImage(final ImageLoadScheduler.LoadJob job) {
+            if (job.isCancelled()) {
+                return null;
             }
+
+            return loadAlbumImage(job, mAlbum, mWidth, mHeight);
         }
     }
 
-    private class TrackArtistImageRunner implements Runnable {
+    private class ArtistImageLoader implements ImageLoadScheduler.ImageLoader {
 
         private final int mWidth;
 
@@ -175,9 +172,8 @@ public class CoverBitmapLoader {
 
         private final ArtistModel mArtist;
 
-        private TrackArtistImageRunner(final TrackModel trackModel, final int width, final int height) {
-            long artistID = MusicLibraryHelper.getArtistIDFromName(trackModel.getTrackArtistName(), mContext);
-            mArtist = new ArtistModel(trackModel.getTrackArtistName(), artistID);
+        private ArtistImageLoader(final ArtistModel artist, final int width, final int height) {
+            mArtist = artist;
             mWidth = width;
             mHeight = height;
         }
@@ -186,63 +182,87 @@ public class CoverBitmapLoader {
          * Load the image for the given artist from the mediastore.
          */
         @Override
-        public void run() {
-            // At first get image independent of resolution (can be replaced later with higher resolution)
-            Bitmap image = BitmapCache.getInstance().requestArtistImage(mArtist);
-            mListener.receiveArtistBitmap(image);
-
-            // If image was to small get it in the right resolution
-            if (image == null || !(mWidth <= image.getWidth() && mHeight <= image.getHeight())) {
-                try {
-                    image = ArtworkManager.getInstance(mContext.getApplicationContext()).getImage(mArtist, mWidth, mHeight, true, mContext);
-                    mListener.receiveArtistBitmap(image);
-                    // Replace image with higher resolution one
-                    BitmapCache.getInstance().putArtistImage(mArtist, image);
-                } catch (ImageNotFoundException e) {
-                    ArtworkManager.getInstance(mContext.getApplicationContext()).fetchImage(mArtist, mContext);
-                }
+        public Bitmap loadImage(final ImageLoadScheduler.LoadJob job) {
+            if (job.isCancelled()) {
+                return null;
             }
+
+            return loadArtistImage(job, mArtist, mWidth, mHeight);
         }
     }
 
-    private class AlbumImageRunner implements Runnable {
+    private class TrackArtistImageLoader implements ImageLoadScheduler.ImageLoader {
 
         private final int mWidth;
 
         private final int mHeight;
 
-        private final AlbumModel mAlbum;
+        private final TrackModel mTrack;
 
-        private AlbumImageRunner(AlbumModel album, int width, int height) {
-            mAlbum = album;
+        private TrackArtistImageLoader(final TrackModel track, final int width, final int height) {
+            mTrack = track;
             mWidth = width;
             mHeight = height;
         }
 
         /**
-         * Load the image for the given album from the mediastore.
+         * Load the image for the given artist from the mediastore.
          */
         @Override
-        public void run() {
-            // At first get image independent of resolution (can be replaced later with higher resolution)
-            Bitmap image = BitmapCache.getInstance().requestAlbumBitmap(mAlbum);
-            if (image != null) {
-                mListener.receiveAlbumBitmap(image);
+        public Bitmap loadImage(final ImageLoadScheduler.LoadJob job) {
+            if (job.isCancelled()) {
+                return null;
             }
 
-            try {
-                // If image was to small get it in the right resolution
-                if (image == null || !(mWidth <= image.getWidth() && mHeight <= image.getHeight())) {
-                    image = ArtworkManager.getInstance(mContext.getApplicationContext()).getImage(mAlbum, mWidth, mHeight, true, mContext);
-                    mListener.receiveAlbumBitmap(image);
-                    // Replace image with higher resolution one
-                    BitmapCache.getInstance().putAlbumBitmap(mAlbum, image);
-                }
-            } catch (ImageNotFoundException e) {
-                // Try to fetch the image here
-                ArtworkManager.getInstance(mContext.getApplicationContext()).fetchImage(mAlbum, mContext);
+            long artistID = MusicLibraryHelper.getArtistIDFromName(mTrack.getTrackArtistName(), mContext);
+            final ArtistModel artist = new ArtistModel(mTrack.getTrackArtistName(), artistID);
+
+            return loadArtistImage(job, artist, mWidth, mHeight);
+        }
+    }
+
+    /**
+     * Delivers a cached image of any resolution first and loads the image in the requested resolution if the cached one is too small.
+     */
+    private Bitmap loadAlbumImage(final ImageLoadScheduler.LoadJob job, final AlbumModel album, final int width, final int height) {
+        Bitmap image = BitmapCache.getInstance().requestAlbumBitmap(album);
+        if (image != null) {
+            // If image is large enough no further loading is necessary
+            if (width <= image.getWidth() && height <= image.getHeight()) {
+                return image;
             }
+            job.deliverPreview(image);
+        }
+
+        try {
+            // If image was to small get it in the right resolution
+            return ArtworkManager.getInstance(mContext).getImage(album, width, height, true, mContext);
+        } catch (ImageNotFoundException e) {
+            // Try to fetch the image here
+            ArtworkManager.getInstance(mContext).fetchImage(album, mContext);
+        }
+        // Keep the preview image if no image in the requested resolution exists
+        return BitmapCache.getInstance().requestAlbumBitmap(album);
+    }
+
+    /**
+     * Delivers a cached image of any resolution first and loads the image in the requested resolution if the cached one is too small.
+     */
+    private Bitmap loadArtistImage(final ImageLoadScheduler.LoadJob job, final ArtistModel artist, final int width, final int height) {
+        Bitmap image = BitmapCache.getInstance().requestArtistImage(artist);
+        if (image != null && width <= image.getWidth() && height <= image.getHeight()) {
+            return image;
+        }
+        job.deliverPreview(image);
+
+        try {
+            // If image was to small get it in the right resolution
+            return ArtworkManager.getInstance(mContext).getImage(artist, width, height, true, mContext);
+        } catch (ImageNotFoundException e) {
+            ArtworkManager.getInstance(mContext).fetchImage(artist, mContext);
         }
+        // Keep the preview image if no image in the requested resolution exists
+        return BitmapCache.getInstance().requestArtistImage(artist);
     }
 
     /**
@@ -253,4 +273,4 @@ public class CoverBitmapLoader {
 
         void receiveArtistBitmap(Bitmap bm);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.utils;
+
+import android.content.Context;
+
+import org.gateshipone.odyssey.adapter.ScrollSpeedAdapter;
+import org.gateshipone.odyssey.artwork.ArtworkManager;
+import org.gateshipone.odyssey.artwork.BitmapPool;
+import org.gateshipone.odyssey.models.GenericModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads the images of items ahead of the visible area of a scrolling view with a low priority,
+ * so the images are already in the {@link org.gateshipone.odyssey.artwork.BitmapCache} when the items are shown.
+ * <p>
+ * The requests use the same keys as the requests of the view items. A view item that requests an image that is
+ * currently prefetched joins the running load with its higher priority.
+ */
+public class CoverPrefetcher {
+
+    /**
+     * Maximum number of prefetch requests that are pending at the same time.
+     */
+    private static final int MAX_PENDING_REQUESTS = 48;
+
+    /**
+     * Time in ms that the prefetched items should cover.
+     */
+    private static final long PREFETCH_HORIZON = 1000;
+
+    /**
+     * Maximum number of prefetched items as a multiple of the visible items.
+     */
+    private static final int MAX_PREFETCH_SCREENS = 3;
+
+    private final Context mContext;
+
+    private final ArtworkManager mArtworkManager;
+
+    private int mImageWidth;
+
+    private int mImageHeight;
+
+    /**
+     * Pending requests by their key in the order they were requested.
+     */
+    private final LinkedHashMap<String, ImageLoadScheduler.LoadToken> mPendingRequests = new LinkedHashMap<>();
+
+    private boolean mForward = true;
+
+    public CoverPrefetcher(final Context context, final ArtworkManager artworkManager) {
+        mContext = context.getApplicationContext();
+        mArtworkManager = artworkManager;
+    }
+
+    /**
+     * Sets the dimension of the images, must match the dimension used by the view items.
+     */
+    public synchronized void setImageDimension(final int width, final int height) {
+        if (width != mImageWidth || height != mImageHeight) {
+            cancel();
+            mImageWidth = width;
+            mImageHeight = height;
+        }
+    }
+
+    /**
+     * Prefetches the image for the given item.
+     *
+     * @param model   The item to load the image for.
+     * @param forward The scroll direction. A change of the direction cancels all pending requests.
+     */
+    public synchronized void prefetch(final GenericModel model, final boolean forward) {
+        if (forward != mForward) {
+            // the items ahead in the old direction will not be shown soon
+            cancel();
+            mForward = forward;
+        }
+
+        if (model == null || mImageWidth <= 0 || mImageHeight <= 0) {
+            return;
+        }
+
+        final String key = ModelImageLoader.getKey(model, mImageWidth, mImageHeight);
+        if (mPendingRequests.containsKey(key)) {
+            return;
+        }
+
+        if (mPendingRequests.size() >= MAX_PENDING_REQUESTS) {
+            // drop the oldest request, it is most likely already passed
+            final Iterator<Map.Entry<String, ImageLoadScheduler.LoadToken>> iterator = mPendingRequests.entrySet().iterator();
+            iterator.next().getValue().cancel();
+            iterator.remove();
+        }
+
+        final ImageLoadScheduler.LoadToken token = ImageLoadScheduler.getInstance().load(key, ImageLoadScheduler.PRIORITY_PREFETCH,
+                new ModelImageLoader(mContext, mArtworkManager, model, mImageWidth, mImageHeight, null),
+                bitmap -> {
+                    // the image is in the cache now
+                    BitmapPool.getInstance().release(bitmap);
+                    requestFinished(key);
+                });
+        mPendingRequests.put(key, token);
+    }
+
+    /**
+     * Cancels all pending prefetch requests.
+     */
+    public synchronized void cancel() {
+        for (ImageLoadScheduler.LoadToken token : mPendingRequests.values()) {
+            token.cancel();
+        }
+        mPendingRequests.clear();
+    }
+
+    /**
+     * Calculates the items ahead of the visible area in scroll direction and requests the prefetch of their images.
+     * <p>
+     * Items that are passed before a single image could be loaded are skipped. The number of prefetched items is limited
+     * by the number of images that can be loaded within {@link #PREFETCH_HORIZON}.
+     *
+     * @param adapter      The adapter of the scrolling view.
+     * @param firstVisible The first visible position.
+     * @param lastVisible  The last visible position.
+     * @param itemCount    The number of items of the adapter.
+     * @param scrollSpeed  The scroll speed in items per second.
+     * @param forward      True if the view is scrolled towards higher positions.
+     */
+    public static void prefetchAhead(final ScrollSpeedAdapter adapter, final int firstVisible, final int lastVisible,
+                                     final int itemCount, final int scrollSpeed, final boolean forward) {
+        final int visibleCount = lastVisible - firstVisible + 1;
+        if (visibleCount <= 0 || itemCount <= 0) {
+            return;
+        }
+
+        final long loadTime = adapter.getAverageImageLoadTime();
+
+        // items passed while one image is loaded, prefetching them is useless
+        final int skip = (int) (scrollSpeed * loadTime / 1000);
+        final int count = (int) Math.max(visibleCount, Math.min(visibleCount * MAX_PREFETCH_SCREENS, PREFETCH_HORIZON / loadTime));
+
+        if (forward) {
+            final int start = lastVisible + 1 + skip;
+            final int end = Math.min(itemCount - 1, start + count - 1);
+            if (start <= end) {
+                adapter.prefetchImages(start, end, true);
+            }
+        } else {
+            final int end = firstVisible - 1 - skip;
+            final int start = Math.max(0, end - count + 1);
+            if (start <= end) {
+                adapter.prefetchImages(start, end, false);
+            }
+        }
+    }
+
+    private synchronized void requestFinished(final String key) {
+        mPendingRequests.remove(key);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.utils;
+
+import android.content.Context;
+
+import org.gateshipone.odyssey.models.FileModel;
+import org.gateshipone.odyssey.models.TrackModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Creates {@link TrackModel}s for a folder and all its subfolders.
+ * <p>
+ * All subfolders are listed in parallel by a {@link ForkJoinPool}. A separate thread collects the results
+ * in the same order as a sequential depth-first walk and delivers them to the listener in batches,
+ * so the first tracks are available long before the whole tree is read.
+ */
+public class DirectoryCrawler {
+
+    private static final String THREAD_NAME = "DirectoryCrawler";
+
+    /**
+     * Maximum number of tracks that are delivered at once.
+     */
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * Number of folders that are read in parallel.
+     */
+    private static final int PARALLELISM = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static ForkJoinPool mPool;
+
+    public interface DirectoryCrawlerListener {
+        /**
+         * Called for each batch of tracks in the order of the folder tree. Called on the thread of the crawler.
+         */
+        void onTracksFound(DirectoryCrawler crawler, List<TrackModel> tracks);
+
+        /**
+         * Called after the last batch or after the crawler was cancelled. Called on the thread of the crawler.
+         */
+        void onCrawlFinished(DirectoryCrawler crawler);
+    }
+
+    private final Context mContext;
+
+    private final FileModel mFolder;
+
+    private final String mFilterString;
+
+    private final DirectoryCrawlerListener mListener;
+
+    private volatile boolean mCancelled;
+
+    /**
+     * @param context      The application context used to read the folders and playlist files.
+     * @param folder       The root folder of the crawl.
+     * @param filterString A filter that is used to exclude folders/files of the root folder that didn't contain this String.
+     * @param listener     The listener for the found tracks.
+     */
+    public DirectoryCrawler(final Context context, final FileModel folder, final String filterString, final DirectoryCrawlerListener listener) {
+        mContext = context.getApplicationContext();
+        mFolder = folder;
+        mFilterString = filterString;
+        mListener = listener;
+    }
+
+    /**
+     * Starts the crawl in a background thread.
+     */
+    public void start() {
+        new Thread(this::crawl, THREAD_NAME).start();
+    }
+
+    /**
+     * Stops the crawl. No further batches are delivered after this call returned,
+     * if the listener checks {@link #isCancelled()} on the thread that consumes the batches.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (mPool == null) {
+            mPool = new ForkJoinPool(PARALLELISM);
+        }
+
+        return mPool;
+    }
+
+    private void crawl() {
+        final List<TrackModel> batch = new ArrayList<>();
+
+        if (mFolder.isFile()) {
+            if (matchesFilter(mFolder, mFilterString)) {
+                addTracksForFile(mFolder, batch);
+            }
+        } else {
+            final FolderTask rootTask = new FolderTask(mFolder, mFilterString);
+            getPool().execute(rootTask);
+
+            collect(rootTask, batch);
+        }
+
+        if (!mCancelled && !batch.isEmpty()) {
+            mListener.onTracksFound(this, batch);
+        }
+
+        mListener.onCrawlFinished(this);
+    }
+
+    /**
+     * Collects the results of the given task and all its subtasks in order and delivers full batches.
+     */
+    private void collect(final FolderTask task, final List<TrackModel> batch) {
+        if (!task.isDone() && !batch.isEmpty()) {
+            // don't hold back already found tracks while waiting for the next folder
+            deliver(batch);
+        }
+
+        for (Object entry : task.join()) {
+            if (mCancelled) {
+                return;
+            }
+
+            if (entry instanceof FolderTask) {
+                collect((FolderTask) entry, batch);
+            } else {
+                batch.add((TrackModel) entry);
+
+                if (batch.size() >= BATCH_SIZE) {
+                    deliver(batch);
+                }
+            }
+        }
+    }
+
+    private void deliver(final List<TrackModel> batch) {
+        if (!mCancelled) {
+            mListener.onTracksFound(this, new ArrayList<>(batch));
+        }
+
+        batch.clear();
+    }
+
+    private static boolean matchesFilter(final FileModel file, final String filterString) {
+        return filterString == null || filterString.isEmpty() || file.getName().toLowerCase().contains(filterString);
+    }
+
+    private void addTracksForFile(final FileModel file, final List<? super TrackModel> tracks) {
+        if (file.isPlaylist()) {
+            // Parse the playlist file with a parser
+            PlaylistParser parser = PlaylistParserFactory.getParser(file);
+            if (parser != null) {
+                tracks.addAll(parser.parseList(mContext));
+            }
+        } else {
+            tracks.add(FileExplorerHelper.getInstance().getDummyTrackModelForFile(file));
+        }
+    }
+
+    /**
+     * Reads a single folder. The result contains the tracks of the files and playlists of the folder and
+     * the already forked {@link FolderTask}s of the subfolders in the sort order of the folder.
+     */
+    private class FolderTask extends RecursiveTask<List<Object>> {
+
+        private final FileModel mTaskFolder;
+
+        private final String mTaskFilterString;
+
+        FolderTask(final FileModel folder, final String filterString) {
+            mTaskFolder = folder;
+            mTaskFilterString = filterString;
+        }
+
+        @Override
+        protected List<Object> compute() {
+            final List<Object> entries = new ArrayList<>();
+
+            if (mCancelled) {
+                return entries;
+            }
+
+            for (FileModel file : PermissionHelper.getFilesForDirectory(mContext, mTaskFolder)) {
+                if (!matchesFilter(file, mTaskFilterString)) {
+                    continue;
+                }
+
+                if (file.isDirectory()) {
+                    // the filter is only applied to the root folder
+                    final FolderTask subTask = new FolderTask(file, null);
+                    subTask.fork();
+                    entries.add(subTask);
+                } else if (file.isFile()) {
+                    addTracksForFile(file, entries);
+                }
+            }
+
+            return entries;
+        }
+    }
+}
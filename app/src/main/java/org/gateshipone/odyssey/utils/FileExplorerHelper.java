@@ -130,11 +130,25 @@ public class FileExplorerHelper {
      * @return List of files that need to be scanned
      */
     public List<FileModel> getMissingDBFiles(Context context, FileModel basePath) {
-        List<FileModel> filesDB = MusicLibraryHelper.getMediaFilesForPath(basePath.getPath(), context);
         List<FileModel> filesFS = new ArrayList<>();
 
         getFilesRecursive(context, basePath, filesFS);
 
+        return getMissingDBFiles(context, basePath, filesFS);
+    }
+
+    /**
+     * Generates a list of {@link FileModel} objects that are either in the Android DB and not in the given list
+     * or that are in the given list but not in the Android DB.
+     *
+     * @param context  Context used for DB query
+     * @param basePath Path of files to check
+     * @param filesFS  All files on the FS below the base path
+     * @return List of files that need to be scanned
+     */
+    public List<FileModel> getMissingDBFiles(Context context, FileModel basePath, List<FileModel> filesFS) {
+        List<FileModel> filesDB = MusicLibraryHelper.getMediaFilesForPath(basePath.getPath(), context);
+
         return generateFileListDiff(filesDB, filesFS);
     }
 
@@ -234,50 +248,4 @@ public class FileExplorerHelper {
             }
         }
     }
-
-    /**
-     * return a list of TrackModels created for the given folder
-     * this includes all subfolders
-     *
-     * @param filterString A filter that is used to exclude folders/files that didn't contain this String.
-     */
-    public List<TrackModel> getTrackModelsForFolderAndSubFolders(Context context, FileModel folder, String filterString) {
-        List<TrackModel> tracks = new ArrayList<>();
-        // check current folder and subfolders for music files
-        getTrackModelsForFolderAndSubFolders(context, folder, tracks, filterString);
-
-        return tracks;
-    }
-
-    /**
-     * add TrackModel objects for the current folder and all subfolders to the tracklist
-     *
-     * @param filterString A filter that is used to exclude folders/files that didn't contain this String.
-     */
-    private void getTrackModelsForFolderAndSubFolders(Context context, FileModel folder, List<TrackModel> tracks, String filterString) {
-        if (folder.isFile()) {
-            if (filterString == null || filterString.isEmpty() || folder.getName().toLowerCase().contains(filterString)) {
-                // file is not a directory so create a trackmodel for the file
-                if (folder.isPlaylist()) {
-                    // Parse the playlist file with a parser
-                    PlaylistParser parser = PlaylistParserFactory.getParser(folder);
-                    if (parser != null) {
-
-                        tracks.addAll(parser.parseList(context));
-                    }
-                } else {
-                    tracks.add(getDummyTrackModelForFile(folder));
-                }
-            }
-        } else {
-            List<FileModel> files = PermissionHelper.getFilesForDirectory(context, folder);
-
-            for (FileModel file : files) {
-                if (filterString == null || filterString.isEmpty() || file.getName().toLowerCase().contains(filterString)) {
-                    // call method for all files found in this folder
-                    getTrackModelsForFolderAndSubFolders(context, file, tracks, null);
-                }
-            }
-        }
-    }
 }
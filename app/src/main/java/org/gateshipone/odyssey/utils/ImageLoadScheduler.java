@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2019 Team Gateship-One
+ * (Hendrik Borghorst & Frederik Luetkes)
+ *
+ * The AUTHORS.md file contains a detailed contributors list:
+ * <https://github.com/gateship-one/odyssey/blob/master/AUTHORS.md>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package org.gateshipone.odyssey.utils;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import org.gateshipone.odyssey.artwork.BitmapPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared scheduler for all image loading of the process.
+ * <p>
+ * Requests are executed by a bounded pool of background threads in order of their priority. Requests with the same key
+ * are only loaded once and the result is delivered to all requesters. Each request returns a {@link LoadToken}
+ * that can be cancelled, a load is skipped if all its requests are cancelled before it started.
+ */
+public class ImageLoadScheduler {
+
+    /**
+     * Priority for the image of the currently playing track (notification, widget, now playing view).
+     */
+    public static final int PRIORITY_CURRENT_TRACK = 0;
+
+    /**
+     * Priority for images of visible views.
+     */
+    public static final int PRIORITY_VISIBLE = 1;
+
+    /**
+     * Priority for images of items that are expected to become visible soon.
+     */
+    public static final int PRIORITY_PREFETCH = 2;
+
+    private static final int WORKER_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Loads the image of a request. Called on a worker thread.
+     */
+    public interface ImageLoader {
+        /**
+         * @param job The job of the request. Used to check for cancellation and to deliver preview images.
+         * @return The loaded image or null. The image must carry one {@link BitmapPool} reference that is handed over to the scheduler.
+         */
+        Bitmap loadImage(LoadJob job);
+    }
+
+    /**
+     * Receives the loaded image of a request. Called on a worker thread.
+     */
+    public interface ImageReceiver {
+        /**
+         * @param bitmap The image or null if no image was found. Carries one {@link BitmapPool} reference for the receiver.
+         */
+        void onImageLoaded(Bitmap bitmap);
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Jobs that are queued or running by their key.
+     */
+    private final HashMap<String, LoadJob> mJobs = new HashMap<>();
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Singleton instance
+     */
+    private static ImageLoadScheduler mInstance;
+
+    private ImageLoadScheduler() {
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        mExecutor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "ImageLoader-" + threadCount.incrementAndGet()));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized ImageLoadScheduler getInstance() {
+        if (mInstance == null) {
+            mInstance = new ImageLoadScheduler();
+        }
+        return mInstance;
+    }
+
+    /**
+     * Requests an image.
+     *
+     * @param key      Key that identifies the result of the loader. Requests with the same key share one load.
+     * @param priority The priority of the request, lower values are loaded first.
+     * @param loader   The loader used if no load for the key is queued or running.
+     * @param receiver Receiver for the image.
+     * @return Token to cancel the request or change its priority.
+     */
+    public LoadToken load(final String key, final int priority, final ImageLoader loader, final ImageReceiver receiver) {
+        final LoadToken token = new LoadToken(receiver, priority);
+
+        synchronized (this) {
+            LoadJob job = mJobs.get(key);
+            if (job == null) {
+                job = new LoadJob(key, loader);
+                mJobs.put(key, job);
+            }
+            token.mJob = job;
+            job.mTokens.add(token);
+
+            updateJobPriority(job);
+        }
+
+        return token;
+    }
+
+    /**
+     * Recalculates the priority of the job from its tokens and (re)queues it if it is not started yet.
+     */
+    private void updateJobPriority(final LoadJob job) {
+        if (job.mStarted) {
+            return;
+        }
+
+        int priority = Integer.MAX_VALUE;
+        for (LoadToken token : job.mTokens) {
+            priority = Math.min(priority, token.mPriority);
+        }
+
+        if (job.mTokens.isEmpty()) {
+            // nobody is interested anymore, skip the load
+            mExecutor.remove(job);
+            removeJob(job);
+        } else if (!job.mQueued || priority != job.mPriority) {
+            if (job.mQueued) {
+                mExecutor.remove(job);
+            }
+            job.mPriority = priority;
+            // Newer requests of the same priority are loaded first, they are most likely still visible
+            job.mSequence = mSequence.incrementAndGet();
+            job.mQueued = true;
+            mExecutor.execute(job);
+        }
+    }
+
+    private void removeJob(final LoadJob job) {
+        if (mJobs.get(job.mKey) == job) {
+            mJobs.remove(job.mKey);
+        }
+    }
+
+    /**
+     * Delivers the image to all requests of the job that are not cancelled.
+     * The reference of the given bitmap is consumed.
+     */
+    private void deliver(final LoadJob job, final Bitmap bitmap) {
+        final ArrayList<LoadToken> tokens;
+        synchronized (this) {
+            tokens = new ArrayList<>(job.mTokens);
+        }
+
+        final BitmapPool pool = BitmapPool.getInstance();
+        for (LoadToken token : tokens) {
+            pool.acquire(bitmap);
+            token.mReceiver.onImageLoaded(bitmap);
+        }
+        pool.release(bitmap);
+    }
+
+    /**
+     * Handle of one image request.
+     */
+    public class LoadToken {
+        private final ImageReceiver mReceiver;
+
+        private int mPriority;
+
+        private LoadJob mJob;
+
+        private volatile boolean mCancelled;
+
+        private LoadToken(final ImageReceiver receiver, final int priority) {
+            mReceiver = receiver;
+            mPriority = priority;
+        }
+
+        /**
+         * Cancels the request. The receiver might still be called if the image is delivered at the same time.
+         */
+        public void cancel() {
+            synchronized (ImageLoadScheduler.this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+
+                mJob.mTokens.remove(this);
+                updateJobPriority(mJob);
+            }
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Changes the priority of the request, e.g. if the requesting view became visible.
+         */
+        public void setPriority(final int priority) {
+            synchronized (ImageLoadScheduler.this) {
+                if (mCancelled || mPriority == priority) {
+                    return;
+                }
+                mPriority = priority;
+                updateJobPriority(mJob);
+            }
+        }
+    }
+
+    /**
+     * One load that is shared by all requests with the same key.
+     */
+    public class LoadJob implements Runnable, Comparable<LoadJob> {
+        private final String mKey;
+
+        private final ImageLoader mLoader;
+
+        private final ArrayList<LoadToken> mTokens = new ArrayList<>();
+
+        private int mPriority;
+
+        private long mSequence;
+
+        private boolean mQueued;
+
+        private boolean mStarted;
+
+        private LoadJob(final String key, final ImageLoader loader) {
+            mKey = key;
+            mLoader = loader;
+        }
+
+        /**
+         * @return True if all requests of this job are cancelled, the loader should stop as soon as possible.
+         */
+        public boolean isCancelled() {
+            synchronized (ImageLoadScheduler.this) {
+                return mTokens.isEmpty();
+            }
+        }
+
+        /**
+         * Delivers a preliminary image (e.g. a cached image in a lower resolution) before the load is finished.
+         *
+         * @param bitmap The image, its {@link BitmapPool} reference is consumed.
+         */
+        public void deliverPreview(final Bitmap bitmap) {
+            deliver(this, bitmap);
+        }
+
+        @Override
+        public void run() {
+            synchronized (ImageLoadScheduler.this) {
+                if (mStarted) {
+                    // queued again while a worker already took it
+                    return;
+                }
+                if (mTokens.isEmpty()) {
+                    removeJob(this);
+                    return;
+                }
+                mStarted = true;
+            }
+
+            Bitmap bitmap = null;
+            try {
+                bitmap = mLoader.loadImage(this);
+            } finally {
+                synchronized (ImageLoadScheduler.this) {
+                    // later requests start a new load
+                    removeJob(this);
+                }
+                deliver(this, bitmap);
+            }
+        }
+
+        @Override
+        public int compareTo(LoadJob other) {
+            if (mPriority != other.mPriority) {
+                return Integer.compare(mPriority, other.mPriority);
+            }
+            return Long.compare(other.mSequence, mSequence);
+        }
+    }
+}
@@ -26,18 +26,48 @@ import android.content.Context;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.text.TextUtils;
+import android.util.Log;
 
 import org.gateshipone.odyssey.models.TrackModel;
+import org.gateshipone.odyssey.playbackservice.statemanager.OdysseyDatabaseManager;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper to load meta data of tracks async.
+ * <p>
+ * Unknown tracks are handled in chunks. All tracks of a chunk are looked up in the mediadb at once,
+ * tracks that are not part of the mediadb are looked up in the tag cache of the {@link OdysseyDatabaseManager}.
+ * Only the remaining tracks are parsed with a {@link MediaMetadataRetriever} in a small thread pool and added to the tag cache.
+ * The results are delivered to the listener after each chunk.
  */
 public class MetaDataLoader {
+    private static final String TAG = MetaDataLoader.class.getSimpleName();
+
+    /**
+     * Number of tracks that are resolved and delivered together.
+     */
+    private static final int CHUNK_SIZE = 200;
+
+    /**
+     * Maximum number of files parsed in parallel by the {@link MediaMetadataRetriever}.
+     */
+    private static final int RETRIEVER_POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Time after which idle threads are stopped.
+     */
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
 
     public interface MetaDataLoaderListener {
         void metaDataLoaderFinished(Map<String, TrackModel> parsedTracks);
@@ -45,8 +75,24 @@ public class MetaDataLoader {
 
     private final MetaDataLoaderListener mMetaDataLoaderListener;
 
+    /**
+     * Executor that processes the requested track lists one after another.
+     */
+    private final ThreadPoolExecutor mLoaderExecutor;
+
+    /**
+     * Executor that parses the files that are not part of the mediadb.
+     */
+    private final ThreadPoolExecutor mRetrieverExecutor;
+
     public MetaDataLoader(final MetaDataLoaderListener metaDataLoaderListener) {
         mMetaDataLoaderListener = metaDataLoaderListener;
+
+        mLoaderExecutor = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        mLoaderExecutor.allowCoreThreadTimeOut(true);
+
+        mRetrieverExecutor = new ThreadPoolExecutor(RETRIEVER_POOL_SIZE, RETRIEVER_POOL_SIZE, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        mRetrieverExecutor.allowCoreThreadTimeOut(true);
     }
 
     /**
@@ -69,36 +115,24 @@ public class MetaDataLoader {
             }
         }
 
-        Thread loaderThread = new Thread(new TrackListMetaDataExtractorRunner(context, unknownTracks));
-        loaderThread.start();
+        if (unknownTracks.isEmpty()) {
+            return;
+        }
+
+        mLoaderExecutor.execute(new TrackListMetaDataExtractorRunner(context, unknownTracks));
     }
 
     /**
-     * Create a {@link TrackModel} for the given url.
-     * <p>
-     * This method will try to retrieve the track in the mediadb or try to extract the meta data using the {@link MediaMetadataRetriever}.
-     * If both methods fail a dummy {@link TrackModel} will be created.
+     * Create a {@link TrackModel} for the given url by extracting the meta data using the {@link MediaMetadataRetriever}.
      *
-     * @param context    The {@link Context} used to open the file and access the mediadb.
-     * @param trackTitle The title for the {@link TrackModel} if a dummy track is created.
-     * @param trackUrl   The given url for track as a String.
-     * @return A valid {@link TrackModel}.
+     * @param trackUrl The given url for track as a String.
+     * @return A valid {@link TrackModel} or null if the meta data couldn't be read.
      */
-    private TrackModel readTrackMetaData(final Context context, final String trackTitle, final String trackUrl) {
-        // parse the given url
-        final Uri uri = FormatHelper.encodeURI(trackUrl);
-
-        // lookup the current file in the media db
-        final TrackModel track = MusicLibraryHelper.getTrackForUri(uri, context);
-
-        if (track != null) {
-            return track;
-        }
+    private static TrackModel readTrackMetaData(final String trackUrl) {
+        final MediaMetadataRetriever retriever = new MediaMetadataRetriever();
 
         try {
             // try to read the file metadata
-            final MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-
             FileInputStream fileInputStream = new FileInputStream(trackUrl);
             retriever.setDataSource(fileInputStream.getFD());
             fileInputStream.close();
@@ -144,12 +178,18 @@ public class MetaDataLoader {
 
             return new TrackModel(title, artist, album, albumKey, duration, no, trackUrl, -1);
         } catch (Exception e) {
-            // something went wrong so just create a dummy track with the given title
-            final String albumKey = "" + trackTitle.hashCode();
-            return new TrackModel(trackTitle, null, null, albumKey, 0, -1, trackUrl, -1);
+            // something went wrong, the caller will create a dummy track
+            return null;
+        } finally {
+            retriever.release();
         }
     }
 
+    private static TrackModel createDummyTrack(final String trackTitle, final String trackUrl) {
+        final String albumKey = "" + trackTitle.hashCode();
+        return new TrackModel(trackTitle, null, null, albumKey, 0, -1, trackUrl, -1);
+    }
+
     private class TrackListMetaDataExtractorRunner implements Runnable {
 
         private final Context mContext;
@@ -163,13 +203,132 @@ public class MetaDataLoader {
 
         @Override
         public void run() {
-            Map<String, TrackModel> mParsedTracks = new HashMap<>();
+            final List<String> trackUrls = new ArrayList<>(mUnknownTracks.keySet());
+
+            for (int i = 0; i < trackUrls.size(); i += CHUNK_SIZE) {
+                final Map<String, TrackModel> parsedTracks = resolveChunk(trackUrls.subList(i, Math.min(i + CHUNK_SIZE, trackUrls.size())));
 
-            for (Map.Entry<String, String> unknownTrack : mUnknownTracks.entrySet()) {
-                mParsedTracks.put(unknownTrack.getKey(), readTrackMetaData(mContext, unknownTrack.getValue(), unknownTrack.getKey()));
+                if (parsedTracks == null) {
+                    // loader was interrupted
+                    return;
+                }
+
+                // deliver the results of this chunk so the playlist gets updated progressively
+                mMetaDataLoaderListener.metaDataLoaderFinished(parsedTracks);
             }
+        }
+
+        /**
+         * Resolves the given tracks by a lookup in the mediadb and parses the remaining tracks in parallel.
+         *
+         * @param trackUrls The urls of the tracks to resolve.
+         * @return A {@link Map} with a {@link TrackModel} per url or null if the thread was interrupted.
+         */
+        private Map<String, TrackModel> resolveChunk(final List<String> trackUrls) {
+            final Map<String, TrackModel> parsedTracks = new HashMap<>();
+
+            // file paths that should be looked up in the mediadb with the belonging track url
+            final Map<String, String> trackPaths = new HashMap<>();
+
+            // tracks that are not part of the mediadb
+            final List<String> missingTracks = new ArrayList<>();
+
+            for (String trackUrl : trackUrls) {
+                // parse the given url
+                final Uri uri = FormatHelper.encodeURI(trackUrl);
+                final String uriScheme = uri.getScheme();
+
+                if (uriScheme != null && uriScheme.equals("content")) {
+                    // content urls need a special lookup
+                    final TrackModel track = MusicLibraryHelper.getTrackForUri(uri, mContext);
+
+                    if (track != null) {
+                        parsedTracks.put(trackUrl, track);
+                    } else {
+                        missingTracks.add(trackUrl);
+                    }
+                } else if (uri.getPath() != null) {
+                    trackPaths.put(uri.getPath(), trackUrl);
+                } else {
+                    missingTracks.add(trackUrl);
+                }
+            }
+
+            // lookup all files of this chunk in the media db
+            final Map<String, TrackModel> foundTracks = MusicLibraryHelper.getTracksForPaths(new ArrayList<>(trackPaths.keySet()), mContext);
+
+            for (Map.Entry<String, String> trackPath : trackPaths.entrySet()) {
+                final TrackModel track = foundTracks.get(trackPath.getKey());
+
+                if (track != null) {
+                    parsedTracks.put(trackPath.getValue(), track);
+                } else {
+                    missingTracks.add(trackPath.getValue());
+                }
+            }
+
+            final OdysseyDatabaseManager databaseManager = OdysseyDatabaseManager.getInstance(mContext);
+
+            // lookup the remaining files in the tag cache
+            final List<File> missingFiles = new ArrayList<>(missingTracks.size());
+            for (String trackUrl : missingTracks) {
+                missingFiles.add(new File(trackUrl));
+            }
+
+            final Map<String, TrackModel> cachedTracks = databaseManager.getCachedTracks(missingFiles);
+
+            final List<String> unparsedTracks = new ArrayList<>();
+
+            for (int i = 0; i < missingTracks.size(); i++) {
+                final TrackModel track = cachedTracks.get(missingFiles.get(i).getPath());
+
+                if (track != null) {
+                    parsedTracks.put(missingTracks.get(i), track);
+                } else {
+                    unparsedTracks.add(missingTracks.get(i));
+                }
+            }
+
+            // parse the remaining files in parallel
+            final List<Future<TrackModel>> retrievedTracks = new ArrayList<>(unparsedTracks.size());
+
+            for (String trackUrl : unparsedTracks) {
+                retrievedTracks.add(mRetrieverExecutor.submit(() -> readTrackMetaData(trackUrl)));
+            }
+
+            // successfully parsed tracks that should be added to the tag cache
+            final Map<File, TrackModel> newTracks = new HashMap<>();
+
+            for (int i = 0; i < unparsedTracks.size(); i++) {
+                final String trackUrl = unparsedTracks.get(i);
+
+                TrackModel track = null;
+
+                try {
+                    track = retrievedTracks.get(i).get();
+                } catch (InterruptedException e) {
+                    for (Future<TrackModel> retrievedTrack : retrievedTracks) {
+                        retrievedTrack.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    return null;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Failed to read meta data of " + trackUrl, e);
+                }
+
+                if (track != null) {
+                    newTracks.put(new File(trackUrl), track);
+                } else {
+                    // something went wrong so just create a dummy track with the given title
+                    track = createDummyTrack(mUnknownTracks.get(trackUrl), trackUrl);
+                }
+
+                parsedTracks.put(trackUrl, track);
+            }
+
+            databaseManager.saveCachedTracks(newTracks);
 
-            mMetaDataLoaderListener.metaDataLoaderFinished(mParsedTracks);
+            return parsedTracks;
         }
     }
 }
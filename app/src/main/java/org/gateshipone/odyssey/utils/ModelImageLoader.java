@@ -20,12 +20,13 @@
  *
  */
 
+
 package org.gateshipone.odyssey.utils;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
-import android.util.Pair;
+import android.os.Handler;
+import android.os.Looper;
 
 import org.gateshipone.odyssey.adapter.ScrollSpeedAdapter;
 import org.gateshipone.odyssey.artwork.ArtworkManager;
@@ -34,99 +35,114 @@ import org.gateshipone.odyssey.models.AlbumModel;
 import org.gateshipone.odyssey.models.ArtistModel;
 import org.gateshipone.odyssey.models.GenericModel;
 import org.gateshipone.odyssey.models.TrackModel;
-import org.gateshipone.odyssey.viewitems.CoverLoadable;
 
 /**
- * Loader class for covers
+ * Loader for the covers of view items, executed by the {@link ImageLoadScheduler}.
  */
-public class AsyncLoader extends AsyncTask<AsyncLoader.CoverViewHolder, Void, Bitmap> {
-    private static final String TAG = AsyncLoader.class.getSimpleName();
-    private CoverViewHolder mCover;
+public class ModelImageLoader implements ImageLoadScheduler.ImageLoader {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
 
     private final Context mContext;
 
-    private long mStartTime;
+    private final ArtworkManager mArtworkManager;
+
+    private final GenericModel mModel;
+
+    private final int mWidth;
+
+    private final int mHeight;
 
-    public AsyncLoader(Context context) {
-        mContext = context;
+    private final ScrollSpeedAdapter mAdapter;
+
+    public ModelImageLoader(final Context context, final ArtworkManager artworkManager, final GenericModel model,
+                            final int width, final int height, final ScrollSpeedAdapter adapter) {
+        mContext = context.getApplicationContext();
+        mArtworkManager = artworkManager;
+        mModel = model;
+        mWidth = width;
+        mHeight = height;
+        mAdapter = adapter;
     }
 
     /**
-     * Wrapper class for covers
+     * @return The key of the image of the given model in the given size for the {@link ImageLoadScheduler}.
      */
-    public static class CoverViewHolder {
-        public Pair<Integer, Integer> imageDimension;
-        public CoverLoadable coverLoadable;
-        public ArtworkManager artworkManager;
-        public GenericModel modelItem;
-        public ScrollSpeedAdapter mAdapter;
+    public static String getKey(final GenericModel model, final int width, final int height) {
+        final String suffix = ":" + width + 'x' + height;
+
+        if (model instanceof ArtistModel) {
+            final ArtistModel artist = (ArtistModel) model;
+            return "artist:" + artist.getArtistID() + ':' + artist.getArtistName() + suffix;
+        } else if (model instanceof AlbumModel) {
+            final AlbumModel album = (AlbumModel) model;
+            return "album:" + album.getAlbumID() + ':' + album.getAlbumKey() + suffix;
+        } else if (model instanceof TrackModel) {
+            return "trackalbum:" + ((TrackModel) model).getTrackAlbumKey() + suffix;
+        }
+        return "model:" + model.getSectionTitle() + suffix;
     }
 
     @Override
-    protected Bitmap doInBackground(CoverViewHolder... params) {
+    public Bitmap loadImage(final ImageLoadScheduler.LoadJob job) {
+        if (job.isCancelled()) {
+            // the view scrolled away before the load started
+            return null;
+        }
+
         // Save the time when loading started for later duration calculation
-        mStartTime = System.currentTimeMillis();
+        final long startTime = System.currentTimeMillis();
 
-        mCover = params[0];
         Bitmap image = null;
         // Check if model item is artist or album
-        if (mCover.modelItem instanceof ArtistModel) {
-            ArtistModel artist = (ArtistModel) mCover.modelItem;
+        if (mModel instanceof ArtistModel) {
+            ArtistModel artist = (ArtistModel) mModel;
 
             try {
                 // Check if image is available. If it is not yet fetched it will throw an exception
                 // If it was already searched for and not found, this will be null.
-                image = mCover.artworkManager.getImage(artist, mCover.imageDimension.first, mCover.imageDimension.second, false, mContext);
+                image = mArtworkManager.getImage(artist, mWidth, mHeight, false, mContext);
             } catch (ImageNotFoundException e) {
                 // Check if fetching for this item is already ongoing
                 if (!artist.getFetching()) {
                     // If not set it as ongoing and request the image fetch.
-                    mCover.artworkManager.fetchImage(artist, mContext);
+                    mArtworkManager.fetchImage(artist, mContext);
                     artist.setFetching(true);
                 }
             }
-        } else if (mCover.modelItem instanceof AlbumModel) {
-            AlbumModel album = (AlbumModel) mCover.modelItem;
+        } else if (mModel instanceof AlbumModel) {
+            AlbumModel album = (AlbumModel) mModel;
 
             try {
                 // Check if image is available. If it is not yet fetched it will throw an exception.
                 // If it was already searched for and not found, this will be null.
-                image = mCover.artworkManager.getImage(album, mCover.imageDimension.first, mCover.imageDimension.second, false, mContext);
+                image = mArtworkManager.getImage(album, mWidth, mHeight, false, mContext);
             } catch (ImageNotFoundException e) {
                 // Check if fetching for this item is already ongoing
                 if (!album.getFetching()) {
                     // If not set it as ongoing and request the image fetch.
-                    mCover.artworkManager.fetchImage(album, mContext);
+                    mArtworkManager.fetchImage(album, mContext);
                     album.setFetching(true);
                 }
             }
-        } else if (mCover.modelItem instanceof TrackModel) {
-            TrackModel track = (TrackModel) mCover.modelItem;
+        } else if (mModel instanceof TrackModel) {
+            TrackModel track = (TrackModel) mModel;
 
             try {
                 // Check if image is available. If it is not yet fetched it will throw an exception.
                 // If it was already searched for and not found, this will be null.
-                image = mCover.artworkManager.getImage(track, mCover.imageDimension.first, mCover.imageDimension.second, false, mContext);
+                image = mArtworkManager.getImage(track, mWidth, mHeight, false, mContext);
             } catch (ImageNotFoundException e) {
                 // If not set it as ongoing and request the image fetch.
-                mCover.artworkManager.fetchImage(track, mContext);
+                mArtworkManager.fetchImage(track, mContext);
             }
         }
-        return image;
-    }
-
-
-    @Override
-    protected void onPostExecute(Bitmap result) {
 
-        super.onPostExecute(result);
-
-        // set mCover if exists
-        if (result != null) {
-            if (mCover.mAdapter != null) {
-                mCover.mAdapter.addImageLoadTime(System.currentTimeMillis() - mStartTime);
-            }
-            mCover.coverLoadable.setImage(result);
+        if (image != null && mAdapter != null) {
+            final long loadTime = System.currentTimeMillis() - startTime;
+            MAIN_HANDLER.post(() -> mAdapter.addImageLoadTime(loadTime));
         }
+
+        return image;
     }
-}
\ No newline at end of file
+}
@@ -27,6 +27,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.MediaStore;
+import android.text.TextUtils;
 
 import org.gateshipone.odyssey.R;
 import org.gateshipone.odyssey.models.AlbumModel;
@@ -72,6 +73,12 @@ public class MusicLibraryHelper {
      */
     private static final int chunkSize = 1000;
 
+    /**
+     * Threshold how many paths should be looked up in the mediastore with a single query.
+     * The threshold is needed to not exceed the maximum number of arguments of a SQLite statement.
+     */
+    private static final int pathChunkSize = 200;
+
     /**
      * Workaround to insert images for albums that are not part of the system media library and
      * therefore do not have an album id. The offset needs to be bigger then the count of
@@ -219,6 +226,9 @@ public class MusicLibraryHelper {
 
     /**
      * Return a list of all tracks of an artist
+     * <p>
+     * All tracks are loaded with a single query and sorted by the position of their album
+     * in the album order of the artist and the track number afterwards.
      *
      * @param context  The application context to access the content resolver.
      * @param artistId The id to identify the artist in the mediastore
@@ -226,7 +236,72 @@ public class MusicLibraryHelper {
      * @return The list of {@link TrackModel} of all tracks for the given artist in the specified order.
      */
     public static List<TrackModel> getTracksForArtist(final long artistId, final String orderKey, final Context context) {
-        List<TrackModel> artistTracks = new ArrayList<>();
+        final List<TrackModel> artistTracks = new ArrayList<>();
+
+        final Map<String, Integer> albumOrder = getAlbumOrderForArtist(artistId, orderKey, context);
+
+        final String whereVal[] = {String.valueOf(artistId)};
+
+        final String where = MediaStore.Audio.Media.ARTIST_ID + "=?";
+
+        final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projectionTracks, where, whereVal, MediaStore.Audio.Media.TRACK);
+
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+
+                final int trackNameColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+                final int durationColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+                final int numberColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TRACK);
+                final int artistNameColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+                final int albumNameColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
+                final int urlColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
+                final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
+                final int idColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+
+                do {
+                    final String trackName = cursor.getString(trackNameColumnIndex);
+                    final long duration = cursor.getLong(durationColumnIndex);
+                    final int number = cursor.getInt(numberColumnIndex);
+                    final String artistName = cursor.getString(artistNameColumnIndex);
+                    final String albumName = cursor.getString(albumNameColumnIndex);
+                    final String url = cursor.getString(urlColumnIndex);
+                    final String albumKey = cursor.getString(albumKeyColumnIndex);
+                    final long id = cursor.getLong(idColumnIndex);
+
+                    // add current track
+                    artistTracks.add(new TrackModel(trackName, artistName, albumName, albumKey, duration, number, url, id));
+
+                } while (cursor.moveToNext());
+            }
+
+            cursor.close();
+        }
+
+        // the cursor is already sorted by the track number, the stable sort keeps this order within an album
+        Collections.sort(artistTracks, (track1, track2) -> {
+            final Integer position1 = albumOrder.get(track1.getTrackAlbumKey());
+            final Integer position2 = albumOrder.get(track2.getTrackAlbumKey());
+
+            // tracks of unknown albums are added at the end
+            final int order1 = position1 != null ? position1 : Integer.MAX_VALUE;
+            final int order2 = position2 != null ? position2 : Integer.MAX_VALUE;
+
+            return Integer.compare(order1, order2);
+        });
+
+        return artistTracks;
+    }
+
+    /**
+     * Return the position of each album of an artist in the given album order.
+     *
+     * @param artistId The id to identify the artist in the mediastore
+     * @param orderKey String to specify the order of the albums
+     * @param context  The application context to access the content resolver.
+     * @return Map of the album keys to the position of the album.
+     */
+    private static Map<String, Integer> getAlbumOrderForArtist(final long artistId, final String orderKey, final Context context) {
+        final Map<String, Integer> albumOrder = new HashMap<>();
 
         String orderBy;
 
@@ -238,21 +313,26 @@ public class MusicLibraryHelper {
             orderBy = MediaStore.Audio.Albums.ALBUM;
         }
 
-        Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Artists.Albums.getContentUri("external", artistId),
-                new String[]{MediaStore.Audio.Albums.ALBUM, MediaStore.Audio.Albums.ALBUM_KEY, MediaStore.Audio.Albums.FIRST_YEAR}, "", null, orderBy + " COLLATE NOCASE");
+        final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Artists.Albums.getContentUri("external", artistId),
+                new String[]{MediaStore.Audio.Albums.ALBUM_KEY}, "", null, orderBy + " COLLATE NOCASE");
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_KEY);
+
                 do {
-                    String albumKey = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_KEY));
-                    artistTracks.addAll(getTracksForAlbum(albumKey, context));
+                    final String albumKey = cursor.getString(albumKeyColumnIndex);
+
+                    if (!albumOrder.containsKey(albumKey)) {
+                        albumOrder.put(albumKey, albumOrder.size());
+                    }
                 } while (cursor.moveToNext());
             }
 
             cursor.close();
         }
 
-        return artistTracks;
+        return albumOrder;
     }
 
     /**
@@ -301,21 +381,20 @@ public class MusicLibraryHelper {
     public static List<AlbumModel> getRecentAlbums(final Context context) {
         final List<AlbumModel> recentAlbums = new ArrayList<>();
 
-        // get recent tracks
-        // filter non music and tracks older than 4 weeks
-        final long fourWeeksAgo = (System.currentTimeMillis() / 1000) - recentDateLimit;
-
-        final String whereVal[] = {"1", String.valueOf(fourWeeksAgo)};
+        // Get the latest added date for all recent albums
+        final Map<Long, Integer> dateMap = getRecentAlbumDates(context);
 
-        final String where = MediaStore.Audio.Media.IS_MUSIC + "=? AND " + MediaStore.Audio.Media.DATE_ADDED + ">?" + ") GROUP BY (" + MediaStore.Audio.Media.ALBUM_KEY;
+        if (dateMap.isEmpty()) {
+            return recentAlbums;
+        }
 
-        final Cursor recentTracksCursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, new String[]{MediaStore.Audio.Media.ALBUM_KEY, MediaStore.Audio.Media.DATE_ADDED}, where, whereVal, MediaStore.Audio.Media.ALBUM_KEY);
+        // only load the recent albums, the ids are numeric so they can be inlined safely
+        final String where = MediaStore.Audio.Albums._ID + " IN (" + TextUtils.join(",", dateMap.keySet()) + ")";
 
-        // get all albums
-        final Cursor albumsCursor = PermissionHelper.query(context, MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, MusicLibraryHelper.projectionAlbums, "", null, MediaStore.Audio.Albums.ALBUM_KEY);
+        final Cursor albumsCursor = PermissionHelper.query(context, MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, MusicLibraryHelper.projectionAlbums, where, null, null);
 
-        if (recentTracksCursor != null && albumsCursor != null) {
-            if (recentTracksCursor.moveToFirst() && albumsCursor.moveToFirst()) {
+        if (albumsCursor != null) {
+            if (albumsCursor.moveToFirst()) {
 
                 final int albumKeyColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_KEY);
                 final int albumTitleColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM);
@@ -323,29 +402,22 @@ public class MusicLibraryHelper {
                 final int artistTitleColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ARTIST);
                 final int albumIDColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums._ID);
 
-                final int recentTracksAlbumKeyColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
-                final int recentTracksDateAddedColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.DATE_ADDED);
-
                 do {
-                    if (albumsCursor.getString(albumKeyColumnIndex).equals(recentTracksCursor.getString(recentTracksAlbumKeyColumnIndex))) {
-                        final String albumKey = albumsCursor.getString(albumKeyColumnIndex);
-                        final String albumTitle = albumsCursor.getString(albumTitleColumnIndex);
-                        final String imagePath = albumsCursor.getString(imagePathColumnIndex);
-                        final String artistTitle = albumsCursor.getString(artistTitleColumnIndex);
-                        final long albumID = albumsCursor.getLong(albumIDColumnIndex);
-
-                        final int dateInMillis = recentTracksCursor.getInt(recentTracksDateAddedColumnIndex);
+                    final String albumKey = albumsCursor.getString(albumKeyColumnIndex);
+                    final String albumTitle = albumsCursor.getString(albumTitleColumnIndex);
+                    final String imagePath = albumsCursor.getString(imagePathColumnIndex);
+                    final String artistTitle = albumsCursor.getString(artistTitleColumnIndex);
+                    final long albumID = albumsCursor.getLong(albumIDColumnIndex);
 
-                        // add the album
-                        recentAlbums.add(new AlbumModel(albumTitle, imagePath, artistTitle, albumKey, albumID, dateInMillis));
+                    final int dateInMillis = dateMap.get(albumID);
 
-                        if (!recentTracksCursor.moveToNext()) {
-                            break;
-                        }
-                    }
+                    // add the album
+                    recentAlbums.add(new AlbumModel(albumTitle, imagePath, artistTitle, albumKey, albumID, dateInMillis));
 
                 } while (albumsCursor.moveToNext());
             }
+
+            albumsCursor.close();
         }
 
         // sort the recent albums
@@ -365,51 +437,38 @@ public class MusicLibraryHelper {
     }
 
     /**
-     * Generates a {@link Map} of recent added dates per AlbumKey to unify the dates per album
+     * Generates a {@link Map} of the latest added date per album id for all albums with tracks added in the last 4 weeks.
+     * The dates are computed by the mediastore with a single grouped query.
      *
      * @param context The application context to access the content resolver.
-     * @return HashMap of dates per AlbumKey
+     * @return HashMap of dates per album id
      */
-    private static Map<String, Integer> getRecentAlbumDates(final Context context) {
-        final HashMap<String, Integer> recentDates = new HashMap<>();
+    private static Map<Long, Integer> getRecentAlbumDates(final Context context) {
+        final HashMap<Long, Integer> recentDates = new HashMap<>();
 
-        // get recent tracks
         // filter non music and tracks older than 4 weeks
         final long fourWeeksAgo = (System.currentTimeMillis() / 1000) - recentDateLimit;
 
         final String whereVal[] = {"1", String.valueOf(fourWeeksAgo)};
 
-        final String where = MediaStore.Audio.Media.IS_MUSIC + "=? AND " + MediaStore.Audio.Media.DATE_ADDED + ">?" + ") GROUP BY (" + MediaStore.Audio.Media.ALBUM_KEY;
+        final String where = MediaStore.Audio.Media.IS_MUSIC + "=? AND " + MediaStore.Audio.Media.DATE_ADDED + ">?" + ") GROUP BY (" + MediaStore.Audio.Media.ALBUM_ID;
 
-        final Cursor recentTracksCursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, new String[]{MediaStore.Audio.Media.ALBUM_KEY, MediaStore.Audio.Media.DATE_ADDED}, where, whereVal, MediaStore.Audio.Media.ALBUM_KEY);
+        final String[] projection = {MediaStore.Audio.Media.ALBUM_ID, "MAX(" + MediaStore.Audio.Media.DATE_ADDED + ") AS " + MediaStore.Audio.Media.DATE_ADDED};
 
-        // get all albums
-        final Cursor albumsCursor = PermissionHelper.query(context, MediaStore.Audio.Albums.EXTERNAL_CONTENT_URI, MusicLibraryHelper.projectionAlbums, "", null, MediaStore.Audio.Albums.ALBUM_KEY);
+        final Cursor recentTracksCursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projection, where, whereVal, null);
 
-        if (recentTracksCursor != null && albumsCursor != null) {
-            if (recentTracksCursor.moveToFirst() && albumsCursor.moveToFirst()) {
+        if (recentTracksCursor != null) {
+            if (recentTracksCursor.moveToFirst()) {
 
-                final int albumKeyColumnIndex = albumsCursor.getColumnIndex(MediaStore.Audio.Albums.ALBUM_KEY);
-
-                final int recentTracksAlbumKeyColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
-                final int recentTracksDateAddedColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.DATE_ADDED);
+                final int albumIDColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_ID);
+                final int dateAddedColumnIndex = recentTracksCursor.getColumnIndex(MediaStore.Audio.Media.DATE_ADDED);
 
                 do {
-                    if (albumsCursor.getString(albumKeyColumnIndex).equals(recentTracksCursor.getString(recentTracksAlbumKeyColumnIndex))) {
-                        final String albumKey = albumsCursor.getString(albumKeyColumnIndex);
-
-                        final int dateInMillis = recentTracksCursor.getInt(recentTracksDateAddedColumnIndex);
-
-                        // add the album
-                        recentDates.put(albumKey, dateInMillis);
-
-                        if (!recentTracksCursor.moveToNext()) {
-                            break;
-                        }
-                    }
-
-                } while (albumsCursor.moveToNext());
+                    recentDates.put(recentTracksCursor.getLong(albumIDColumnIndex), recentTracksCursor.getInt(dateAddedColumnIndex));
+                } while (recentTracksCursor.moveToNext());
             }
+
+            recentTracksCursor.close();
         }
 
         return recentDates;
@@ -417,6 +476,9 @@ public class MusicLibraryHelper {
 
     /**
      * Return a list of all tracks add in the last 4 weeks.
+     * <p>
+     * All tracks of an album get the latest added date of the album for a distinct sort order.
+     * The tracks are read ordered by album and date so the album date is known with the first track of each album.
      *
      * @param context The application context to access the content resolver.
      * @return The list of {@link TrackModel} of all tracks found in the mediastore that were added in the last 4 weeks.
@@ -424,9 +486,6 @@ public class MusicLibraryHelper {
     public static List<TrackModel> getRecentTracks(final Context context) {
         final List<TrackModel> recentTracks = new ArrayList<>();
 
-        // Get a Map of all album dates to unify the date of all album tracks to one date for distinct sort order
-        final Map<String, Integer> dateMap = getRecentAlbumDates(context);
-
         // filter non music and tracks older than 4 weeks
         final long fourWeeksAgo = (System.currentTimeMillis() / 1000) - recentDateLimit;
 
@@ -434,25 +493,44 @@ public class MusicLibraryHelper {
 
         final String where = MediaStore.Audio.Media.IS_MUSIC + "=? AND " + MediaStore.Audio.Media.DATE_ADDED + ">?";
 
-        final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projectionTracks, where, whereVal, null);
+        final String orderBy = MediaStore.Audio.Media.ALBUM_KEY + ", " + MediaStore.Audio.Media.DATE_ADDED + " DESC";
+
+        final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, projectionTracks, where, whereVal, orderBy);
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
 
+                final int titleColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+                final int durationColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+                final int numberColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TRACK);
+                final int artistColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+                final int albumColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
+                final int urlColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
+                final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
+                final int idColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+                final int dateAddedColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATE_ADDED);
+
+                String currentAlbumKey = null;
+                int currentAlbumDate = -1;
+
                 do {
-                    final String trackName = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Media.TITLE));
-                    final long duration = cursor.getLong(cursor.getColumnIndex(MediaStore.Audio.Media.DURATION));
-                    final int number = cursor.getInt(cursor.getColumnIndex(MediaStore.Audio.Media.TRACK));
-                    final String artistName = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST));
-                    final String albumName = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM));
-                    final String url = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Media.DATA));
-                    final String albumKey = cursor.getString(cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY));
-                    final long id = cursor.getLong(cursor.getColumnIndex(MediaStore.Audio.Media._ID));
-                    final int dateAdded = dateMap.containsKey(albumKey) ? dateMap.get(albumKey) : -1;
+                    final String trackName = cursor.getString(titleColumnIndex);
+                    final long duration = cursor.getLong(durationColumnIndex);
+                    final int number = cursor.getInt(numberColumnIndex);
+                    final String artistName = cursor.getString(artistColumnIndex);
+                    final String albumName = cursor.getString(albumColumnIndex);
+                    final String url = cursor.getString(urlColumnIndex);
+                    final String albumKey = cursor.getString(albumKeyColumnIndex);
+                    final long id = cursor.getLong(idColumnIndex);
 
+                    if (currentAlbumKey == null || !currentAlbumKey.equals(albumKey)) {
+                        // first track of a new album holds the latest date of the album
+                        currentAlbumKey = albumKey;
+                        currentAlbumDate = cursor.getInt(dateAddedColumnIndex);
+                    }
 
                     // add the track
-                    recentTracks.add(new TrackModel(trackName, artistName, albumName, albumKey, duration, number, url, id, dateAdded));
+                    recentTracks.add(new TrackModel(trackName, artistName, albumName, albumKey, duration, number, url, id, currentAlbumDate));
 
                 } while (cursor.moveToNext());
             }
@@ -862,6 +940,111 @@ public class MusicLibraryHelper {
         return track;
     }
 
+    /**
+     * Create {@link TrackModel}s for all given file paths that are known to the mediastore.
+     * <p>
+     * The paths are resolved in chunks with one query per chunk.
+     *
+     * @param paths   The list of file paths to look up.
+     * @param context The application context to access the content resolver.
+     * @return A {@link Map} of the created {@link TrackModel} per path. Paths that couldn't be found in the mediastore are missing in the map.
+     */
+    static Map<String, TrackModel> getTracksForPaths(final List<String> paths, final Context context) {
+        final Map<String, TrackModel> tracks = new HashMap<>();
+
+        for (int i = 0; i < paths.size(); i += pathChunkSize) {
+            final List<String> chunk = paths.subList(i, Math.min(i + pathChunkSize, paths.size()));
+
+            final String whereVal[] = chunk.toArray(new String[0]);
+
+            final String where = MediaStore.Audio.Media.DATA + " IN (" + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, MusicLibraryHelper.projectionTracks, where, whereVal, null);
+
+            if (cursor != null) {
+                if (cursor.moveToFirst()) {
+                    final int titleColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+                    final int durationColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+                    final int numberColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TRACK);
+                    final int artistColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+                    final int albumColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
+                    final int urlColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
+                    final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
+                    final int idColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+
+                    do {
+                        final String title = cursor.getString(titleColumnIndex);
+                        final long duration = cursor.getLong(durationColumnIndex);
+                        final int no = cursor.getInt(numberColumnIndex);
+                        final String artist = cursor.getString(artistColumnIndex);
+                        final String album = cursor.getString(albumColumnIndex);
+                        final String url = cursor.getString(urlColumnIndex);
+                        final String albumKey = cursor.getString(albumKeyColumnIndex);
+                        final long id = cursor.getLong(idColumnIndex);
+
+                        tracks.put(url, new TrackModel(title, artist, album, albumKey, duration, no, url, id));
+                    } while (cursor.moveToNext());
+                }
+
+                cursor.close();
+            }
+        }
+
+        return tracks;
+    }
+
+    /**
+     * Create {@link TrackModel}s for all given mediastore ids.
+     * <p>
+     * The ids are resolved in chunks with one query per chunk.
+     *
+     * @param ids     The list of track ids to look up.
+     * @param context The application context to access the content resolver.
+     * @return A {@link Map} of the created {@link TrackModel} per id. Ids that couldn't be found in the mediastore are missing in the map.
+     */
+    public static Map<Long, TrackModel> getTracksForIds(final List<Long> ids, final Context context) {
+        final Map<Long, TrackModel> tracks = new HashMap<>();
+
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            final List<Long> chunk = ids.subList(i, Math.min(i + chunkSize, ids.size()));
+
+            // the ids are numeric so they can be inlined safely
+            final String where = MediaStore.Audio.Media._ID + " IN (" + TextUtils.join(",", chunk) + ")";
+
+            final Cursor cursor = PermissionHelper.query(context, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, MusicLibraryHelper.projectionTracks, where, null, null);
+
+            if (cursor != null) {
+                if (cursor.moveToFirst()) {
+                    final int titleColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TITLE);
+                    final int durationColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
+                    final int numberColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.TRACK);
+                    final int artistColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ARTIST);
+                    final int albumColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM);
+                    final int urlColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
+                    final int albumKeyColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_KEY);
+                    final int idColumnIndex = cursor.getColumnIndex(MediaStore.Audio.Media._ID);
+
+                    do {
+                        final String title = cursor.getString(titleColumnIndex);
+                        final long duration = cursor.getLong(durationColumnIndex);
+                        final int no = cursor.getInt(numberColumnIndex);
+                        final String artist = cursor.getString(artistColumnIndex);
+                        final String album = cursor.getString(albumColumnIndex);
+                        final String url = cursor.getString(urlColumnIndex);
+                        final String albumKey = cursor.getString(albumKeyColumnIndex);
+                        final long id = cursor.getLong(idColumnIndex);
+
+                        tracks.put(id, new TrackModel(title, artist, album, albumKey, duration, no, url, id));
+                    } while (cursor.moveToNext());
+                }
+
+                cursor.close();
+            }
+        }
+
+        return tracks;
+    }
+
     /**
      * Create a list of {@link FileModel} that represents all music files found in the mediastore for the given path.
      *
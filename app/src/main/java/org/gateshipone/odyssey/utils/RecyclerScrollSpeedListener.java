@@ -143,6 +143,10 @@ public class RecyclerScrollSpeedListener extends RecyclerView.OnScrollListener {
             // Set the scrollspeed in the adapter
             mAdapter.setScrollSpeed(mScrollSpeed);
 
+            // Warm the cache for the items ahead in scroll direction
+            final boolean forward = firstVisibleItemPosition > mLastFirstVisibleItem;
+            CoverPrefetcher.prefetchAhead(mAdapter, firstVisibleItemPosition, lastVisibleItemPosition, layoutManager.getItemCount(), mScrollSpeed, forward);
+
             // Save values for next comparsion
             mLastFirstVisibleItem = firstVisibleItemPosition;
             mLastTime = currentTime;
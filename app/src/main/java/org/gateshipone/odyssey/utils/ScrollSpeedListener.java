@@ -90,6 +90,10 @@ public class ScrollSpeedListener implements AbsListView.OnScrollListener {
             // Set the scrollspeed in the adapter
             mAdapter.setScrollSpeed(mScrollSpeed);
 
+            // Warm the cache for the items ahead in scroll direction
+            final boolean forward = firstVisibleItem > mLastFirstVisibleItem;
+            CoverPrefetcher.prefetchAhead(mAdapter, firstVisibleItem, firstVisibleItem + visibleItemCount - 1, totalItemCount, mScrollSpeed, forward);
+
             // Save values for next comparsion
             mLastFirstVisibleItem = firstVisibleItem;
             mLastTime = currentTime;
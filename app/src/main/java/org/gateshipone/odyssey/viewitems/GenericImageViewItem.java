@@ -24,7 +24,6 @@ package org.gateshipone.odyssey.viewitems;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.animation.AnimationUtils;
 import android.widget.ImageView;
@@ -33,8 +32,10 @@ import android.widget.ViewSwitcher;
 
 import org.gateshipone.odyssey.adapter.ScrollSpeedAdapter;
 import org.gateshipone.odyssey.artwork.ArtworkManager;
+import org.gateshipone.odyssey.artwork.BitmapPool;
 import org.gateshipone.odyssey.models.GenericModel;
-import org.gateshipone.odyssey.utils.AsyncLoader;
+import org.gateshipone.odyssey.utils.ImageLoadScheduler;
+import org.gateshipone.odyssey.utils.ModelImageLoader;
 
 import androidx.annotation.IdRes;
 import androidx.annotation.LayoutRes;
@@ -46,10 +47,14 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
     private Bitmap mBitmap = null;
     private final ViewSwitcher mSwitcher;
 
-    private AsyncLoader mLoaderTask;
+    private ImageLoadScheduler.LoadToken mLoadToken;
     private boolean mCoverDone = false;
 
-    private final AsyncLoader.CoverViewHolder mHolder;
+    private final ScrollSpeedAdapter mAdapter;
+    private ArtworkManager mArtworkManager;
+    private GenericModel mModelItem;
+    private int mImageWidth;
+    private int mImageHeight;
 
     /**
      * @param context     The current context.
@@ -67,11 +72,7 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
         mImageView = findViewById(imageviewID);
         mSwitcher = findViewById(switcherID);
 
-        mHolder = new AsyncLoader.CoverViewHolder();
-        mHolder.coverLoadable = this;
-        mHolder.mAdapter = adapter;
-        mHolder.imageDimension = new Pair<>(0, 0);
-
+        mAdapter = adapter;
 
         mCoverDone = false;
         if (mImageView != null && mSwitcher != null) {
@@ -88,14 +89,39 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
      * Starts the image retrieval task
      */
     public void startCoverImageTask() {
-        if (mLoaderTask == null && mHolder.artworkManager != null && mHolder.modelItem != null && !mCoverDone) {
-            mLoaderTask = new AsyncLoader(getContext());
-            mLoaderTask.execute(mHolder);
+        if (mLoadToken == null && mArtworkManager != null && mModelItem != null && !mCoverDone) {
+            final GenericModel modelItem = mModelItem;
+            final ImageLoadScheduler.LoadToken[] token = new ImageLoadScheduler.LoadToken[1];
+
+            token[0] = ImageLoadScheduler.getInstance().load(ModelImageLoader.getKey(modelItem, mImageWidth, mImageHeight),
+                    ImageLoadScheduler.PRIORITY_VISIBLE,
+                    new ModelImageLoader(getContext(), mArtworkManager, modelItem, mImageWidth, mImageHeight, mAdapter),
+                    bitmap -> post(() -> {
+                        // only show the image if this view still waits for it
+                        if (bitmap != null && token[0] == mLoadToken && !token[0].isCancelled()) {
+                            mLoadToken = null;
+                            setImage(bitmap);
+                        } else {
+                            BitmapPool.getInstance().release(bitmap);
+                        }
+                    }));
+            mLoadToken = token[0];
+        }
+    }
+
+    /**
+     * Cancels the running image request of this view.
+     */
+    private void cancelCoverImageTask() {
+        if (mLoadToken != null) {
+            mLoadToken.cancel();
+            mLoadToken = null;
         }
     }
 
     public void setImageDimension(int width, int height) {
-        mHolder.imageDimension = new Pair<>(width, height);
+        mImageWidth = width;
+        mImageHeight = height;
     }
 
     /**
@@ -105,11 +131,11 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
      * @param modelItem      ModelItem to get the image for (Album/Artist)
      */
     public void prepareArtworkFetching(final ArtworkManager artworkManager, final GenericModel modelItem) {
-        if (!modelItem.equals(mHolder.modelItem) || !mCoverDone) {
+        if (!modelItem.equals(mModelItem) || !mCoverDone) {
             setImage(null);
         }
-        mHolder.artworkManager = artworkManager;
-        mHolder.modelItem = modelItem;
+        mArtworkManager = artworkManager;
+        mModelItem = modelItem;
     }
 
     /**
@@ -121,20 +147,19 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        if (mLoaderTask != null) {
-            mLoaderTask.cancel(true);
-            mLoaderTask = null;
-        }
+        cancelCoverImageTask();
     }
 
     /**
      * Sets the image of this view with a smooth fading animation.
      * If null is supplied it will reset the cover placeholder image.
+     * The view takes over the {@link BitmapPool} reference of the image and releases it when the image is replaced.
      *
      * @param image Image to show inside the view. null will result in the placeholder being shown.
      */
     @Override
     public void setImage(final Bitmap image) {
+        final Bitmap oldBitmap = mBitmap;
         mBitmap = image;
         if (image != null) {
             mCoverDone = true;
@@ -143,13 +168,10 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
             mSwitcher.setDisplayedChild(1);
         } else {
             // Cancel old task
-            if (mLoaderTask != null) {
-                mLoaderTask.cancel(true);
-            }
-            mLoaderTask = null;
+            cancelCoverImageTask();
 
             mCoverDone = false;
-            mHolder.modelItem = null;
+            mModelItem = null;
 
             mSwitcher.setOutAnimation(null);
             mSwitcher.setInAnimation(null);
@@ -158,9 +180,17 @@ public abstract class GenericImageViewItem extends RelativeLayout implements Cov
             mSwitcher.setOutAnimation(AnimationUtils.loadAnimation(getContext(), android.R.anim.fade_out));
             mSwitcher.setInAnimation(AnimationUtils.loadAnimation(getContext(), android.R.anim.fade_in));
         }
+
+        // The old bitmap is no longer shown and can be reused for other covers if nothing else references it
+        BitmapPool.getInstance().release(oldBitmap);
     }
 
+    /**
+     * @return The shown image with an additional {@link BitmapPool} reference for the caller, so it stays valid
+     * after this view is recycled.
+     */
     public Bitmap getBitmap() {
+        BitmapPool.getInstance().acquire(mBitmap);
         return mBitmap;
     }
 }
@@ -29,6 +29,7 @@ import android.os.AsyncTask;
 import android.preference.PreferenceManager;
 
 import org.gateshipone.odyssey.R;
+import org.gateshipone.odyssey.libraryindex.LibraryIndexManager;
 import org.gateshipone.odyssey.models.AlbumModel;
 import org.gateshipone.odyssey.utils.MusicLibraryHelper;
 
@@ -72,7 +73,7 @@ public class AlbumViewModel extends GenericViewModel<AlbumModel> {
                         return MusicLibraryHelper.getRecentAlbums(application);
                     } else {
                         // load all albums
-                        return MusicLibraryHelper.getAllAlbums(application);
+                        return LibraryIndexManager.getInstance(application).getAllAlbums();
                     }
                 } else {
                     // load all albums from the given artist
@@ -81,7 +82,7 @@ public class AlbumViewModel extends GenericViewModel<AlbumModel> {
                     SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(application);
                     String orderKey = sharedPref.getString(application.getString(R.string.pref_album_sort_order_key), application.getString(R.string.pref_artist_albums_sort_default));
 
-                    return MusicLibraryHelper.getAllAlbumsForArtist(mArtistID, orderKey, application);
+                    return LibraryIndexManager.getInstance(application).getAllAlbumsForArtist(mArtistID, orderKey);
                 }
             }
 
@@ -28,8 +28,8 @@ import android.content.SharedPreferences;
 import android.os.AsyncTask;
 
 import org.gateshipone.odyssey.R;
+import org.gateshipone.odyssey.libraryindex.LibraryIndexManager;
 import org.gateshipone.odyssey.models.ArtistModel;
-import org.gateshipone.odyssey.utils.MusicLibraryHelper;
 
 import java.util.List;
 
@@ -53,7 +53,7 @@ public class ArtistViewModel extends GenericViewModel<ArtistModel> {
                 SharedPreferences sharedPref = androidx.preference.PreferenceManager.getDefaultSharedPreferences(application);
                 boolean showAlbumArtistsOnly = sharedPref.getBoolean(application.getString(R.string.pref_album_artists_only_key), application.getResources().getBoolean(R.bool.pref_album_artists_only_default));
 
-                return MusicLibraryHelper.getAllArtists(showAlbumArtistsOnly, application);
+                return LibraryIndexManager.getInstance(application).getAllArtists(showAlbumArtistsOnly);
             }
 
             @Override
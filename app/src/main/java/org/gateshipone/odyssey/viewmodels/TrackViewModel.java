@@ -26,6 +26,7 @@ import android.annotation.SuppressLint;
 import android.app.Application;
 import android.os.AsyncTask;
 
+import org.gateshipone.odyssey.libraryindex.LibraryIndexManager;
 import org.gateshipone.odyssey.models.TrackModel;
 import org.gateshipone.odyssey.utils.MusicLibraryHelper;
 
@@ -69,10 +70,10 @@ public class TrackViewModel extends GenericViewModel<TrackModel> {
                 } else {
                     if (mAlbumKey.isEmpty()) {
                         // load all tracks
-                        return MusicLibraryHelper.getAllTracks(null, application);
+                        return LibraryIndexManager.getInstance(application).getAllTracks();
                     } else {
                         // load album tracks
-                        return MusicLibraryHelper.getTracksForAlbum(mAlbumKey, application);
+                        return LibraryIndexManager.getInstance(application).getTracksForAlbum(mAlbumKey);
                     }
                 }
             }